@@ -14,6 +14,7 @@ repositories {
 
 dependencies {
     api("org.eclipse.paho:org.eclipse.paho.client.mqttv3:1.2.5")
+    api("org.eclipse.paho:org.eclipse.paho.mqttv5.client:1.2.5")
     api("com.github.spullara.mustache.java:compiler:0.9.10")
     api("ch.qos.logback:logback-classic:1.2.9")
     api("com.google.code.gson:gson:2.10")
@@ -28,6 +29,28 @@ java {
     withSourcesJar()
 }
 
+// Java 21 overrides packaged in META-INF/versions/21 of a multi-release jar (virtual threads)
+val java21: SourceSet by sourceSets.creating {
+    java.srcDir("src/main/java21")
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+tasks.named<JavaCompile>("compileJava21Java") {
+    javaCompiler.set(javaToolchains.compilerFor {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    })
+    options.release.set(21)
+}
+
+tasks.jar {
+    into("META-INF/versions/21") {
+        from(java21.output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
+
 tasks.withType<JavaCompile>() {
     options.encoding = "UTF-8"
 }
@@ -0,0 +1,85 @@
+package it.wldt.adapter.mqtt.physical;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the YAML configuration file of a MqttPhysicalAdapter and invokes a callback when it changes.
+ * Bursts of file system events (editors usually write a file more than once) are collapsed into a single callback.
+ * */
+public class ConfigurationFileWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationFileWatcher.class);
+
+    private static final long DEFAULT_SETTLE_TIME_MS = 250;
+
+    private final Path configFile;
+    private final Runnable onChange;
+    private final long settleTimeMs;
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public ConfigurationFileWatcher(String configFilePath, Runnable onChange) {
+        this(configFilePath, onChange, DEFAULT_SETTLE_TIME_MS);
+    }
+
+    public ConfigurationFileWatcher(String configFilePath, Runnable onChange, long settleTimeMs) {
+        this.configFile = Paths.get(configFilePath).toAbsolutePath();
+        this.onChange = onChange;
+        this.settleTimeMs = settleTimeMs;
+    }
+
+    public synchronized void start() throws IOException {
+        if(watcherThread != null) return;
+        watchService = FileSystems.getDefault().newWatchService();
+        configFile.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_CREATE);
+        watcherThread = new Thread(this::watch, "mqtt-pa-config-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        logger.info("MQTT Physical Adapter - watching configuration file: {}", configFile);
+    }
+
+    public synchronized void stop() {
+        if(watcherThread == null) return;
+        watcherThread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        watcherThread = null;
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = pollConfigFileEvents(key);
+                //collapse the burst of events produced by a single save
+                WatchKey next;
+                while ((next = watchService.poll(settleTimeMs, TimeUnit.MILLISECONDS)) != null)
+                    changed |= pollConfigFileEvents(next);
+                if(changed) onChange.run();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean pollConfigFileEvents(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if(context instanceof Path && configFile.getFileName().equals(context))
+                changed = true;
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -1,47 +1,229 @@
 package it.wldt.adapter.mqtt.physical;
 
+import it.wldt.adapter.mqtt.physical.aggregation.WindowAggregation;
+import it.wldt.adapter.mqtt.physical.aggregation.WindowAggregator;
+import it.wldt.adapter.mqtt.physical.cache.LastValueStore;
+import it.wldt.adapter.mqtt.physical.coalescing.ActionCoalescer;
+import it.wldt.adapter.mqtt.physical.coalescing.ActionCoalescing;
+import it.wldt.adapter.mqtt.physical.coalescing.CoalescingMode;
+import it.wldt.adapter.mqtt.physical.correlation.ActionResponseConfiguration;
+import it.wldt.adapter.mqtt.physical.correlation.ActionResponseIncomingTopic;
+import it.wldt.adapter.mqtt.physical.correlation.ActionResponseTracker;
+import it.wldt.adapter.mqtt.physical.correlation.CorrelationIds;
+import it.wldt.adapter.mqtt.physical.correlation.CorrelationMode;
+import it.wldt.adapter.mqtt.physical.dispatch.InboundMessage;
+import it.wldt.adapter.mqtt.physical.dispatch.InboundMessageQueue;
+import it.wldt.adapter.mqtt.physical.dispatch.MessagePriority;
+import it.wldt.adapter.mqtt.physical.dispatch.OverflowPolicy;
+import it.wldt.adapter.mqtt.physical.dispatch.QueueWatermarkListener;
+import it.wldt.adapter.mqtt.physical.dispatch.WldtEventBatcher;
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.adapter.mqtt.physical.qos.AdaptiveQos;
+import it.wldt.adapter.mqtt.physical.qos.AdaptiveQosController;
+import it.wldt.adapter.mqtt.physical.rules.PropertyRules;
+import it.wldt.adapter.mqtt.physical.staleness.StalenessTracker;
+import it.wldt.adapter.mqtt.physical.sparkplug.SparkplugIncomingTopic;
+import it.wldt.adapter.mqtt.physical.sparkplug.SparkplugListener;
+import it.wldt.adapter.mqtt.physical.recording.TrafficRecorder;
+import it.wldt.adapter.mqtt.physical.exception.MqttTransportException;
+import it.wldt.adapter.mqtt.physical.execution.ExecutionMode;
+import it.wldt.adapter.mqtt.physical.execution.KeyedMessageExecutor;
+import it.wldt.adapter.mqtt.physical.timing.HashedTimingWheel;
 import it.wldt.adapter.mqtt.physical.topic.incoming.DigitalTwinIncomingTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import it.wldt.adapter.mqtt.physical.topic.incoming.RejectedPayload;
 import it.wldt.adapter.mqtt.physical.topic.outgoing.DigitalTwinOutgoingTopic;
+import it.wldt.adapter.mqtt.physical.topic.outgoing.MqttOutgoingMessage;
+import it.wldt.adapter.mqtt.physical.transport.*;
 import it.wldt.adapter.physical.ConfigurablePhysicalAdapter;
+import it.wldt.adapter.physical.PhysicalAssetAction;
+import it.wldt.adapter.physical.PhysicalAssetDescription;
+import it.wldt.adapter.physical.PhysicalAssetEvent;
+import it.wldt.adapter.physical.PhysicalAssetProperty;
 import it.wldt.adapter.physical.event.PhysicalAssetActionWldtEvent;
 import it.wldt.adapter.physical.event.PhysicalAssetEventWldtEvent;
 import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
 import it.wldt.core.event.WldtEvent;
 import it.wldt.exception.EventBusException;
 import it.wldt.exception.PhysicalAdapterException;
-import org.eclipse.paho.client.mqttv3.*;
+import org.eclipse.paho.client.mqttv3.MqttException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 public class MqttPhysicalAdapter extends ConfigurablePhysicalAdapter<MqttPhysicalAdapterConfiguration> {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttPhysicalAdapter.class);
 
-    private final IMqttClient mqttClient;
+    private static final long EXECUTION_SHUTDOWN_TIMEOUT_MS = 5000;
+    private static final long INBOUND_DRAIN_TIMEOUT_MS = 5000;
+    private static final long TIMING_WHEEL_TICK_MS = 10;
+    private static final int TIMING_WHEEL_SIZE = 512;
+
+    private final MqttTransport transport;
+    private final ConnectionSupervisor connectionSupervisor;
+    private final MqttPhysicalAdapterMetrics metrics = new MqttPhysicalAdapterMetrics();
+    private final LastValueStore lastValueStore = new LastValueStore();
+
+    //LIVE TOPICS: initialized from the configuration and updated in place by configuration reloads
+    private final Map<String, DigitalTwinIncomingTopic> incomingTopics = new ConcurrentHashMap<>();
+    private final Map<String, DigitalTwinOutgoingTopic> outgoingTopics = new ConcurrentHashMap<>();
+    private volatile PhysicalAssetDescription physicalAssetDescription;
+    //SPARKPLUG: properties found in birth certificates, added to every description (guarded by descriptionLock)
+    private final Object descriptionLock = new Object();
+    private final Map<String, Object> discoveredProperties = new LinkedHashMap<>();
+    private boolean bound = false;
+    private ConfigurationFileWatcher configurationFileWatcher;
+    private volatile PhysicalAssetWarmUp warmUp;
+    private final Map<String, List<WindowAggregator>> windowAggregators = new ConcurrentHashMap<>();
+    private List<WindowAggregation> activeWindowAggregations = new ArrayList<>();
+    private final List<ScheduledFuture<?>> aggregationTasks = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> adaptiveQosTask;
+    private WldtEventBatcher eventBatcher;
+    private InboundMessageQueue inboundQueue;
+    private KeyedMessageExecutor messageExecutor;
+    private HashedTimingWheel timingWheel;
+    private ActionResponseTracker actionResponseTracker;
+    private volatile StalenessTracker stalenessTracker;
+    private final Map<String, ActionCoalescer> actionCoalescers = new ConcurrentHashMap<>();
+    private final boolean manualAcks;
+    private final SparkplugListener sparkplugListener = new SparkplugListener() {
+        @Override
+        public void onMetricsDiscovered(Map<String, Object> properties) {
+            onSparkplugMetricsDiscovered(properties);
+        }
+
+        @Override
+        public void onRebirthRequest(MqttOutgoingMessage command) {
+            try {
+                transport.publish(command);
+                logger.info("MQTT Physical Adapter - Sparkplug rebirth requested on topic: {}", command.getTopic());
+            } catch (MqttTransportException e) {
+                logger.error("MQTT Physical Adapter - Sparkplug rebirth request failed: {}", e.getMessage());
+            }
+        }
+    };
+    private WarmUpReport warmUpReport;
+    private volatile TrafficRecorder trafficRecorder;
+    private volatile PropertyRules propertyRules;
+
     public MqttPhysicalAdapter(String id, MqttPhysicalAdapterConfiguration configuration) throws MqttException {
+        this(id, configuration, createTransport(configuration));
+    }
+
+    /**
+     * Uses the given transport instead of a Paho client, e.g. a ReplayTransport to feed a recording without a broker
+     * */
+    public MqttPhysicalAdapter(String id, MqttPhysicalAdapterConfiguration configuration, MqttTransport transport) {
         super(id, configuration);
-        this.mqttClient = new MqttClient(getConfiguration().getBrokerConnectionString(),
-                getConfiguration().getClientId(),
-                getConfiguration().getPersistence());
+        this.transport = transport;
+        getConfiguration().getIncomingTopics().forEach(t -> incomingTopics.put(t.getTopic(), t));
+        bindActionResponseTopics(incomingTopics.values());
+        bindSparkplugTopics(incomingTopics.values());
+        this.outgoingTopics.putAll(getConfiguration().getOutgoingTopics());
+        this.physicalAssetDescription = getConfiguration().getPhysicalAssetDescription();
+        if(!getConfiguration().getPropertyRules().isEmpty())
+            this.propertyRules = new PropertyRules(getConfiguration().getPropertyRules(), metrics);
+        this.metrics.registerGauge("decode.malformed",
+                () -> incomingTopics.values().stream().mapToLong(DigitalTwinIncomingTopic::getMalformedPayloadCount).sum());
+        this.metrics.registerGauge("schema.rejected",
+                () -> incomingTopics.values().stream().mapToLong(DigitalTwinIncomingTopic::getRejectedPayloadCount).sum());
+        this.metrics.registerGauge("aggregation.samples.dropped",
+                () -> windowAggregators.values().stream().flatMap(List::stream).mapToLong(WindowAggregator::getDroppedSampleCount).sum());
+        registerSparkplugGauge("sparkplug.births", SparkplugIncomingTopic::getBirthCount);
+        registerSparkplugGauge("sparkplug.rebirth.requests", SparkplugIncomingTopic::getRebirthRequestCount);
+        registerSparkplugGauge("sparkplug.metrics.unknown", SparkplugIncomingTopic::getUnknownMetricCount);
+        registerSparkplugGauge("sparkplug.sequence.gaps", SparkplugIncomingTopic::getSequenceGapCount);
+        if(getConfiguration().isEventBatchingEnabled())
+            this.eventBatcher = new WldtEventBatcher(getConfiguration().getEventBatchMaxSize(),
+                    getConfiguration().getEventBatchMaxDelayMicros(),
+                    batch -> batch.forEach(this::publishWldtEvent),
+                    metrics);
+        if(getConfiguration().isInboundQueueEnabled())
+            this.inboundQueue = new InboundMessageQueue(getConfiguration().getInboundQueueCapacity(),
+                    getConfiguration().getInboundQueueBlockTimeout(),
+                    getConfiguration().getInboundQueueHighWatermark(),
+                    getConfiguration().getInboundQueueLowWatermark(),
+                    getConfiguration().getInboundQueueStarvationLimit(),
+                    getInboundQueueWatermarkListener(),
+                    m -> processIncomingMessage(m.getTopicFilter(), m.getMessage(), m.isAckPending()),
+                    metrics);
+        if(getConfiguration().getExecutionMode() == ExecutionMode.CONCURRENT)
+            this.messageExecutor = new KeyedMessageExecutor("mqtt-pa-exec-" + id,
+                    getConfiguration().getExecutionMaxThreads(),
+                    getConfiguration().getExecutionMaxInFlight(),
+                    metrics);
+        this.manualAcks = getConfiguration().isManualAcksEnabled();
+        this.transport.setManualAcks(manualAcks);
+        this.transport.setDefaultMessageListener(this::onUnroutedMqttMessage);
+        this.connectionSupervisor = new ConnectionSupervisor(id, transport,
+                getConfiguration().getReconnectBackoff(),
+                getConfiguration().isAutomaticReconnectEnabled(),
+                metrics,
+                this::onConnectionStateChanged,
+                this::onConnected);
     }
 
     @Override
     public void onIncomingPhysicalAction(PhysicalAssetActionWldtEvent<?> physicalActionEvent) {
-        logger.info("MQTT Physical Adapter received action event: {}", physicalActionEvent);
-        getConfiguration()
-                .getOutgoingTopicByActionKey(physicalActionEvent.getActionKey())
-                .ifPresent(t -> publishOnTopic(t, t.applyPublishFunction(physicalActionEvent)));
+        if(logger.isDebugEnabled()) logger.debug("MQTT Physical Adapter received action event: {}", physicalActionEvent);
+        DigitalTwinOutgoingTopic topic = outgoingTopics.get(physicalActionEvent.getActionKey());
+        if(topic == null) return;
+        if(topic.getCoalescing().isPresent()){
+            getActionCoalescer(physicalActionEvent.getActionKey(), topic, topic.getCoalescing().get()).submit(physicalActionEvent);
+            return;
+        }
+        if(messageExecutor == null){
+            publishAction(topic, physicalActionEvent);
+            return;
+        }
+        try {
+            messageExecutor.execute("out:" + topic.getTopic(), topic.isOrdered(),
+                    () -> publishAction(topic, physicalActionEvent));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     public void onAdapterStart() {
         try {
-            connectToMqttBroker();
-            getConfiguration().getIncomingTopics().forEach(this::subscribeClientToDigitalTwinIncomingTopic);
+            if(eventBatcher != null) eventBatcher.start();
+            if(inboundQueue != null) inboundQueue.start();
+            startTrafficRecorder();
+            if(!connectionSupervisor.connect()){
+                logger.error("MQTT Physical Adapter - unable to connect to broker: {}", getConfiguration().getBrokerConnectionString());
+                return;
+            }
+            if(getConfiguration().isWarmUpEnabled())
+                warmUp = new PhysicalAssetWarmUp(physicalAssetDescription, getWindowAggregationPropertyKeys());
+            if(!getConfiguration().getPropertyMaxAges().isEmpty())
+                getStalenessTracker().configure(getConfiguration().getPropertyMaxAges());
+            subscribeClientToDigitalTwinIncomingTopics(new ArrayList<>(incomingTopics.values()), true);
             logger.info("MQTT Physical Adapter - MQTT client subscribed to incoming topics");
-            notifyPhysicalAdapterBound(getConfiguration().getPhysicalAssetDescription());
+            if(warmUp != null) completeWarmUp();
+            notifyBound();
+            startWindowAggregators(getConfiguration().getWindowAggregations());
+            startAdaptiveQos();
+            startConfigurationFileWatcher();
         } catch (PhysicalAdapterException | EventBusException e) {
             e.printStackTrace();
         }
@@ -50,51 +232,631 @@ public class MqttPhysicalAdapter extends ConfigurablePhysicalAdapter<MqttPhysica
     @Override
     public void onAdapterStop() {
         try {
-            mqttClient.disconnect();
-        } catch (MqttException e) {
+            if(configurationFileWatcher != null) configurationFileWatcher.stop();
+            actionCoalescers.values().forEach(ActionCoalescer::flush);
+            connectionSupervisor.stop();
+            stopWindowAggregators();
+            if(adaptiveQosTask != null) adaptiveQosTask.cancel(false);
+            if(inboundQueue != null)
+                inboundQueue.stop(INBOUND_DRAIN_TIMEOUT_MS).stream()
+                        .filter(InboundMessage::isAckPending)
+                        .forEach(m -> acknowledge(m.getMessage()));
+            if(messageExecutor != null) messageExecutor.shutdown(EXECUTION_SHUTDOWN_TIMEOUT_MS);
+            if(eventBatcher != null) eventBatcher.stop();
+            if(trafficRecorder != null) trafficRecorder.close();
+            synchronized (this) {
+                if(timingWheel != null) timingWheel.stop();
+                if(scheduler != null) scheduler.shutdownNow();
+            }
+            transport.disconnect();
+        } catch (MqttTransportException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public ConnectionState getConnectionState() {
+        return connectionSupervisor.getState();
+    }
+
+    public MqttPhysicalAdapterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Last value received for each property, readable from any thread without going through the broker or the event bus.
+     * */
+    public LastValueStore getLastValueStore() {
+        return lastValueStore;
+    }
+
+    /**
+     * Sampled copies of the payloads discarded by the incoming topics, oldest first
+     * */
+    public List<RejectedPayload> getRejectedPayloadSamples() {
+        return incomingTopics.values().stream()
+                .flatMap(t -> t.getRejectedPayloadSamples().stream())
+                .sorted(Comparator.comparingLong(RejectedPayload::getTimestamp))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * True while a property with a max age has received no value for longer than that age
+     * */
+    public boolean isPropertyStale(String propertyKey) {
+        StalenessTracker tracker = stalenessTracker;
+        return tracker != null && tracker.isStale(propertyKey);
+    }
+
+    public Optional<WarmUpReport> getWarmUpReport() {
+        return Optional.ofNullable(warmUpReport);
+    }
+
+    /**
+     * Applies a new configuration to the running adapter without reconnecting: only added topics are subscribed,
+     * only removed topics are unsubscribed and the functions of the topics left in place are swapped atomically.
+     * Broker and client settings cannot change at runtime and are ignored.
+     * */
+    public synchronized void reloadConfiguration(MqttPhysicalAdapterConfiguration newConfiguration) {
+        long start = System.nanoTime();
+        Map<String, DigitalTwinIncomingTopic> newIncomingTopics = newConfiguration.getIncomingTopics().stream()
+                .collect(Collectors.toMap(DigitalTwinIncomingTopic::getTopic, t -> t));
+        bindActionResponseTopics(newIncomingTopics.values());
+        bindSparkplugTopics(newIncomingTopics.values());
+        if(stalenessTracker != null || !newConfiguration.getPropertyMaxAges().isEmpty())
+            getStalenessTracker().configure(newConfiguration.getPropertyMaxAges());
+        propertyRules = newConfiguration.getPropertyRules().isEmpty() ? null : new PropertyRules(newConfiguration.getPropertyRules(), metrics);
+
+        List<DigitalTwinIncomingTopic> toSubscribe = new ArrayList<>();
+        newIncomingTopics.forEach((name, topic) -> {
+            DigitalTwinIncomingTopic current = incomingTopics.put(name, topic);
+            if(current == null || !Objects.equals(current.getQos(), topic.getQos())) toSubscribe.add(topic);
+            else metrics.counter("reload.topics.swapped").increment();
+        });
+        List<String> toUnsubscribe = incomingTopics.keySet().stream()
+                .filter(name -> !newIncomingTopics.containsKey(name))
+                .collect(Collectors.toList());
+
+        subscribeClientToDigitalTwinIncomingTopics(toSubscribe, true);
+        metrics.counter("reload.topics.subscribed").add(toSubscribe.size());
+        if(!toUnsubscribe.isEmpty()){
+            try {
+                transport.unsubscribe(toUnsubscribe.toArray(new String[0]), getConfiguration().getSubscribeTimeout() * 1000L);
+            } catch (MqttTransportException e) {
+                e.printStackTrace();
+            }
+            //removed after the UNSUBACK so that messages already on the wire are still decoded
+            toUnsubscribe.forEach(incomingTopics::remove);
+            if(messageExecutor != null) toUnsubscribe.forEach(name -> messageExecutor.remove("in:" + name));
+        }
+        metrics.counter("reload.topics.unsubscribed").add(toUnsubscribe.size());
+
+        outgoingTopics.putAll(newConfiguration.getOutgoingTopics());
+        outgoingTopics.keySet().retainAll(newConfiguration.getOutgoingTopics().keySet());
+        actionCoalescers.values().forEach(ActionCoalescer::flush);
+        actionCoalescers.clear();
+
+        if(!activeWindowAggregations.equals(newConfiguration.getWindowAggregations())){
+            stopWindowAggregators();
+            startWindowAggregators(newConfiguration.getWindowAggregations());
+        }
+
+        synchronized (descriptionLock) {
+            PhysicalAssetDescription description = withDiscoveredProperties(newConfiguration.getPhysicalAssetDescription());
+            updatePhysicalAssetDescription(description);
+            //properties dropped by the reload must not keep serving their last value
+            lastValueStore.retainAll(description.getProperties().stream().map(PhysicalAssetProperty::getKey).collect(Collectors.toSet()));
+        }
+        long latency = System.nanoTime() - start;
+        metrics.counter("reload.count").increment();
+        metrics.histogram("reload.latency").record(latency);
+        logger.info("MQTT Physical Adapter - configuration reloaded in {} ms - subscribed: {} unsubscribed: {}",
+                latency / 1_000_000, toSubscribe.size(), toUnsubscribe.size());
+    }
+
+    private void reloadConfigurationFromFile() {
+        try {
+            MqttPhysicalAdapterConfiguration newConfiguration = MqttPhysicalAdapterConfiguration
+                    .builder(getConfiguration().getConfigFilePath())
+                    .readFromConfig()
+                    .build();
+            if(!getConfiguration().getBrokerConnectionString().equals(newConfiguration.getBrokerConnectionString()))
+                logger.warn("MQTT Physical Adapter - broker changes require a restart, keeping {}", getConfiguration().getBrokerConnectionString());
+            reloadConfiguration(newConfiguration);
+        } catch (Exception e) {
+            metrics.counter("reload.failed").increment();
+            logger.error("MQTT Physical Adapter - configuration reload failed, keeping the current one: {}", e.getMessage());
+        }
+    }
+
+    private void completeWarmUp() {
+        PhysicalAssetWarmUp currentWarmUp = warmUp;
+        try {
+            currentWarmUp.await(getConfiguration().getWarmUpTimeout(), getConfiguration().getWarmUpIdleTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        physicalAssetDescription = currentWarmUp.close();
+        warmUp = null;
+        warmUpReport = currentWarmUp.getReport();
+        metrics.counter("warmup.properties.warmed").add(warmUpReport.getWarmedProperties().size());
+        metrics.counter("warmup.properties.defaulted").add(warmUpReport.getDefaultedProperties().size());
+        logger.info("MQTT Physical Adapter - warm-up completed in {} ms - warmed: {} defaulted: {}",
+                warmUpReport.getDurationMs(), warmUpReport.getWarmedProperties(), warmUpReport.getDefaultedProperties());
+    }
+
+    private void startConfigurationFileWatcher() {
+        if(!getConfiguration().isHotReloadEnabled()) return;
+        try {
+            configurationFileWatcher = new ConfigurationFileWatcher(getConfiguration().getConfigFilePath(), this::reloadConfigurationFromFile);
+            configurationFileWatcher.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Properties discovered before the adapter is bound are added to the description it is bound with
+     * */
+    private void notifyBound() throws PhysicalAdapterException, EventBusException {
+        synchronized (descriptionLock) {
+            physicalAssetDescription = withDiscoveredProperties(physicalAssetDescription);
+            notifyPhysicalAdapterBound(physicalAssetDescription);
+            bound = true;
+        }
+    }
+
+    private void onSparkplugMetricsDiscovered(Map<String, Object> properties) {
+        synchronized (descriptionLock) {
+            int known = discoveredProperties.size();
+            properties.forEach(discoveredProperties::putIfAbsent);
+            if(discoveredProperties.size() == known) return;
+            logger.info("MQTT Physical Adapter - Sparkplug properties discovered: {}", properties.keySet());
+            if(bound) updatePhysicalAssetDescription(withDiscoveredProperties(physicalAssetDescription));
+            else physicalAssetDescription = withDiscoveredProperties(physicalAssetDescription);
+        }
+    }
+
+    private PhysicalAssetDescription withDiscoveredProperties(PhysicalAssetDescription description) {
+        if(discoveredProperties.isEmpty()) return description;
+        Set<String> keys = keysOf(description.getProperties(), PhysicalAssetProperty::getKey);
+        List<PhysicalAssetProperty<?>> properties = new ArrayList<>(description.getProperties());
+        discoveredProperties.forEach((key, initialValue) -> {
+            if(!keys.contains(key)) properties.add(new PhysicalAssetProperty<>(key, initialValue));
+        });
+        return new PhysicalAssetDescription(description.getActions(), properties, description.getEvents());
+    }
+
+    private void updatePhysicalAssetDescription(PhysicalAssetDescription newDescription) {
+        if(sameKeys(physicalAssetDescription, newDescription)) return;
+        physicalAssetDescription = newDescription;
+        try {
+            notifyPhysicalAdapterPhysicalAssetDescriptionUpdated(newDescription);
+        } catch (PhysicalAdapterException | EventBusException e) {
             e.printStackTrace();
         }
     }
 
-    private void publishOnTopic(DigitalTwinOutgoingTopic topic, String payload){
+    private static boolean sameKeys(PhysicalAssetDescription a, PhysicalAssetDescription b) {
+        return keysOf(a.getProperties(), PhysicalAssetProperty::getKey).equals(keysOf(b.getProperties(), PhysicalAssetProperty::getKey))
+                && keysOf(a.getEvents(), PhysicalAssetEvent::getKey).equals(keysOf(b.getEvents(), PhysicalAssetEvent::getKey))
+                && keysOf(a.getActions(), PhysicalAssetAction::getKey).equals(keysOf(b.getActions(), PhysicalAssetAction::getKey));
+    }
+
+    private static <T> Set<String> keysOf(List<T> elements, Function<T, String> keyFunction) {
+        return elements.stream().map(keyFunction).collect(Collectors.toSet());
+    }
+
+    /**
+     * Actions expecting a response get a correlation id, in the payload or in the MQTT 5 correlation data, and are
+     * tracked before being published so that even an immediate response finds its pending entry.
+     * */
+    private void publishAction(DigitalTwinOutgoingTopic topic, PhysicalAssetActionWldtEvent<?> actionEvent){
+        byte[] payload = topic.encodePayload(actionEvent);
+        Optional<ActionResponseConfiguration> response = topic.getActionResponse();
+        if(!response.isPresent()){
+            publishOnTopic(topic, payload, null);
+            return;
+        }
+        ActionResponseTracker tracker = getActionResponseTracker();
+        String correlationId = tracker.nextCorrelationId();
+        byte[] correlationData = null;
+        if(response.get().getCorrelationMode() == CorrelationMode.PROPERTIES)
+            correlationData = correlationId.getBytes(StandardCharsets.UTF_8);
+        else {
+            byte[] correlatedPayload = CorrelationIds.inject(payload, response.get().getCorrelationField(), correlationId);
+            if(correlatedPayload == null){
+                logger.warn("MQTT Physical Adapter - payload of action {} is not a JSON object, response not tracked", actionEvent.getActionKey());
+                publishOnTopic(topic, payload, null);
+                return;
+            }
+            payload = correlatedPayload;
+        }
+        tracker.track(actionEvent.getActionKey(), correlationId, response.get().getTimeoutMs());
+        if(!publishOnTopic(topic, payload, correlationData)) tracker.cancel(correlationId);
+    }
+
+    private boolean publishOnTopic(DigitalTwinOutgoingTopic topic, byte[] payload, byte[] correlationData){
         try {
-            MqttMessage msg = new MqttMessage(payload.getBytes());
-            msg.setQos(topic.getQos());
-            msg.setRetained(true);
-            mqttClient.publish(topic.getTopic(), msg);
-            logger.info("Physical Adapter - MQTT client published message: {} on topic: {}", payload, topic.getTopic());
-        } catch (MqttException e) {
+            MqttOutgoingMessage message = new MqttOutgoingMessage(topic.getTopic(), payload, topic.getQos(), true)
+                    .setMessageExpiryInterval(topic.getMessageExpiryInterval());
+            if(correlationData != null)
+                message.setResponseTopic(topic.getActionResponse().map(ActionResponseConfiguration::getResponseTopic).orElse(null))
+                        .setCorrelationData(correlationData);
+            transport.publish(message);
+            if(logger.isDebugEnabled())
+                logger.debug("Physical Adapter - MQTT client published message: {} on topic: {}", new String(payload, StandardCharsets.UTF_8), topic.getTopic());
+            return true;
+        } catch (MqttTransportException e) {
             e.printStackTrace();
+            return false;
         }
     }
 
-    private void subscribeClientToDigitalTwinIncomingTopic(DigitalTwinIncomingTopic topic) {
+    private void startTrafficRecorder() {
+        if(!getConfiguration().getRecordingDirectory().isPresent()) return;
+        try {
+            trafficRecorder = new TrafficRecorder(Paths.get(getConfiguration().getRecordingDirectory().get()),
+                    getConfiguration().getRecordingSegmentSize(), metrics);
+        } catch (IOException e) {
+            logger.error("MQTT Physical Adapter - unable to start recording: {}", e.getMessage());
+        }
+    }
+
+    private ActionCoalescer getActionCoalescer(String actionKey, DigitalTwinOutgoingTopic topic, ActionCoalescing coalescing) {
+        return actionCoalescers.computeIfAbsent(actionKey, k -> new ActionCoalescer(coalescing, getTimingWheel(),
+                actions -> publishCoalescedActions(topic, coalescing.getMode(), actions), metrics));
+    }
+
+    /**
+     * A debounced action is published as if it had just arrived; coalesced actions become one JSON array of bodies
+     * */
+    private void publishCoalescedActions(DigitalTwinOutgoingTopic topic, CoalescingMode mode, List<PhysicalAssetActionWldtEvent<?>> actions) {
+        if(mode == CoalescingMode.DEBOUNCE){
+            publishAction(topic, actions.get(actions.size() - 1));
+            return;
+        }
         try {
-            mqttClient.subscribe(topic.getTopic(), topic.getQos(), (t, msg) ->{
-                List<? extends WldtEvent<?>> wldtEvents = topic.applySubscribeFunction(new String(msg.getPayload()));
-                wldtEvents.forEach(e -> {
-                    try {
-                        if(e instanceof PhysicalAssetEventWldtEvent){
-                            publishPhysicalAssetEventWldtEvent((PhysicalAssetEventWldtEvent<?>) e);
-                        }else if(e instanceof PhysicalAssetPropertyWldtEvent){
-                            publishPhysicalAssetPropertyWldtEvent((PhysicalAssetPropertyWldtEvent<?>) e);
-                        }
-                    } catch (EventBusException ex) {
-                        ex.printStackTrace();
-                    }
-                });
+            publishOnTopic(topic, ActionCoalescer.toJsonArray(actions), null);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void bindActionResponseTopics(Collection<DigitalTwinIncomingTopic> topics) {
+        topics.stream()
+                .filter(t -> t instanceof ActionResponseIncomingTopic)
+                .forEach(t -> ((ActionResponseIncomingTopic) t).setTracker(getActionResponseTracker()));
+    }
+
+    private void bindSparkplugTopics(Collection<DigitalTwinIncomingTopic> topics) {
+        topics.stream()
+                .filter(t -> t instanceof SparkplugIncomingTopic)
+                .forEach(t -> ((SparkplugIncomingTopic) t).setListener(sparkplugListener));
+    }
+
+    private void registerSparkplugGauge(String name, ToLongFunction<SparkplugIncomingTopic> counter) {
+        metrics.registerGauge(name, () -> incomingTopics.values().stream()
+                .filter(t -> t instanceof SparkplugIncomingTopic)
+                .mapToLong(t -> counter.applyAsLong((SparkplugIncomingTopic) t))
+                .sum());
+    }
+
+    private synchronized StalenessTracker getStalenessTracker() {
+        if(stalenessTracker == null)
+            stalenessTracker = new StalenessTracker(getTimingWheel(), metrics, this::dispatchWldtEvent);
+        return stalenessTracker;
+    }
+
+    private synchronized ActionResponseTracker getActionResponseTracker() {
+        if(actionResponseTracker == null)
+            actionResponseTracker = new ActionResponseTracker(getId() + "-", getTimingWheel(), metrics, this::dispatchWldtEvent);
+        return actionResponseTracker;
+    }
+
+    /**
+     * Shared by all the adapter timeouts, ticking on the adapter scheduler
+     * */
+    private synchronized HashedTimingWheel getTimingWheel() {
+        if(timingWheel == null){
+            timingWheel = new HashedTimingWheel(TIMING_WHEEL_TICK_MS, TIMING_WHEEL_SIZE);
+            timingWheel.start(getScheduler());
+        }
+        return timingWheel;
+    }
+
+    /**
+     * Subscribes to the given topics with multi-topic SUBSCRIBE packets of at most subscribeBatchSize filters.
+     * All the packets are sent before waiting for the first SUBACK, so startup costs about one broker round trip
+     * instead of one per topic. Topics rejected by the broker are reported one by one. sendRetained false is used when
+     * only the QoS of an existing subscription changes, see MqttTransport.subscribe.
+     * */
+    private void subscribeClientToDigitalTwinIncomingTopics(List<DigitalTwinIncomingTopic> topics, boolean sendRetained) {
+        long start = System.nanoTime();
+        int batchSize = getConfiguration().getSubscribeBatchSize();
+        Map<MqttTransport.SubscribeToken, List<DigitalTwinIncomingTopic>> pendingBatches = new LinkedHashMap<>();
+        for(int from = 0; from < topics.size(); from += batchSize){
+            List<DigitalTwinIncomingTopic> batch = topics.subList(from, Math.min(from + batchSize, topics.size()));
+            String[] topicFilters = new String[batch.size()];
+            int[] qos = new int[batch.size()];
+            MqttIncomingMessageListener[] listeners = new MqttIncomingMessageListener[batch.size()];
+            for(int i = 0; i < batch.size(); i++){
+                String topicFilter = batch.get(i).getTopic();
+                topicFilters[i] = topicFilter;
+                qos[i] = batch.get(i).getQos();
+                listeners[i] = (t, msg) -> onMqttMessageArrived(topicFilter, msg);
+            }
+            try {
+                pendingBatches.put(transport.subscribe(topicFilters, qos, listeners, sendRetained), batch);
+            } catch (MqttTransportException e) {
+                reportSubscribeFailure(batch, e.getMessage());
+            }
+        }
+        pendingBatches.forEach((token, batch) -> {
+            try {
+                int[] grantedQos = token.waitForGrantedQos(getConfiguration().getSubscribeTimeout() * 1000L);
+                for(int i = 0; i < batch.size(); i++){
+                    if(grantedQos == null || i >= grantedQos.length || grantedQos[i] >= MqttTransport.SUBSCRIBE_FAILURE)
+                        reportSubscribeFailure(Collections.singletonList(batch.get(i)), "rejected by the broker");
+                }
+            } catch (MqttTransportException e) {
+                reportSubscribeFailure(batch, e.getMessage());
+            }
+        });
+        metrics.counter("subscribe.topics").add(topics.size());
+        metrics.histogram("subscribe.latency").record(System.nanoTime() - start);
+    }
+
+    private void reportSubscribeFailure(List<DigitalTwinIncomingTopic> topics, String reason) {
+        metrics.counter("subscribe.topics.failed").add(topics.size());
+        topics.forEach(t -> logger.error("MQTT Physical Adapter - subscription to topic: {} failed: {}", t.getTopic(), reason));
+    }
+
+    private void onMqttMessageArrived(String topicFilter, MqttIncomingMessage msg) {
+        TrafficRecorder recorder = trafficRecorder;
+        if(recorder != null){
+            try {
+                recorder.append(msg);
+            } catch (IOException e) {
+                logger.error("MQTT Physical Adapter - recording stopped: {}", e.getMessage());
+                trafficRecorder = null;
+                recorder.close();
+            }
+        }
+        if(inboundQueue == null){
+            processIncomingMessage(topicFilter, msg, false);
+            return;
+        }
+        DigitalTwinIncomingTopic topic = incomingTopics.get(topicFilter);
+        OverflowPolicy policy = topic != null ? getConfiguration().getOverflowPolicy(topic) : getConfiguration().getInboundQueueOverflowPolicy();
+        InboundMessage inboundMessage = new InboundMessage(topicFilter, msg, topic != null ? topic.getPriority() : MessagePriority.NORMAL);
+        try {
+            inboundQueue.offer(inboundMessage, policy, manualAcks && msg.getQos() > 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //paused messages are acknowledged once processed, all the others as soon as they are queued or dropped
+        if(!inboundMessage.isAckPending()) acknowledge(msg);
+    }
+
+    /**
+     * Messages reaching the client before their subscription listener is registered, typically the QoS 1/2 messages
+     * queued in a persistent session, are routed to the first incoming topic whose filter matches
+     * */
+    private void onUnroutedMqttMessage(String topic, MqttIncomingMessage msg) {
+        for (DigitalTwinIncomingTopic incomingTopic : incomingTopics.values()) {
+            if(TopicFilters.matches(incomingTopic.getTopic(), topic)){
+                onMqttMessageArrived(incomingTopic.getTopic(), msg);
+                return;
+            }
+        }
+        metrics.counter("inbound.unrouted").increment();
+        acknowledge(msg);
+    }
+
+    private void processIncomingMessage(String topicFilter, MqttIncomingMessage msg, boolean ackPending) {
+        if(messageExecutor == null){
+            onIncomingMessage(topicFilter, msg);
+            if(ackPending) acknowledge(msg);
+            return;
+        }
+        DigitalTwinIncomingTopic topic = incomingTopics.get(topicFilter);
+        try {
+            messageExecutor.execute("in:" + topicFilter, topic == null || topic.isOrdered(), () -> {
+                onIncomingMessage(topicFilter, msg);
+                if(ackPending) acknowledge(msg);
             });
-        } catch (MqttException e) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acknowledge(MqttIncomingMessage msg) {
+        if(!manualAcks || msg.getQos() == 0) return;
+        try {
+            transport.acknowledge(msg);
+        } catch (MqttTransportException e) {
             e.printStackTrace();
         }
     }
 
-    private void connectToMqttBroker(){
+    private QueueWatermarkListener getInboundQueueWatermarkListener() {
+        QueueWatermarkListener listener = getConfiguration().getInboundQueueWatermarkListener();
+        return new QueueWatermarkListener() {
+            @Override
+            public void onHighWatermark(int queueSize, int capacity) {
+                metrics.counter("inbound.watermark.high").increment();
+                logger.warn("MQTT Physical Adapter - inbound queue above high watermark: {}/{}", queueSize, capacity);
+                if(listener != null) listener.onHighWatermark(queueSize, capacity);
+            }
+
+            @Override
+            public void onLowWatermark(int queueSize, int capacity) {
+                metrics.counter("inbound.watermark.low").increment();
+                logger.info("MQTT Physical Adapter - inbound queue back below low watermark: {}/{}", queueSize, capacity);
+                if(listener != null) listener.onLowWatermark(queueSize, capacity);
+            }
+        };
+    }
+
+    private void onIncomingMessage(String topicFilter, MqttIncomingMessage msg) {
+        //looked up on every message so that reloads swap the subscribe function without re-subscribing
+        DigitalTwinIncomingTopic topic = incomingTopics.get(topicFilter);
+        if(topic == null){
+            metrics.counter("reload.inflight.dropped").increment();
+            return;
+        }
+        List<? extends WldtEvent<?>> wldtEvents = topic.applySubscribeFunction(msg);
+        PropertyRules rules = propertyRules;
+        if(rules != null) wldtEvents = rules.apply(wldtEvents);
+        PhysicalAssetWarmUp currentWarmUp = warmUp;
+        wldtEvents.forEach(e -> {
+            if(e instanceof PhysicalAssetPropertyWldtEvent) onPropertyValue((PhysicalAssetPropertyWldtEvent<?>) e);
+            //the adapter is not bound yet: values become initial values, events are discarded
+            if(currentWarmUp != null && currentWarmUp.offer(e)){
+                if(!(e instanceof PhysicalAssetPropertyWldtEvent)) metrics.counter("warmup.events.discarded").increment();
+                return;
+            }
+            dispatchWldtEvent(e);
+        });
+    }
+
+    private void onPropertyValue(PhysicalAssetPropertyWldtEvent<?> propertyEvent) {
+        long now = System.currentTimeMillis();
+        lastValueStore.update(propertyEvent.getPhysicalPropertyId(), propertyEvent.getBody(), now);
+        StalenessTracker tracker = stalenessTracker;
+        if(tracker != null) tracker.onUpdate(propertyEvent.getPhysicalPropertyId());
+        List<WindowAggregator> propertyAggregators = windowAggregators.get(propertyEvent.getPhysicalPropertyId());
+        if(propertyAggregators != null) propertyAggregators.forEach(a -> a.addValue(propertyEvent.getBody(), now));
+    }
+
+    private void dispatchWldtEvent(WldtEvent<?> e) {
+        if(eventBatcher != null){
+            try {
+                if(eventBatcher.submit(e)) return;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        publishWldtEvent(e);
+    }
+
+    private void publishWldtEvent(WldtEvent<?> e) {
         try {
-            mqttClient.connect(getConfiguration().getConnectOptions());
-            logger.info("MQTT Physical Adapter - MQTT client connected to broker - clientId: {}", getConfiguration().getClientId());
-        } catch (MqttException e) {
+            if(e instanceof PhysicalAssetEventWldtEvent){
+                publishPhysicalAssetEventWldtEvent((PhysicalAssetEventWldtEvent<?>) e);
+            }else if(e instanceof PhysicalAssetPropertyWldtEvent){
+                publishPhysicalAssetPropertyWldtEvent((PhysicalAssetPropertyWldtEvent<?>) e);
+            }
+        } catch (EventBusException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void startWindowAggregators(List<WindowAggregation> aggregations) {
+        activeWindowAggregations = new ArrayList<>(aggregations);
+        for (WindowAggregation aggregation : aggregations) {
+            WindowAggregator aggregator = new WindowAggregator(aggregation);
+            windowAggregators.computeIfAbsent(aggregation.getPropertyKey(), k -> new CopyOnWriteArrayList<>()).add(aggregator);
+            aggregationTasks.add(getScheduler().scheduleAtFixedRate(() -> emitWindowAggregates(aggregator),
+                    aggregation.getSlideMs(), aggregation.getSlideMs(), TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Subscription QoS changes are sent from another thread, since waiting for the SUBACK would stall the scheduler
+     * */
+    private void startAdaptiveQos() {
+        AdaptiveQos adaptiveQos = getConfiguration().getAdaptiveQos().orElse(null);
+        if(adaptiveQos == null) return;
+        int publishWindow = getConfiguration().getPublishWindow();
+        AdaptiveQosController controller = new AdaptiveQosController(adaptiveQos,
+                () -> (double) transport.getInFlightCount() / publishWindow,
+                () -> inboundQueue != null ? (double) inboundQueue.size() / inboundQueue.getCapacity() : 0,
+                outgoingTopics::values,
+                incomingTopics::values,
+                topics -> CompletableFuture.runAsync(() -> subscribeClientToDigitalTwinIncomingTopics(topics, false)),
+                metrics);
+        adaptiveQosTask = getScheduler().scheduleAtFixedRate(controller::check,
+                adaptiveQos.getCheckIntervalMs(), adaptiveQos.getCheckIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private List<String> getWindowAggregationPropertyKeys() {
+        List<String> keys = new ArrayList<>();
+        for (WindowAggregation aggregation : getConfiguration().getWindowAggregations())
+            aggregation.getOperations().forEach(op -> keys.add(op.derivedPropertyKey(aggregation.getPropertyKey())));
+        return keys;
+    }
+
+    private void stopWindowAggregators() {
+        aggregationTasks.forEach(t -> t.cancel(false));
+        aggregationTasks.clear();
+        windowAggregators.clear();
+    }
+
+    private void emitWindowAggregates(WindowAggregator aggregator) {
+        long now = System.currentTimeMillis();
+        double[] results = aggregator.closeWindow(now);
+        if(results == null) return;
+        WindowAggregation aggregation = aggregator.getAggregation();
+        for(int i = 0; i < results.length; i++){
+            String derivedKey = aggregation.getOperations().get(i).derivedPropertyKey(aggregation.getPropertyKey());
+            lastValueStore.updateDouble(derivedKey, results[i], now);
+            try {
+                dispatchWldtEvent(new PhysicalAssetPropertyWldtEvent<>(derivedKey, results[i]));
+            } catch (EventBusException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if(scheduler == null){
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "mqtt-pa-scheduler-" + getId());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * On reconnect, a persistent session still known by the broker keeps the subscriptions and the queued QoS 1/2
+     * messages. Otherwise (clean session, or session expired/lost by a failover) every topic is subscribed again.
+     * */
+    private void onConnected(boolean sessionPresent, boolean reconnect) {
+        logger.info("MQTT Physical Adapter - MQTT client connected to broker - clientId: {}", getConfiguration().getClientId());
+        if(!reconnect) return;
+        if(sessionPresent && !getConfiguration().isCleanSessionEnabled()){
+            metrics.counter("connection.session.resumed").increment();
+            return;
+        }
+        if(!getConfiguration().isCleanSessionEnabled())
+            logger.warn("MQTT Physical Adapter - persistent session not found on the broker, subscribing again");
+        metrics.counter("connection.resubscribe").increment();
+        subscribeClientToDigitalTwinIncomingTopics(new ArrayList<>(incomingTopics.values()), true);
+    }
+
+    private void onConnectionStateChanged(ConnectionState previous, ConnectionState current) {
+        logger.info("MQTT Physical Adapter - connection state: {} -> {}", previous, current);
+        ConnectionStateListener listener = getConfiguration().getConnectionStateListener();
+        if(listener != null) listener.onConnectionStateChanged(previous, current);
+        if(!getConfiguration().isConnectionStateEventEnabled()) return;
+        try {
+            dispatchWldtEvent(new PhysicalAssetEventWldtEvent<>(MqttPhysicalAdapterConfiguration.CONNECTION_STATE_EVENT_KEY, current.name()));
+        } catch (EventBusException e) {
             e.printStackTrace();
         }
     }
+
+    private static MqttTransport createTransport(MqttPhysicalAdapterConfiguration configuration) throws MqttException {
+        if(configuration.getProtocolVersion() != MqttProtocolVersion.MQTT_5)
+            return new MqttV3Transport(configuration);
+        try {
+            return new MqttV5Transport(configuration);
+        } catch (MqttTransportException e) {
+            throw new MqttException(e.getCause() != null ? e.getCause() : e);
+        }
+    }
 }
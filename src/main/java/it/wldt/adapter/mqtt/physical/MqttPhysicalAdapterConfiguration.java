@@ -7,18 +7,37 @@ import it.wldt.adapter.physical.PhysicalAssetAction;
 import it.wldt.adapter.physical.PhysicalAssetDescription;
 import it.wldt.adapter.physical.PhysicalAssetEvent;
 import it.wldt.adapter.physical.PhysicalAssetProperty;
+import it.wldt.adapter.mqtt.physical.aggregation.WindowAggregation;
+import it.wldt.adapter.mqtt.physical.dispatch.InboundMessageQueue;
+import it.wldt.adapter.mqtt.physical.dispatch.OverflowPolicy;
+import it.wldt.adapter.mqtt.physical.qos.AdaptiveQos;
+import it.wldt.adapter.mqtt.physical.rules.PropertyRule;
+import it.wldt.adapter.mqtt.physical.dispatch.QueueWatermarkListener;
 import it.wldt.adapter.mqtt.physical.exception.MqttPhysicalAdapterConfigurationException;
+import it.wldt.adapter.mqtt.physical.execution.ExecutionMode;
 import it.wldt.adapter.mqtt.physical.topic.incoming.DigitalTwinIncomingTopic;
 import it.wldt.adapter.mqtt.physical.topic.outgoing.DigitalTwinOutgoingTopic;
+import it.wldt.adapter.mqtt.physical.transport.ConnectionStateListener;
+import it.wldt.adapter.mqtt.physical.transport.MqttProtocolVersion;
+import it.wldt.adapter.mqtt.physical.transport.MqttTransportScheme;
+import it.wldt.adapter.mqtt.physical.transport.ReconnectBackoff;
+import it.wldt.adapter.mqtt.physical.transport.TlsConfiguration;
 import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
 
+import javax.net.ssl.SSLSocketFactory;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class MqttPhysicalAdapterConfiguration {
+
+    //Key of the PhysicalAssetEvent carrying the broker connection state, when enabled
+    public static final String CONNECTION_STATE_EVENT_KEY = "mqtt.connection.state";
+
     private final String brokerAddress;
     private final Integer brokerPort;
     private String username;
@@ -27,7 +46,40 @@ public class MqttPhysicalAdapterConfiguration {
     private boolean cleanSessionFlag = true;
     private Integer connectionTimeout = 10;
     private MqttClientPersistence persistence = new MemoryPersistence();
+    private org.eclipse.paho.mqttv5.client.MqttClientPersistence mqttV5Persistence = new org.eclipse.paho.mqttv5.client.persist.MemoryPersistence();
     private boolean automaticReconnectFlag = true;
+    private String configFilePath;
+    private boolean hotReloadFlag = false;
+    private Integer subscribeBatchSize = 100;
+    private Integer subscribeTimeout = 30;
+    private Integer warmUpTimeout = 0;
+    private Integer warmUpIdleTimeout = 0;
+    private Integer eventBatchMaxSize = 1;
+    private Long eventBatchMaxDelayMicros = 0L;
+    private Integer inboundQueueCapacity = 0;
+    private OverflowPolicy inboundQueueOverflowPolicy = OverflowPolicy.BLOCK;
+    private Integer inboundQueueBlockTimeout = 100;
+    private Integer inboundQueueHighWatermark;
+    private Integer inboundQueueLowWatermark;
+    private Integer inboundQueueStarvationLimit = InboundMessageQueue.DEFAULT_STARVATION_LIMIT;
+    private QueueWatermarkListener inboundQueueWatermarkListener;
+    private MqttProtocolVersion protocolVersion = MqttProtocolVersion.MQTT_3_1_1;
+    private Integer topicAliasMaximum = 0;
+    private MqttTransportScheme transportScheme = MqttTransportScheme.TCP;
+    private String webSocketPath = "/mqtt";
+    private TlsConfiguration tlsConfiguration;
+    private SSLSocketFactory sslSocketFactory;
+    private ReconnectBackoff reconnectBackoff = new ReconnectBackoff(250, 30_000, 2.0, 0.5);
+    private Long sessionExpiryInterval = 3600L;
+    private ConnectionStateListener connectionStateListener;
+    private boolean connectionStateEventFlag = false;
+    private ExecutionMode executionMode = ExecutionMode.CALLER;
+    private Integer executionMaxThreads = 64;
+    private Integer executionMaxInFlight = 1000;
+    private String recordingDirectory;
+    private Integer publishWindow = MqttConnectOptions.MAX_INFLIGHT_DEFAULT;
+    private AdaptiveQos adaptiveQos;
+    private Integer recordingSegmentSize = 64 * 1024 * 1024;
 
 
     private PhysicalAssetDescription physicalAssetDescription;
@@ -36,6 +88,10 @@ public class MqttPhysicalAdapterConfiguration {
     private final List<DigitalTwinIncomingTopic> incomingTopics = new ArrayList<>();
     //OUTGOING TOPICS: Topics on which the PhysicalAdapter must publish
     private final Map<String, DigitalTwinOutgoingTopic> outgoingTopics = new HashMap<>();
+    //WINDOW AGGREGATIONS: numeric properties aggregated into derived properties
+    private final List<WindowAggregation> windowAggregations = new ArrayList<>();
+    private final Map<String, Long> propertyMaxAges = new HashMap<>();
+    private final List<PropertyRule> propertyRules = new ArrayList<>();
 
     protected MqttPhysicalAdapterConfiguration(String brokerAddress, Integer brokerPort, String clientId) {
         this.brokerAddress = brokerAddress;
@@ -58,7 +114,7 @@ public class MqttPhysicalAdapterConfiguration {
     public static MqttPhysicalAdapterConfigurationBuilder builder(String filepath) throws MqttPhysicalAdapterConfigurationException, IOException {
         ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
         JsonNode jsonNode = yamlMapper.readTree(new File(filepath));
-        return new  MqttPhysicalAdapterConfigurationBuilder(jsonNode);
+        return new  MqttPhysicalAdapterConfigurationBuilder(jsonNode, filepath);
     }
 
     public String getBrokerAddress() {
@@ -82,18 +138,172 @@ public class MqttPhysicalAdapterConfiguration {
     }
 
     public String getBrokerConnectionString(){
-        return String.format("tcp://%s:%d", brokerAddress, brokerPort);
+        if(transportScheme.isWebSocket())
+            return String.format("%s://%s:%d%s", transportScheme.getScheme(), brokerAddress, brokerPort, webSocketPath);
+        return String.format("%s://%s:%d", transportScheme.getScheme(), brokerAddress, brokerPort);
+    }
+
+    public String getConfigFilePath() {
+        return configFilePath;
+    }
+
+    public boolean isCleanSessionEnabled() {
+        return cleanSessionFlag;
+    }
+
+    public boolean isAutomaticReconnectEnabled() {
+        return automaticReconnectFlag;
+    }
+
+    public ReconnectBackoff getReconnectBackoff() {
+        return reconnectBackoff;
+    }
+
+    public Long getSessionExpiryInterval() {
+        return sessionExpiryInterval;
+    }
+
+    public ConnectionStateListener getConnectionStateListener() {
+        return connectionStateListener;
+    }
+
+    public boolean isConnectionStateEventEnabled() {
+        return connectionStateEventFlag;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public Integer getExecutionMaxThreads() {
+        return executionMaxThreads;
+    }
+
+    public Integer getExecutionMaxInFlight() {
+        return executionMaxInFlight;
+    }
+
+    /**
+     * Maximum number of QoS 1/2 publishes waiting for the broker acknowledgement. It is the Paho max in-flight with
+     * MQTT 3.1.1, and is enforced by the transport with MQTT 5 (where the broker Receive Maximum also applies).
+     * */
+    public Integer getPublishWindow() {
+        return publishWindow;
+    }
+
+    public Optional<AdaptiveQos> getAdaptiveQos() {
+        return Optional.ofNullable(adaptiveQos);
+    }
+
+    /**
+     * Directory where the incoming messages are recorded, empty when recording is disabled
+     * */
+    public Optional<String> getRecordingDirectory() {
+        return Optional.ofNullable(recordingDirectory);
+    }
+
+    public Integer getRecordingSegmentSize() {
+        return recordingSegmentSize;
+    }
+
+    public boolean isHotReloadEnabled() {
+        return hotReloadFlag && configFilePath != null;
+    }
+
+    public Integer getSubscribeBatchSize() {
+        return subscribeBatchSize;
+    }
+
+    public Integer getSubscribeTimeout() {
+        return subscribeTimeout;
+    }
+
+    public Integer getWarmUpTimeout() {
+        return warmUpTimeout;
+    }
+
+    public Integer getWarmUpIdleTimeout() {
+        return warmUpIdleTimeout;
+    }
+
+    public boolean isWarmUpEnabled() {
+        return warmUpTimeout > 0;
+    }
+
+    public Integer getEventBatchMaxSize() {
+        return eventBatchMaxSize;
+    }
+
+    public Long getEventBatchMaxDelayMicros() {
+        return eventBatchMaxDelayMicros;
+    }
+
+    public boolean isEventBatchingEnabled() {
+        return eventBatchMaxSize > 1;
+    }
+
+    public boolean isInboundQueueEnabled() {
+        return inboundQueueCapacity > 0;
+    }
+
+    public Integer getInboundQueueCapacity() {
+        return inboundQueueCapacity;
+    }
+
+    public OverflowPolicy getInboundQueueOverflowPolicy() {
+        return inboundQueueOverflowPolicy;
+    }
+
+    public Integer getInboundQueueBlockTimeout() {
+        return inboundQueueBlockTimeout;
+    }
+
+    public Integer getInboundQueueHighWatermark() {
+        return inboundQueueHighWatermark != null ? inboundQueueHighWatermark : inboundQueueCapacity * 8 / 10;
+    }
+
+    public Integer getInboundQueueLowWatermark() {
+        return inboundQueueLowWatermark != null ? inboundQueueLowWatermark : inboundQueueCapacity / 2;
+    }
+
+    public Integer getInboundQueueStarvationLimit() {
+        return inboundQueueStarvationLimit;
+    }
+
+    public QueueWatermarkListener getInboundQueueWatermarkListener() {
+        return inboundQueueWatermarkListener;
+    }
+
+    public OverflowPolicy getOverflowPolicy(DigitalTwinIncomingTopic topic) {
+        return topic.getOverflowPolicy().orElse(inboundQueueOverflowPolicy);
+    }
+
+    /**
+     * Manual acks are needed only when the inbound queue can pause a topic
+     * */
+    public boolean isManualAcksEnabled() {
+        return isInboundQueueEnabled() && incomingTopics.stream().anyMatch(t -> getOverflowPolicy(t) == OverflowPolicy.PAUSE);
     }
 
     public MqttClientPersistence getPersistence() {
         return persistence;
     }
 
+    public org.eclipse.paho.mqttv5.client.MqttClientPersistence getMqttV5Persistence() {
+        return mqttV5Persistence;
+    }
+
     public MqttConnectOptions getConnectOptions(){
         MqttConnectOptions options = new MqttConnectOptions();
-        options.setAutomaticReconnect(automaticReconnectFlag);
+        //reconnects are handled by the ConnectionSupervisor
+        options.setAutomaticReconnect(false);
         options.setCleanSession(cleanSessionFlag);
         options.setConnectionTimeout(connectionTimeout);
+        options.setMaxInflight(publishWindow);
+        if(transportScheme.isSecure() && sslSocketFactory != null){
+            options.setSocketFactory(sslSocketFactory);
+            options.setHttpsHostnameVerificationEnabled(tlsConfiguration.isHostnameVerificationEnabled());
+        }
         if(username != null && !username.isEmpty() && password != null && !password.isEmpty()){
             options.setUserName(username);
             options.setPassword(password.toCharArray());
@@ -101,6 +311,46 @@ public class MqttPhysicalAdapterConfiguration {
         return options;
     }
 
+    public MqttProtocolVersion getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    public Integer getTopicAliasMaximum() {
+        return topicAliasMaximum;
+    }
+
+    public MqttTransportScheme getTransportScheme() {
+        return transportScheme;
+    }
+
+    public String getWebSocketPath() {
+        return webSocketPath;
+    }
+
+    public Optional<TlsConfiguration> getTlsConfiguration() {
+        return Optional.ofNullable(tlsConfiguration);
+    }
+
+    public MqttConnectionOptions getMqtt5ConnectionOptions(){
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setAutomaticReconnect(false);
+        options.setCleanStart(cleanSessionFlag);
+        //with a clean start the session ends with the connection
+        if(!cleanSessionFlag) options.setSessionExpiryInterval(sessionExpiryInterval);
+        options.setConnectionTimeout(connectionTimeout);
+        //topic aliases the broker may use when sending to the adapter
+        options.setTopicAliasMaximum(topicAliasMaximum);
+        if(transportScheme.isSecure() && sslSocketFactory != null){
+            options.setSocketFactory(sslSocketFactory);
+            options.setHttpsHostnameVerificationEnabled(tlsConfiguration.isHostnameVerificationEnabled());
+        }
+        if(username != null && !username.isEmpty() && password != null && !password.isEmpty()){
+            options.setUserName(username);
+            options.setPassword(password.getBytes(StandardCharsets.UTF_8));
+        }
+        return options;
+    }
+
     public List<DigitalTwinIncomingTopic> getIncomingTopics() {
         return incomingTopics;
     }
@@ -113,6 +363,21 @@ public class MqttPhysicalAdapterConfiguration {
         return outgoingTopics.containsKey(key) ? Optional.of(outgoingTopics.get(key)) : Optional.empty();
     }
 
+    public List<WindowAggregation> getWindowAggregations() {
+        return windowAggregations;
+    }
+
+    /**
+     * Maximum age (ms) of the properties tracked for staleness, by property key
+     * */
+    public Map<String, Long> getPropertyMaxAges() {
+        return propertyMaxAges;
+    }
+
+    public List<PropertyRule> getPropertyRules() {
+        return propertyRules;
+    }
+
     public PhysicalAssetDescription getPhysicalAssetDescription() {
         return physicalAssetDescription;
     }
@@ -125,6 +390,18 @@ public class MqttPhysicalAdapterConfiguration {
         this.outgoingTopics.put(actionKey,topic);
     }
 
+    protected void addWindowAggregation(WindowAggregation aggregation){
+        this.windowAggregations.add(aggregation);
+    }
+
+    protected void setPropertyMaxAge(String propertyKey, Long maxAgeMs){
+        this.propertyMaxAges.put(propertyKey, maxAgeMs);
+    }
+
+    protected void addPropertyRule(PropertyRule rule){
+        this.propertyRules.add(rule);
+    }
+
     protected void setPhysicalAssetDescription(List<PhysicalAssetAction> actions,
                                             List<PhysicalAssetProperty<?>> properties,
                                             List<PhysicalAssetEvent> events){
@@ -143,9 +420,114 @@ public class MqttPhysicalAdapterConfiguration {
         this.automaticReconnectFlag = automaticReconnect;
     }
 
+    protected void setReconnectBackoff(ReconnectBackoff reconnectBackoff) {
+        this.reconnectBackoff = reconnectBackoff;
+    }
+
+    protected void setSessionExpiryInterval(Long sessionExpiryInterval) {
+        this.sessionExpiryInterval = sessionExpiryInterval;
+    }
+
+    protected void setConnectionStateListener(ConnectionStateListener connectionStateListener) {
+        this.connectionStateListener = connectionStateListener;
+    }
+
+    protected void setExecution(ExecutionMode executionMode, Integer maxThreads, Integer maxInFlight) {
+        this.executionMode = executionMode;
+        this.executionMaxThreads = maxThreads;
+        this.executionMaxInFlight = maxInFlight;
+    }
+
+    protected void setPublishWindow(Integer publishWindow) {
+        this.publishWindow = publishWindow;
+    }
+
+    protected void setAdaptiveQos(AdaptiveQos adaptiveQos) {
+        this.adaptiveQos = adaptiveQos;
+    }
+
+    protected void setRecording(String recordingDirectory, Integer recordingSegmentSize) {
+        this.recordingDirectory = recordingDirectory;
+        this.recordingSegmentSize = recordingSegmentSize;
+    }
+
+    protected void setConnectionStateEventFlag(boolean connectionStateEvent) {
+        this.connectionStateEventFlag = connectionStateEvent;
+    }
+
     protected void setMqttClientPersistence(MqttClientPersistence persistence) {
         this.persistence = persistence;
     }
 
+    protected void setMqttV5ClientPersistence(org.eclipse.paho.mqttv5.client.MqttClientPersistence persistence) {
+        this.mqttV5Persistence = persistence;
+    }
+
+    protected void setSubscribeBatchSize(Integer subscribeBatchSize) {
+        this.subscribeBatchSize = subscribeBatchSize;
+    }
+
+    protected void setSubscribeTimeout(Integer subscribeTimeout) {
+        this.subscribeTimeout = subscribeTimeout;
+    }
+
+    protected void setWarmUpTimeout(Integer warmUpTimeout) {
+        this.warmUpTimeout = warmUpTimeout;
+    }
+
+    protected void setWarmUpIdleTimeout(Integer warmUpIdleTimeout) {
+        this.warmUpIdleTimeout = warmUpIdleTimeout;
+    }
+
+    protected void setEventBatching(Integer maxSize, Long maxDelayMicros) {
+        this.eventBatchMaxSize = maxSize;
+        this.eventBatchMaxDelayMicros = maxDelayMicros;
+    }
+
+    protected void setInboundQueue(Integer capacity, OverflowPolicy overflowPolicy, Integer blockTimeout) {
+        this.inboundQueueCapacity = capacity;
+        this.inboundQueueOverflowPolicy = overflowPolicy;
+        this.inboundQueueBlockTimeout = blockTimeout;
+    }
+
+    protected void setInboundQueueStarvationLimit(Integer starvationLimit) {
+        this.inboundQueueStarvationLimit = starvationLimit;
+    }
+
+    protected void setInboundQueueWatermarks(Integer highWatermark, Integer lowWatermark, QueueWatermarkListener listener) {
+        this.inboundQueueHighWatermark = highWatermark;
+        this.inboundQueueLowWatermark = lowWatermark;
+        this.inboundQueueWatermarkListener = listener;
+    }
+
+    protected void setProtocolVersion(MqttProtocolVersion protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    protected void setTopicAliasMaximum(Integer topicAliasMaximum) {
+        this.topicAliasMaximum = topicAliasMaximum;
+    }
+
+    protected void setTransportScheme(MqttTransportScheme transportScheme) {
+        this.transportScheme = transportScheme;
+    }
+
+    protected void setWebSocketPath(String webSocketPath) {
+        this.webSocketPath = webSocketPath;
+    }
+
+    protected void setTls(TlsConfiguration tlsConfiguration, SSLSocketFactory sslSocketFactory) {
+        this.tlsConfiguration = tlsConfiguration;
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    protected void setConfigFilePath(String configFilePath) {
+        this.configFilePath = configFilePath;
+    }
+
+    protected void setHotReloadFlag(boolean hotReload) {
+        this.hotReloadFlag = hotReload;
+    }
+
 }
 
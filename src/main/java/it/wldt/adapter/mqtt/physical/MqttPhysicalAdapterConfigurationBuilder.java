@@ -8,13 +8,43 @@ import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
+import it.wldt.adapter.mqtt.physical.aggregation.AggregationOperation;
+import it.wldt.adapter.mqtt.physical.aggregation.WindowAggregation;
+import it.wldt.adapter.mqtt.physical.coalescing.ActionCoalescing;
+import it.wldt.adapter.mqtt.physical.coalescing.CoalescingMode;
+import it.wldt.adapter.mqtt.physical.correlation.ActionResponseConfiguration;
+import it.wldt.adapter.mqtt.physical.correlation.ActionResponseIncomingTopic;
+import it.wldt.adapter.mqtt.physical.correlation.ActionResponseTracker;
+import it.wldt.adapter.mqtt.physical.correlation.CorrelationIds;
+import it.wldt.adapter.mqtt.physical.correlation.CorrelationMode;
+import it.wldt.adapter.mqtt.physical.dispatch.MessagePriority;
+import it.wldt.adapter.mqtt.physical.dispatch.OverflowPolicy;
+import it.wldt.adapter.mqtt.physical.qos.AdaptiveQos;
+import it.wldt.adapter.mqtt.physical.rules.PropertyRule;
+import it.wldt.adapter.mqtt.physical.staleness.StalenessTracker;
+import it.wldt.adapter.mqtt.physical.sparkplug.SparkplugIncomingTopic;
+import it.wldt.adapter.mqtt.physical.dispatch.QueueWatermarkListener;
 import it.wldt.adapter.mqtt.physical.exception.MqttPhysicalAdapterConfigurationException;
+import it.wldt.adapter.mqtt.physical.schema.JsonSchema;
+import it.wldt.adapter.mqtt.physical.execution.ExecutionMode;
+import it.wldt.adapter.mqtt.physical.topic.MqttQosLevel;
 import it.wldt.adapter.mqtt.physical.topic.MqttTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.BinaryIncomingTopic;
 import it.wldt.adapter.mqtt.physical.topic.incoming.DigitalTwinIncomingTopic;
 import it.wldt.adapter.mqtt.physical.topic.incoming.EventIncomingTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.FlattenedJsonObjectIncomingTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.JsonObjectPropertyIncomingTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.PayloadDecoder;
 import it.wldt.adapter.mqtt.physical.topic.incoming.PropertyIncomingTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.ScalarDecoders;
+import it.wldt.adapter.mqtt.physical.topic.incoming.ScalarPropertyIncomingTopic;
 import it.wldt.adapter.mqtt.physical.topic.outgoing.ActionOutgoingTopic;
 import it.wldt.adapter.mqtt.physical.topic.outgoing.DigitalTwinOutgoingTopic;
+import it.wldt.adapter.mqtt.physical.transport.ConnectionStateListener;
+import it.wldt.adapter.mqtt.physical.transport.MqttProtocolVersion;
+import it.wldt.adapter.mqtt.physical.transport.MqttTransportScheme;
+import it.wldt.adapter.mqtt.physical.transport.ReconnectBackoff;
+import it.wldt.adapter.mqtt.physical.transport.TlsConfiguration;
 import it.wldt.adapter.physical.PhysicalAssetAction;
 import it.wldt.adapter.physical.PhysicalAssetEvent;
 import it.wldt.adapter.physical.PhysicalAssetProperty;
@@ -23,6 +53,7 @@ import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -31,6 +62,9 @@ import java.util.stream.Collectors;
 
 public class MqttPhysicalAdapterConfigurationBuilder {
 
+    private static final int DEFAULT_AGGREGATION_CAPACITY = 4096;
+    private static final int DEFAULT_BINARY_MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
     private final MqttPhysicalAdapterConfiguration configuration;
     private JsonNode configFileContent;
     private final List<PhysicalAssetProperty<?>> properties = new ArrayList<>();
@@ -54,11 +88,16 @@ public class MqttPhysicalAdapterConfigurationBuilder {
     }
 
     public MqttPhysicalAdapterConfigurationBuilder(JsonNode fileContent) throws MqttPhysicalAdapterConfigurationException, IOException {
+        this(fileContent, null);
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder(JsonNode fileContent, String filepath) throws MqttPhysicalAdapterConfigurationException, IOException {
         /*if(!isValid(brokerAddress) || !isValid(brokerPort))
             throw new MqttPhysicalAdapterConfigurationException("Broker Address cannot be empty strings or null and Broker Port must be a positive number");
         */
         configFileContent = fileContent;
         configuration = new MqttPhysicalAdapterConfiguration(getBrokerAddress(), getBrokerPort());
+        configuration.setConfigFilePath(filepath);
     }
 
     public <T> MqttPhysicalAdapterConfigurationBuilder addPhysicalAssetPropertyAndTopic(String propertyKey, T initialValue, String topic, Function<String, T> topicFunction) throws MqttPhysicalAdapterConfigurationException {
@@ -67,6 +106,86 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         return addPhysicalAssetProperty(propertyKey, initialValue);
     }
 
+    /**
+     * Adds a property whose value is decoded directly from the payload bytes, e.g. with ScalarDecoders.INT.
+     * Payloads the decoder rejects (null) are counted and discarded.
+     * */
+    public <T> MqttPhysicalAdapterConfigurationBuilder addScalarPropertyAndTopic(String propertyKey, T initialValue, String topic, PayloadDecoder<T> decoder) throws MqttPhysicalAdapterConfigurationException {
+        if(decoder == null) throw new MqttPhysicalAdapterConfigurationException("PayloadDecoder cannot be null");
+        ScalarPropertyIncomingTopic<T> incomingTopic = new ScalarPropertyIncomingTopic<>(topic, propertyKey, decoder);
+        checkTopicAndFunction(topic, incomingTopic.getSubscribeFunction(), this.configuration.getIncomingTopics().stream().map(MqttTopic::getTopic).collect(Collectors.toList()));
+        configuration.addIncomingTopic(incomingTopic);
+        return addPhysicalAssetProperty(propertyKey, initialValue);
+    }
+
+    /**
+     * Adds a json-object property parsed and validated in a single pass. Payloads that are not JSON objects or do
+     * not match the schema (null to accept any object) are discarded and sampled.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder addJsonObjectPropertyAndTopic(String propertyKey, ObjectNode initialValue, String topic, JsonSchema schema) throws MqttPhysicalAdapterConfigurationException {
+        JsonObjectPropertyIncomingTopic incomingTopic = new JsonObjectPropertyIncomingTopic(topic, propertyKey, schema);
+        checkTopicAndFunction(topic, incomingTopic.getSubscribeFunction(), this.configuration.getIncomingTopics().stream().map(MqttTopic::getTopic).collect(Collectors.toList()));
+        configuration.addIncomingTopic(incomingTopic);
+        return addPhysicalAssetProperty(propertyKey, initialValue);
+    }
+
+    /**
+     * Adds a json-object property split into one property per known field (propertyKey.field), taken from the
+     * initial value and the schema properties. Each payload publishes only the fields whose value changed.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder addFlattenedJsonObjectPropertyAndTopic(String propertyKey, ObjectNode initialValue, String topic, JsonSchema schema) throws MqttPhysicalAdapterConfigurationException {
+        FlattenedJsonObjectIncomingTopic incomingTopic = new FlattenedJsonObjectIncomingTopic(topic, propertyKey, initialValue, schema);
+        if(incomingTopic.getInitialValues().isEmpty())
+            throw new MqttPhysicalAdapterConfigurationException("A flattened json-object property needs at least one field in its initial value or schema");
+        checkTopicAndFunction(topic, incomingTopic.getSubscribeFunction(), this.configuration.getIncomingTopics().stream().map(MqttTopic::getTopic).collect(Collectors.toList()));
+        configuration.addIncomingTopic(incomingTopic);
+        incomingTopic.getInitialValues().forEach(this::addPhysicalAssetProperty);
+        return this;
+    }
+
+    /**
+     * Follows a Sparkplug B edge node (edgeNodeId null for every edge node of the group). Its metrics are added to
+     * the PhysicalAssetDescription as properties when their birth certificates arrive.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder addSparkplugEdgeNode(String groupId, String edgeNodeId, long rebirthIntervalMs) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(groupId) || groupId.contains("/") || groupId.contains("+") || groupId.contains("#"))
+            throw new MqttPhysicalAdapterConfigurationException("Sparkplug group id must be a non empty topic level without wildcards");
+        if(edgeNodeId != null && !"+".equals(edgeNodeId) && (edgeNodeId.isEmpty() || edgeNodeId.contains("/") || edgeNodeId.contains("+") || edgeNodeId.contains("#")))
+            throw new MqttPhysicalAdapterConfigurationException("Sparkplug edge node id must be a topic level or + for every edge node");
+        if(rebirthIntervalMs <= 0) throw new MqttPhysicalAdapterConfigurationException("Rebirth interval must be a positive number");
+        SparkplugIncomingTopic incomingTopic = new SparkplugIncomingTopic(groupId, edgeNodeId, rebirthIntervalMs);
+        checkTopicAndFunction(incomingTopic.getTopic(), incomingTopic.getSubscribeFunction(), this.configuration.getIncomingTopics().stream().map(MqttTopic::getTopic).collect(Collectors.toList()));
+        configuration.addIncomingTopic(incomingTopic);
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder addSparkplugEdgeNode(String groupId, String edgeNodeId) throws MqttPhysicalAdapterConfigurationException {
+        return addSparkplugEdgeNode(groupId, edgeNodeId, SparkplugIncomingTopic.DEFAULT_REBIRTH_INTERVAL_MS);
+    }
+
+    /**
+     * Adds a property whose value is the payload as a read-only ByteBuffer, without copy or decoding.
+     * Payloads larger than maxPayloadSize bytes are discarded.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder addBinaryPropertyAndTopic(String propertyKey, String topic, Integer maxPayloadSize) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(maxPayloadSize)) throw new MqttPhysicalAdapterConfigurationException("Max payload size must be a positive number");
+        BinaryIncomingTopic incomingTopic = BinaryIncomingTopic.property(topic, propertyKey, maxPayloadSize);
+        checkTopicAndFunction(topic, incomingTopic.getSubscribeFunction(), this.configuration.getIncomingTopics().stream().map(MqttTopic::getTopic).collect(Collectors.toList()));
+        configuration.addIncomingTopic(incomingTopic);
+        return addPhysicalAssetProperty(propertyKey, BinaryIncomingTopic.EMPTY);
+    }
+
+    /**
+     * Adds an event whose body is the payload as a read-only ByteBuffer, without copy or decoding
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder addBinaryEventAndTopic(String eventKey, String type, String topic, Integer maxPayloadSize) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(maxPayloadSize)) throw new MqttPhysicalAdapterConfigurationException("Max payload size must be a positive number");
+        BinaryIncomingTopic incomingTopic = BinaryIncomingTopic.event(topic, eventKey, maxPayloadSize);
+        checkTopicAndFunction(topic, incomingTopic.getSubscribeFunction(), this.configuration.getIncomingTopics().stream().map(MqttTopic::getTopic).collect(Collectors.toList()));
+        configuration.addIncomingTopic(incomingTopic);
+        return addPhysicalAssetEvent(eventKey, type);
+    }
+
     public <T> MqttPhysicalAdapterConfigurationBuilder addPhysicalAssetActionAndTopic(String actionKey, String type, String contentType,
                                                                                       String topic, Function<T, String> topicFunction) throws MqttPhysicalAdapterConfigurationException {
         checkTopicAndFunction(topic, topicFunction, this.configuration.getOutgoingTopics().values().stream().map(MqttTopic::getTopic).collect(Collectors.toList()));
@@ -92,12 +211,69 @@ public class MqttPhysicalAdapterConfigurationBuilder {
     }
 
     public MqttPhysicalAdapterConfigurationBuilder addOutgoingTopic(String actionKey,  String type, String contentType, DigitalTwinOutgoingTopic topic) throws MqttPhysicalAdapterConfigurationException {
-        if(topic == null || isValid(actionKey)) throw new MqttPhysicalAdapterConfigurationException("DigitalTwinOutgoingTopic cannot be null | Action key cannot be empty string or null");
+        if(topic == null || !isValid(actionKey)) throw new MqttPhysicalAdapterConfigurationException("DigitalTwinOutgoingTopic cannot be null | Action key cannot be empty string or null");
         checkTopicAndFunction(topic.getTopic(), topic.getPublishFunction(), this.configuration.getOutgoingTopics().values().stream().map(MqttTopic::getTopic).collect(Collectors.toList()));
         configuration.addOutgoingTopic(actionKey, topic);
         return addPhysicalAssetAction(actionKey, type, contentType);
     }
 
+    /**
+     * Makes the property stale when it receives no value for maxAgeMs, with the "<propertyKey>.stale" event, and fresh
+     * again at its next value, with the "<propertyKey>.fresh" event
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setPropertyMaxAge(String propertyKey, Long maxAgeMs) throws MqttPhysicalAdapterConfigurationException {
+        if(maxAgeMs == null || maxAgeMs <= 0)
+            throw new MqttPhysicalAdapterConfigurationException("Max age must be a positive number");
+        if(this.properties.stream().noneMatch(p -> p.getKey().equals(propertyKey)))
+            throw new MqttPhysicalAdapterConfigurationException("property not defined: " + propertyKey);
+        if(this.configuration.getPropertyMaxAges().containsKey(propertyKey))
+            throw new MqttPhysicalAdapterConfigurationException("max age already defined: " + propertyKey);
+        this.configuration.setPropertyMaxAge(propertyKey, maxAgeMs);
+        addPhysicalAssetEvent(StalenessTracker.staleEventKey(propertyKey), "application/json");
+        return addPhysicalAssetEvent(StalenessTracker.freshEventKey(propertyKey), "application/json");
+    }
+
+    /**
+     * Adds a rule evaluated on every numeric value of its property. The event of an EMIT rule is declared unless
+     * already defined, the derived property of a DERIVE rule must be new.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder addPropertyRule(PropertyRule rule) throws MqttPhysicalAdapterConfigurationException {
+        if(rule == null) throw new MqttPhysicalAdapterConfigurationException("PropertyRule cannot be null");
+        if(!isValid(rule.getTargetKey())) throw new MqttPhysicalAdapterConfigurationException("Rule event or derived property key cannot be empty or null");
+        if(this.properties.stream().noneMatch(p -> p.getKey().equals(rule.getPropertyKey())))
+            throw new MqttPhysicalAdapterConfigurationException("property not defined: " + rule.getPropertyKey());
+        if(rule.getKind() == PropertyRule.Kind.DERIVE){
+            if(this.properties.stream().anyMatch(p -> p.getKey().equals(rule.getTargetKey())))
+                throw new MqttPhysicalAdapterConfigurationException("property already defined: " + rule.getTargetKey());
+            addPhysicalAssetProperty(rule.getTargetKey(), 0.0);
+        }
+        else if(this.events.stream().noneMatch(e -> e.getKey().equals(rule.getTargetKey())))
+            addPhysicalAssetEvent(rule.getTargetKey(), "text/plain");
+        this.configuration.addPropertyRule(rule);
+        return this;
+    }
+
+    /**
+     * Aggregates the numeric values of an already defined property over time windows. For each operation a derived
+     * property (e.g. "intensity.mean") is added to the PhysicalAssetDescription and updated when a window closes.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder addWindowAggregation(WindowAggregation aggregation) throws MqttPhysicalAdapterConfigurationException {
+        if(aggregation == null || !isValid(aggregation.getOperations()))
+            throw new MqttPhysicalAdapterConfigurationException("Window aggregation cannot be null and must define at least one operation");
+        if(aggregation.getWindowMs() <= 0 || aggregation.getSlideMs() <= 0 || aggregation.getSlideMs() > aggregation.getWindowMs() || !isValid(aggregation.getCapacity()))
+            throw new MqttPhysicalAdapterConfigurationException("Window and slide must be positive, slide cannot exceed the window and capacity must be a positive number");
+        List<String> propertyKeys = this.properties.stream().map(PhysicalAssetProperty::getKey).collect(Collectors.toList());
+        if(!propertyKeys.contains(aggregation.getPropertyKey()))
+            throw new MqttPhysicalAdapterConfigurationException("Aggregated property must be defined before its aggregation: " + aggregation.getPropertyKey());
+        for (AggregationOperation op : aggregation.getOperations()) {
+            if(propertyKeys.contains(op.derivedPropertyKey(aggregation.getPropertyKey())))
+                throw new MqttPhysicalAdapterConfigurationException("property already defined: " + op.derivedPropertyKey(aggregation.getPropertyKey()));
+            addPhysicalAssetProperty(op.derivedPropertyKey(aggregation.getPropertyKey()), 0.0);
+        }
+        configuration.addWindowAggregation(aggregation);
+        return this;
+    }
+
     private <T> MqttPhysicalAdapterConfigurationBuilder addPhysicalAssetProperty(String key, T initValue){
         this.properties.add(new PhysicalAssetProperty<>(key, initValue));
         return this;
@@ -129,17 +305,368 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         return this;
     }
 
+    /**
+     * Backoff between reconnect attempts: the n-th attempt waits min(maxDelay, initialDelay * multiplier^n) ms,
+     * shortened by a random fraction of at most jitter (0 to 1).
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setReconnectBackoff(Long initialDelay, Long maxDelay, Double multiplier, Double jitter) throws MqttPhysicalAdapterConfigurationException {
+        if(initialDelay == null || maxDelay == null || multiplier == null || jitter == null
+                || initialDelay <= 0 || maxDelay < initialDelay || multiplier < 1.0 || jitter < 0.0 || jitter > 1.0)
+            throw new MqttPhysicalAdapterConfigurationException("Reconnect delays must be positive with max delay not lower than initial delay, multiplier must be at least 1 and jitter between 0 and 1");
+        this.configuration.setReconnectBackoff(new ReconnectBackoff(initialDelay, maxDelay, multiplier, jitter));
+        return this;
+    }
+
+    /**
+     * MQTT 5 only: seconds the broker keeps a persistent session (clean session disabled) after a disconnection
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setSessionExpiryInterval(Long sessionExpiryInterval) throws MqttPhysicalAdapterConfigurationException {
+        if(sessionExpiryInterval == null || sessionExpiryInterval <= 0 || sessionExpiryInterval > 0xFFFFFFFFL)
+            throw new MqttPhysicalAdapterConfigurationException("Session expiry interval must be a positive number of seconds");
+        this.configuration.setSessionExpiryInterval(sessionExpiryInterval);
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder setConnectionStateListener(ConnectionStateListener listener) throws MqttPhysicalAdapterConfigurationException {
+        if(listener == null) throw new MqttPhysicalAdapterConfigurationException("ConnectionStateListener cannot be null");
+        this.configuration.setConnectionStateListener(listener);
+        return this;
+    }
+
+    /**
+     * Publishes every change of the broker connection state as the PhysicalAssetEvent "mqtt.connection.state"
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setConnectionStateEventFlag(boolean connectionStateEvent) {
+        this.configuration.setConnectionStateEventFlag(connectionStateEvent);
+        return this;
+    }
+
     public MqttPhysicalAdapterConfigurationBuilder setMqttClientPersistence(MqttClientPersistence persistence) throws MqttPhysicalAdapterConfigurationException {
         if(persistence == null) throw new MqttPhysicalAdapterConfigurationException("MqttClientPersistence cannot be null");
         this.configuration.setMqttClientPersistence(persistence);
         return this;
     }
 
+    /**
+     * MQTT 5 only: the Paho MQTT 5 client has its own persistence interface, setMqttClientPersistence applies to MQTT 3.1.1
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setMqttV5ClientPersistence(org.eclipse.paho.mqttv5.client.MqttClientPersistence persistence) throws MqttPhysicalAdapterConfigurationException {
+        if(persistence == null) throw new MqttPhysicalAdapterConfigurationException("MqttClientPersistence cannot be null");
+        this.configuration.setMqttV5ClientPersistence(persistence);
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder setSubscribeBatchSize(Integer subscribeBatchSize) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(subscribeBatchSize)) throw new MqttPhysicalAdapterConfigurationException("Subscribe batch size must be a positive number");
+        this.configuration.setSubscribeBatchSize(subscribeBatchSize);
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder setSubscribeTimeout(Integer subscribeTimeout) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(subscribeTimeout)) throw new MqttPhysicalAdapterConfigurationException("Subscribe Timeout must be a positive number");
+        this.configuration.setSubscribeTimeout(subscribeTimeout);
+        return this;
+    }
+
+    /**
+     * Enables the warm-up phase: before binding, the adapter waits up to warmUpTimeout milliseconds for retained
+     * messages and uses them as initial property values. The wait ends early once no message arrived
+     * for warmUpIdleTimeout milliseconds (0 waits for the whole timeout).
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setWarmUp(Integer warmUpTimeout, Integer warmUpIdleTimeout) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(warmUpTimeout) || warmUpIdleTimeout == null || warmUpIdleTimeout < 0)
+            throw new MqttPhysicalAdapterConfigurationException("Warm-up Timeout must be a positive number and Warm-up Idle Timeout cannot be negative");
+        this.configuration.setWarmUpTimeout(warmUpTimeout);
+        this.configuration.setWarmUpIdleTimeout(warmUpIdleTimeout);
+        return this;
+    }
+
+    /**
+     * Publishes incoming events to the WLDT event bus in micro-batches of at most maxSize events, flushed at the latest
+     * maxDelayMicros after their first event. The added latency is recorded in the "batch.latency" histogram.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setEventBatching(Integer maxSize, Long maxDelayMicros) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(maxSize) || maxDelayMicros == null || maxDelayMicros < 0)
+            throw new MqttPhysicalAdapterConfigurationException("Event batch size must be a positive number and event batch delay cannot be negative");
+        this.configuration.setEventBatching(maxSize, maxDelayMicros);
+        return this;
+    }
+
+    /**
+     * Buffers incoming messages in a queue of the given capacity, processed by a dedicated thread.
+     * The overflow policy applies to the topics without their own policy, blockTimeout (ms) to the BLOCK policy.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setInboundQueue(Integer capacity, OverflowPolicy overflowPolicy, Integer blockTimeout) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(capacity) || overflowPolicy == null || blockTimeout == null || blockTimeout < 0)
+            throw new MqttPhysicalAdapterConfigurationException("Inbound queue capacity must be a positive number, overflow policy cannot be null and block timeout cannot be negative");
+        this.configuration.setInboundQueue(capacity, overflowPolicy, blockTimeout);
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder setInboundQueueWatermarks(Integer highWatermark, Integer lowWatermark, QueueWatermarkListener listener) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(highWatermark) || lowWatermark == null || lowWatermark < 0 || lowWatermark >= highWatermark)
+            throw new MqttPhysicalAdapterConfigurationException("High watermark must be a positive number greater than the low watermark");
+        this.configuration.setInboundQueueWatermarks(highWatermark, lowWatermark, listener);
+        return this;
+    }
+
+    /**
+     * Number of consecutive messages of a priority lane processed while a lower lane has work, before the lower lane
+     * gets one turn
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setInboundQueueStarvationLimit(Integer starvationLimit) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(starvationLimit))
+            throw new MqttPhysicalAdapterConfigurationException("Inbound queue starvation limit must be a positive number");
+        this.configuration.setInboundQueueStarvationLimit(starvationLimit);
+        return this;
+    }
+
+    /**
+     * Messages of higher priority topics are processed first by the inbound queue and, when it is full, evict queued
+     * messages of lower priority topics
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setTopicPriority(String topic, MessagePriority priority) throws MqttPhysicalAdapterConfigurationException {
+        if(priority == null) throw new MqttPhysicalAdapterConfigurationException("MessagePriority cannot be null");
+        DigitalTwinIncomingTopic incomingTopic = this.configuration.getIncomingTopics().stream()
+                .filter(t -> t.getTopic().equals(topic))
+                .findFirst()
+                .orElseThrow(() -> new MqttPhysicalAdapterConfigurationException("topic not defined: " + topic));
+        incomingTopic.setPriority(priority);
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder setTopicOverflowPolicy(String topic, OverflowPolicy overflowPolicy) throws MqttPhysicalAdapterConfigurationException {
+        DigitalTwinIncomingTopic incomingTopic = this.configuration.getIncomingTopics().stream()
+                .filter(t -> t.getTopic().equals(topic))
+                .findFirst()
+                .orElseThrow(() -> new MqttPhysicalAdapterConfigurationException("topic not defined: " + topic));
+        incomingTopic.setOverflowPolicy(overflowPolicy);
+        return this;
+    }
+
+    /**
+     * Validates the JSON payloads of an incoming topic before its subscribe function runs
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setTopicSchema(String topic, JsonSchema schema) throws MqttPhysicalAdapterConfigurationException {
+        if(schema == null) throw new MqttPhysicalAdapterConfigurationException("JsonSchema cannot be null");
+        DigitalTwinIncomingTopic incomingTopic = this.configuration.getIncomingTopics().stream()
+                .filter(t -> t.getTopic().equals(topic))
+                .findFirst()
+                .orElseThrow(() -> new MqttPhysicalAdapterConfigurationException("topic not defined: " + topic));
+        //their payloads are not JSON
+        if(incomingTopic instanceof BinaryIncomingTopic || incomingTopic instanceof SparkplugIncomingTopic)
+            throw new MqttPhysicalAdapterConfigurationException("schema is not supported for binary and Sparkplug topics: " + topic);
+        incomingTopic.setSchema(schema);
+        return this;
+    }
+
+    /**
+     * Records every incoming message into memory-mapped segments of segmentSize bytes in the given directory,
+     * to be replayed later with a ReplayTransport. The directory must not contain a previous recording.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setRecording(String directory, Integer segmentSize) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(directory)) throw new MqttPhysicalAdapterConfigurationException("Recording directory cannot be empty or null");
+        if(segmentSize == null || segmentSize < 4096) throw new MqttPhysicalAdapterConfigurationException("Recording segment size must be at least 4096 bytes");
+        this.configuration.setRecording(directory, segmentSize);
+        return this;
+    }
+
+    /**
+     * Maximum number of QoS 1/2 publishes waiting for the broker acknowledgement (Paho max in-flight, default 10)
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setPublishWindow(Integer publishWindow) throws MqttPhysicalAdapterConfigurationException {
+        if(!isValid(publishWindow) || publishWindow > 65535)
+            throw new MqttPhysicalAdapterConfigurationException("Publish window must be between 1 and 65535");
+        this.configuration.setPublishWindow(publishWindow);
+        return this;
+    }
+
+    /**
+     * Enables the QoS downgrade of the topics with a minimum QoS (see setTopicQos) while the publish window or the
+     * inbound queue is saturated
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setAdaptiveQos(AdaptiveQos adaptiveQos) throws MqttPhysicalAdapterConfigurationException {
+        if(adaptiveQos == null) throw new MqttPhysicalAdapterConfigurationException("AdaptiveQos cannot be null");
+        if(adaptiveQos.getLowWatermark() < 0 || adaptiveQos.getLowWatermark() >= adaptiveQos.getHighWatermark() || adaptiveQos.getHighWatermark() > 1)
+            throw new MqttPhysicalAdapterConfigurationException("Adaptive QoS watermarks must satisfy 0 <= low < high <= 1");
+        if(adaptiveQos.getCheckIntervalMs() <= 0)
+            throw new MqttPhysicalAdapterConfigurationException("Adaptive QoS check interval must be positive");
+        this.configuration.setAdaptiveQos(adaptiveQos);
+        return this;
+    }
+
+    /**
+     * Sets the QoS of a topic. With a minQos lower than qos, adaptive QoS can downgrade the topic down to minQos;
+     * with a null minQos the topic always keeps its QoS.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setTopicQos(String topic, MqttQosLevel qos, MqttQosLevel minQos) throws MqttPhysicalAdapterConfigurationException {
+        if(qos == null) throw new MqttPhysicalAdapterConfigurationException("QoS cannot be null");
+        if(minQos != null && minQos.getQosValue() > qos.getQosValue())
+            throw new MqttPhysicalAdapterConfigurationException("Minimum QoS cannot be greater than the QoS of topic: " + topic);
+        List<MqttTopic> topics = new ArrayList<>(this.configuration.getIncomingTopics());
+        topics.addAll(this.configuration.getOutgoingTopics().values());
+        List<MqttTopic> matching = topics.stream().filter(t -> t.getTopic().equals(topic)).collect(Collectors.toList());
+        if(matching.isEmpty()) throw new MqttPhysicalAdapterConfigurationException("topic not defined: " + topic);
+        for (MqttTopic t : matching) {
+            t.setQosLevel(qos);
+            t.setMinQosLevel(minQos);
+        }
+        return this;
+    }
+
+    /**
+     * Runs subscribe and publish functions on the caller thread (CALLER) or one task per message (CONCURRENT):
+     * virtual threads on Java 21+, otherwise a pool of maxThreads platform threads. At most maxInFlight messages
+     * are processed or waiting at the same time.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setExecutionMode(ExecutionMode executionMode, Integer maxThreads, Integer maxInFlight) throws MqttPhysicalAdapterConfigurationException {
+        if(executionMode == null || !isValid(maxThreads) || !isValid(maxInFlight))
+            throw new MqttPhysicalAdapterConfigurationException("Execution mode cannot be null, max threads and max in-flight messages must be positive numbers");
+        this.configuration.setExecution(executionMode, maxThreads, maxInFlight);
+        return this;
+    }
+
+    /**
+     * Lets the messages of an incoming or outgoing topic be processed concurrently (ordered = false) in CONCURRENT mode
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setTopicOrderedFlag(String topic, boolean ordered) throws MqttPhysicalAdapterConfigurationException {
+        List<MqttTopic> topics = new ArrayList<>(this.configuration.getIncomingTopics());
+        topics.addAll(this.configuration.getOutgoingTopics().values());
+        List<MqttTopic> matching = topics.stream().filter(t -> t.getTopic().equals(topic)).collect(Collectors.toList());
+        if(matching.isEmpty()) throw new MqttPhysicalAdapterConfigurationException("topic not defined: " + topic);
+        matching.forEach(t -> t.setOrderedFlag(ordered));
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder setProtocolVersion(MqttProtocolVersion protocolVersion) throws MqttPhysicalAdapterConfigurationException {
+        if(protocolVersion == null) throw new MqttPhysicalAdapterConfigurationException("MQTT protocol version cannot be null");
+        this.configuration.setProtocolVersion(protocolVersion);
+        return this;
+    }
+
+    /**
+     * MQTT 5 only: number of topic aliases the broker may use for the messages sent to the adapter
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setTopicAliasMaximum(Integer topicAliasMaximum) throws MqttPhysicalAdapterConfigurationException {
+        if(topicAliasMaximum == null || topicAliasMaximum < 0 || topicAliasMaximum > 65535)
+            throw new MqttPhysicalAdapterConfigurationException("Topic alias maximum must be between 0 and 65535");
+        this.configuration.setTopicAliasMaximum(topicAliasMaximum);
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder setActionMessageExpiry(String actionKey, Long messageExpiryInterval) throws MqttPhysicalAdapterConfigurationException {
+        if(messageExpiryInterval == null || messageExpiryInterval <= 0)
+            throw new MqttPhysicalAdapterConfigurationException("Message expiry interval must be a positive number");
+        this.configuration.getOutgoingTopicByActionKey(actionKey)
+                .orElseThrow(() -> new MqttPhysicalAdapterConfigurationException("action not defined: " + actionKey))
+                .setMessageExpiryInterval(messageExpiryInterval);
+        return this;
+    }
+
+    /**
+     * Tracks the responses of an action: each published action gets a correlation id and emits either
+     * "<actionKey>.completed" or "<actionKey>.timeout", both added to the physical asset description.
+     * Actions sharing a response topic share one subscription.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setActionResponse(String actionKey, ActionResponseConfiguration actionResponse) throws MqttPhysicalAdapterConfigurationException {
+        if(actionResponse == null || !isValid(actionResponse.getResponseTopic()) || actionResponse.getCorrelationMode() == null)
+            throw new MqttPhysicalAdapterConfigurationException("Action response must define a response topic and a correlation mode");
+        if(actionResponse.getTimeoutMs() <= 0)
+            throw new MqttPhysicalAdapterConfigurationException("Action response timeout must be a positive number");
+        if(actionResponse.getCorrelationMode() == CorrelationMode.PAYLOAD && !CorrelationIds.isValidField(actionResponse.getCorrelationField()))
+            throw new MqttPhysicalAdapterConfigurationException("Invalid correlation field: " + actionResponse.getCorrelationField());
+        DigitalTwinOutgoingTopic outgoingTopic = this.configuration.getOutgoingTopicByActionKey(actionKey)
+                .orElseThrow(() -> new MqttPhysicalAdapterConfigurationException("action not defined: " + actionKey));
+        if(outgoingTopic.getActionResponse().isPresent())
+            throw new MqttPhysicalAdapterConfigurationException("action response already defined: " + actionKey);
+        DigitalTwinIncomingTopic responseTopic = this.configuration.getIncomingTopics().stream()
+                .filter(t -> t.getTopic().equals(actionResponse.getResponseTopic()))
+                .findFirst()
+                .orElse(null);
+        if(responseTopic == null){
+            responseTopic = new ActionResponseIncomingTopic(actionResponse.getResponseTopic());
+            configuration.addIncomingTopic(responseTopic);
+        }
+        else if(!(responseTopic instanceof ActionResponseIncomingTopic))
+            throw new MqttPhysicalAdapterConfigurationException("response topic already used by a property or event: " + actionResponse.getResponseTopic());
+        if(actionResponse.getCorrelationMode() == CorrelationMode.PAYLOAD)
+            ((ActionResponseIncomingTopic) responseTopic).addCorrelationField(actionResponse.getCorrelationField());
+        outgoingTopic.setActionResponse(actionResponse);
+        addPhysicalAssetEvent(ActionResponseTracker.completedEventKey(actionKey), "application/json");
+        return addPhysicalAssetEvent(ActionResponseTracker.timeoutEventKey(actionKey), "application/json");
+    }
+
+    /**
+     * Debounces or coalesces the bursts of an action before they reach the broker.
+     * Coalesced actions are published as one JSON array of their bodies, so they cannot have a tracked response.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setActionCoalescing(String actionKey, ActionCoalescing coalescing) throws MqttPhysicalAdapterConfigurationException {
+        if(coalescing == null || coalescing.getMaxDelayMs() <= 0)
+            throw new MqttPhysicalAdapterConfigurationException("Action coalescing cannot be null and its max delay must be a positive number");
+        if(coalescing.getMode() == CoalescingMode.DEBOUNCE && (coalescing.getQuietMs() <= 0 || coalescing.getQuietMs() > coalescing.getMaxDelayMs()))
+            throw new MqttPhysicalAdapterConfigurationException("Debounce quiet window must be positive and cannot exceed the max delay");
+        if(coalescing.getMode() == CoalescingMode.COALESCE && coalescing.getMaxBatchSize() < 2)
+            throw new MqttPhysicalAdapterConfigurationException("Coalesce max batch size must be at least 2");
+        this.configuration.getOutgoingTopicByActionKey(actionKey)
+                .orElseThrow(() -> new MqttPhysicalAdapterConfigurationException("action not defined: " + actionKey))
+                .setCoalescing(coalescing);
+        return this;
+    }
+
+    /**
+     * Selects the transport used to reach the broker. ssl and wss require a TlsConfiguration (see setTls),
+     * webSocketPath is used by ws and wss only.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setTransportScheme(MqttTransportScheme transportScheme, String webSocketPath) throws MqttPhysicalAdapterConfigurationException {
+        if(transportScheme == null) throw new MqttPhysicalAdapterConfigurationException("Transport scheme cannot be null");
+        if(transportScheme.isWebSocket() && (!isValid(webSocketPath) || !webSocketPath.startsWith("/")))
+            throw new MqttPhysicalAdapterConfigurationException("WebSocket path must start with /");
+        this.configuration.setTransportScheme(transportScheme);
+        if(transportScheme.isWebSocket()) this.configuration.setWebSocketPath(webSocketPath);
+        return this;
+    }
+
+    /**
+     * Loads the key and trust stores once: connections built from equal TlsConfigurations share the same
+     * SSLSocketFactory, so reconnects can resume the TLS session.
+     * */
+    public MqttPhysicalAdapterConfigurationBuilder setTls(TlsConfiguration tlsConfiguration) throws MqttPhysicalAdapterConfigurationException {
+        if(tlsConfiguration == null) throw new MqttPhysicalAdapterConfigurationException("TlsConfiguration cannot be null");
+        try {
+            this.configuration.setTls(tlsConfiguration, tlsConfiguration.getSocketFactory());
+        } catch (IOException | GeneralSecurityException e) {
+            throw new MqttPhysicalAdapterConfigurationException("Unable to initialize TLS: " + e.getMessage());
+        }
+        return this;
+    }
+
+    public MqttPhysicalAdapterConfigurationBuilder setHotReloadFlag(boolean hotReload) throws MqttPhysicalAdapterConfigurationException {
+        if(hotReload && this.configuration.getConfigFilePath() == null)
+            throw new MqttPhysicalAdapterConfigurationException("Hot reload requires a configuration created from a YAML file");
+        this.configuration.setHotReloadFlag(hotReload);
+        return this;
+    }
+
     public MqttPhysicalAdapterConfiguration build() throws MqttPhysicalAdapterConfigurationException {
         if(properties.isEmpty() && actions.isEmpty() && events.isEmpty())
             throw new MqttPhysicalAdapterConfigurationException("Physical Adapter must have at least one property or event or action");
         if(this.configuration.getIncomingTopics().isEmpty() && this.configuration.getOutgoingTopics().isEmpty())
             throw new MqttPhysicalAdapterConfigurationException("MQTT Physical Adapter must define at least one DigitalTwinIncomingTopic or DigitalTwinOutgoingTopic");
+        if(this.configuration.isConnectionStateEventEnabled()
+                && events.stream().noneMatch(e -> MqttPhysicalAdapterConfiguration.CONNECTION_STATE_EVENT_KEY.equals(e.getKey())))
+            addPhysicalAssetEvent(MqttPhysicalAdapterConfiguration.CONNECTION_STATE_EVENT_KEY, "text/plain");
+        if(this.configuration.getTransportScheme().isSecure() && !this.configuration.getTlsConfiguration().isPresent())
+            setTls(new TlsConfiguration());
+        for (DigitalTwinOutgoingTopic topic : this.configuration.getOutgoingTopics().values()) {
+            ActionResponseConfiguration response = topic.getActionResponse().orElse(null);
+            if(response != null && topic.getCoalescing().map(c -> c.getMode() == CoalescingMode.COALESCE).orElse(false))
+                throw new MqttPhysicalAdapterConfigurationException("Coalesced actions cannot have a tracked response: " + topic.getTopic());
+            if(response == null || response.getCorrelationMode() != CorrelationMode.PROPERTIES) continue;
+            if(this.configuration.getProtocolVersion() != MqttProtocolVersion.MQTT_5)
+                throw new MqttPhysicalAdapterConfigurationException("Correlation through message properties requires MQTT 5");
+            if(response.getResponseTopic().contains("+") || response.getResponseTopic().contains("#"))
+                throw new MqttPhysicalAdapterConfigurationException("Response topic sent to the device cannot contain wildcards: " + response.getResponseTopic());
+        }
         this.configuration.setPhysicalAssetDescription(actions, properties, events);
         return this.configuration;
     }
@@ -189,6 +716,60 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         for (JsonNode e :events) {
             addEvent(e);
         }
+        if(configFileContent.has("subscribeBatchSize"))
+            setSubscribeBatchSize(configFileContent.get("subscribeBatchSize").asInt());
+        if(configFileContent.has("subscribeTimeout"))
+            setSubscribeTimeout(configFileContent.get("subscribeTimeout").asInt());
+        if(configFileContent.has("warmUpTimeout"))
+            setWarmUp(configFileContent.get("warmUpTimeout").asInt(),
+                    configFileContent.has("warmUpIdleTimeout") ? configFileContent.get("warmUpIdleTimeout").asInt() : 0);
+        if(configFileContent.has("eventBatchMaxSize"))
+            setEventBatching(configFileContent.get("eventBatchMaxSize").asInt(),
+                    configFileContent.has("eventBatchMaxDelay") ? configFileContent.get("eventBatchMaxDelay").asLong() : 1000L);
+        if(configFileContent.has("inboundQueue"))
+            readInboundQueue(configFileContent.get("inboundQueue"));
+        if(configFileContent.has("mqttVersion")){
+            try {
+                setProtocolVersion(MqttProtocolVersion.fromString(configFileContent.get("mqttVersion").asText()));
+            } catch (IllegalArgumentException e) {
+                throw new MqttPhysicalAdapterConfigurationException("Unknown MQTT version: " + configFileContent.get("mqttVersion").asText());
+            }
+        }
+        if(configFileContent.has("topicAliasMaximum"))
+            setTopicAliasMaximum(configFileContent.get("topicAliasMaximum").asInt());
+        if(configFileContent.has("transport")){
+            try {
+                setTransportScheme(MqttTransportScheme.fromString(configFileContent.get("transport").asText()),
+                        configFileContent.has("webSocketPath") ? configFileContent.get("webSocketPath").asText() : "/mqtt");
+            } catch (IllegalArgumentException e) {
+                throw new MqttPhysicalAdapterConfigurationException(e.getMessage());
+            }
+        }
+        if(configFileContent.has("tls"))
+            readTls(configFileContent.get("tls"));
+        if(configFileContent.has("cleanSession"))
+            setCleanSessionFlag(configFileContent.get("cleanSession").asBoolean());
+        if(configFileContent.has("sessionExpiry"))
+            setSessionExpiryInterval(Math.max(1L, parseDuration(configFileContent.get("sessionExpiry").asText()) / 1000));
+        if(configFileContent.has("automaticReconnect"))
+            setAutomaticReconnectFlag(configFileContent.get("automaticReconnect").asBoolean());
+        if(configFileContent.has("reconnect"))
+            readReconnect(configFileContent.get("reconnect"));
+        if(configFileContent.has("connectionStateEvent"))
+            setConnectionStateEventFlag(configFileContent.get("connectionStateEvent").asBoolean());
+        if(configFileContent.has("execution"))
+            readExecution(configFileContent.get("execution"));
+        if(configFileContent.has("recording"))
+            setRecording(configFileContent.get("recording").get("directory").asText(),
+                    configFileContent.get("recording").has("segmentSize") ? configFileContent.get("recording").get("segmentSize").asInt() : this.configuration.getRecordingSegmentSize());
+        if(configFileContent.has("hotReload"))
+            setHotReloadFlag(configFileContent.get("hotReload").asBoolean());
+        if(configFileContent.has("publishWindow"))
+            setPublishWindow(configFileContent.get("publishWindow").asInt());
+        if(configFileContent.has("adaptiveQos"))
+            readAdaptiveQos(configFileContent.get("adaptiveQos"));
+        if(configFileContent.has("sparkplug"))
+            for (JsonNode edgeNode : configFileContent.get("sparkplug")) readSparkplugEdgeNode(edgeNode);
 
         return this;
     }
@@ -198,16 +779,19 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         String propertyKey = p.get("propertyKey").asText();
         String topic = p.get("topic").asText();
         String type = p.get("type").asText();
-        String initialValue = p.get("initialValue").toString();
+        //binary properties start empty and need no initial value
+        String initialValue = p.has("initialValue") ? p.get("initialValue").toString() : null;
+        if(initialValue == null && !"binary".equals(type))
+            throw new MqttPhysicalAdapterConfigurationException("Property " + propertyKey + " of type " + type + " needs an initialValue");
 
         if ("int".equals(type)) {
-            addPhysicalAssetPropertyAndTopic(propertyKey, Integer.valueOf(initialValue), topic, s -> Integer.valueOf(s));
+            addScalarPropertyAndTopic(propertyKey, Integer.valueOf(initialValue), topic, ScalarDecoders.INT);
         }
         else if ("double".equals(type) || "float".equals(type)) {
-            addPhysicalAssetPropertyAndTopic(propertyKey, Double.valueOf(initialValue), topic, s -> Double.valueOf(s));
+            addScalarPropertyAndTopic(propertyKey, Double.valueOf(initialValue), topic, ScalarDecoders.DOUBLE);
         }
         else if ("boolean".equals(type)) {
-            addPhysicalAssetPropertyAndTopic(propertyKey, Boolean.valueOf(initialValue), topic, s -> Boolean.valueOf(s));
+            addScalarPropertyAndTopic(propertyKey, Boolean.valueOf(initialValue), topic, ScalarDecoders.BOOLEAN);
         }
         else if ("string".equals(type)) {
             addPhysicalAssetPropertyAndTopic(propertyKey, String.valueOf(initialValue), topic, s -> String.valueOf(s));
@@ -215,8 +799,165 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         else if ("json-array".equals(type)) {
             addJsonArrayProperty(p.get("field-type").asText(), propertyKey, initialValue, topic);
         }
+        else if ("binary".equals(type)) {
+            addBinaryPropertyAndTopic(propertyKey, topic, readMaxPayloadSize(p));
+        }
         else if ("json-object".equals(type)) {
-            addJsonObjectProperty(propertyKey, initialValue, topic);
+            addJsonObjectProperty(propertyKey, initialValue, topic, p.has("schema") ? readSchema(p.get("schema")) : null,
+                    p.has("flatten") && p.get("flatten").asBoolean());
+        }
+        if(p.has("schema") && !"json-object".equals(type)) setTopicSchema(topic, readSchema(p.get("schema")));
+        if(p.has("aggregate")) addAggregation(propertyKey, p.get("aggregate"));
+        if(p.has("maxAge")) setPropertyMaxAge(propertyKey, parseDuration(p.get("maxAge").asText()));
+        if(p.has("rules")) for (JsonNode rule : p.get("rules")) addPropertyRule(readPropertyRule(propertyKey, rule));
+        if(p.has("overflow")) setTopicOverflowPolicy(topic, readOverflowPolicy(p.get("overflow")));
+        if(p.has("priority")) setTopicPriority(topic, readPriority(p.get("priority")));
+        if(p.has("qos")) readTopicQos(topic, p);
+        if(p.has("ordered")) setTopicOrderedFlag(topic, p.get("ordered").asBoolean());
+    }
+
+    private void readExecution(JsonNode execution) throws MqttPhysicalAdapterConfigurationException {
+        try {
+            setExecutionMode(execution.has("mode") ? ExecutionMode.fromString(execution.get("mode").asText()) : ExecutionMode.CONCURRENT,
+                    execution.has("maxThreads") ? execution.get("maxThreads").asInt() : this.configuration.getExecutionMaxThreads(),
+                    execution.has("maxInFlight") ? execution.get("maxInFlight").asInt() : this.configuration.getExecutionMaxInFlight());
+        } catch (IllegalArgumentException e) {
+            throw new MqttPhysicalAdapterConfigurationException("Unknown execution mode: " + execution.get("mode").asText());
+        }
+    }
+
+    private void readReconnect(JsonNode reconnect) throws MqttPhysicalAdapterConfigurationException {
+        ReconnectBackoff defaults = this.configuration.getReconnectBackoff();
+        setReconnectBackoff(
+                reconnect.has("initialDelay") ? parseDuration(reconnect.get("initialDelay").asText()) : defaults.getInitialDelayMs(),
+                reconnect.has("maxDelay") ? parseDuration(reconnect.get("maxDelay").asText()) : defaults.getMaxDelayMs(),
+                reconnect.has("multiplier") ? reconnect.get("multiplier").asDouble() : defaults.getMultiplier(),
+                reconnect.has("jitter") ? reconnect.get("jitter").asDouble() : defaults.getJitter());
+    }
+
+    private void readTls(JsonNode tls) throws MqttPhysicalAdapterConfigurationException {
+        TlsConfiguration tlsConfiguration = new TlsConfiguration();
+        if(tls.has("keyStore"))
+            tlsConfiguration.setKeyStore(tls.get("keyStore").asText(),
+                    tls.has("keyStorePassword") ? tls.get("keyStorePassword").asText() : null,
+                    tls.has("keyStoreType") ? tls.get("keyStoreType").asText() : null);
+        if(tls.has("trustStore"))
+            tlsConfiguration.setTrustStore(tls.get("trustStore").asText(),
+                    tls.has("trustStorePassword") ? tls.get("trustStorePassword").asText() : null,
+                    tls.has("trustStoreType") ? tls.get("trustStoreType").asText() : null);
+        if(tls.has("protocols"))
+            tlsConfiguration.setProtocols(readStringList(tls.get("protocols")));
+        if(tls.has("cipherSuites"))
+            tlsConfiguration.setCipherSuites(readStringList(tls.get("cipherSuites")));
+        if(tls.has("hostnameVerification"))
+            tlsConfiguration.setHostnameVerificationFlag(tls.get("hostnameVerification").asBoolean());
+        setTls(tlsConfiguration);
+    }
+
+    private static List<String> readStringList(JsonNode node) {
+        List<String> values = new ArrayList<>();
+        if(node.isArray()) node.forEach(n -> values.add(n.asText()));
+        else values.add(node.asText());
+        return values;
+    }
+
+    private static ActionResponseConfiguration readActionResponse(JsonNode response) throws MqttPhysicalAdapterConfigurationException {
+        if(!response.has("topic")) throw new MqttPhysicalAdapterConfigurationException("Action response must define a topic");
+        CorrelationMode mode;
+        try {
+            mode = response.has("correlation") ? CorrelationMode.fromString(response.get("correlation").asText()) : CorrelationMode.PAYLOAD;
+        } catch (IllegalArgumentException e) {
+            throw new MqttPhysicalAdapterConfigurationException("Unknown correlation mode: " + response.get("correlation").asText());
+        }
+        return new ActionResponseConfiguration(response.get("topic").asText(), mode,
+                response.has("field") ? response.get("field").asText() : ActionResponseConfiguration.DEFAULT_CORRELATION_FIELD,
+                response.has("timeout") ? parseDuration(response.get("timeout").asText()) : 5000);
+    }
+
+    private void readInboundQueue(JsonNode inboundQueue) throws MqttPhysicalAdapterConfigurationException {
+        setInboundQueue(inboundQueue.get("capacity").asInt(),
+                inboundQueue.has("overflow") ? readOverflowPolicy(inboundQueue.get("overflow")) : OverflowPolicy.BLOCK,
+                inboundQueue.has("blockTimeout") ? (int) parseDuration(inboundQueue.get("blockTimeout").asText()) : 100);
+        if(inboundQueue.has("highWatermark"))
+            setInboundQueueWatermarks(inboundQueue.get("highWatermark").asInt(),
+                    inboundQueue.has("lowWatermark") ? inboundQueue.get("lowWatermark").asInt() : 0, null);
+        if(inboundQueue.has("starvationLimit"))
+            setInboundQueueStarvationLimit(inboundQueue.get("starvationLimit").asInt());
+    }
+
+    private static PropertyRule readPropertyRule(String propertyKey, JsonNode rule) throws MqttPhysicalAdapterConfigurationException {
+        try {
+            if(rule.has("when") && rule.has("emit"))
+                return PropertyRule.emit(propertyKey, rule.get("when").asText(), rule.get("emit").asText(),
+                        rule.has("repeat") && rule.get("repeat").asBoolean());
+            if(rule.has("derive") && rule.has("property"))
+                return PropertyRule.derive(propertyKey, rule.get("derive").asText(), rule.get("property").asText());
+        } catch (IllegalArgumentException e) {
+            throw new MqttPhysicalAdapterConfigurationException(e.getMessage());
+        }
+        throw new MqttPhysicalAdapterConfigurationException("Rule of property " + propertyKey + " must define when and emit, or derive and property");
+    }
+
+    private void readTopicQos(String topic, JsonNode node) throws MqttPhysicalAdapterConfigurationException {
+        try {
+            setTopicQos(topic, MqttQosLevel.fromValue(node.get("qos").asInt()),
+                    node.has("minQos") ? MqttQosLevel.fromValue(node.get("minQos").asInt()) : null);
+        } catch (IllegalArgumentException e) {
+            throw new MqttPhysicalAdapterConfigurationException(e.getMessage() + " on topic: " + topic);
+        }
+    }
+
+    private void readAdaptiveQos(JsonNode adaptiveQos) throws MqttPhysicalAdapterConfigurationException {
+        setAdaptiveQos(new AdaptiveQos(
+                adaptiveQos.has("highWatermark") ? adaptiveQos.get("highWatermark").asDouble() : 0.8,
+                adaptiveQos.has("lowWatermark") ? adaptiveQos.get("lowWatermark").asDouble() : 0.3,
+                adaptiveQos.has("interval") ? parseDuration(adaptiveQos.get("interval").asText()) : 1000));
+    }
+
+    private static MessagePriority readPriority(JsonNode priority) throws MqttPhysicalAdapterConfigurationException {
+        try {
+            return MessagePriority.fromString(priority.asText());
+        } catch (IllegalArgumentException e) {
+            throw new MqttPhysicalAdapterConfigurationException("Unknown priority: " + priority.asText());
+        }
+    }
+
+    private static OverflowPolicy readOverflowPolicy(JsonNode overflow) throws MqttPhysicalAdapterConfigurationException {
+        try {
+            return OverflowPolicy.fromString(overflow.asText());
+        } catch (IllegalArgumentException e) {
+            throw new MqttPhysicalAdapterConfigurationException("Unknown overflow policy: " + overflow.asText());
+        }
+    }
+
+    private void addAggregation(String propertyKey, JsonNode aggregate) throws MqttPhysicalAdapterConfigurationException {
+        if(!aggregate.has("window") || !aggregate.has("ops"))
+            throw new MqttPhysicalAdapterConfigurationException("aggregate of property " + propertyKey + " must define window and ops");
+        long window = parseDuration(aggregate.get("window").asText());
+        long slide = aggregate.has("slide") ? parseDuration(aggregate.get("slide").asText()) : window;
+        int capacity = aggregate.has("capacity") ? aggregate.get("capacity").asInt() : DEFAULT_AGGREGATION_CAPACITY;
+        List<AggregationOperation> ops = new ArrayList<>();
+        try {
+            for (JsonNode op : aggregate.get("ops")) ops.add(AggregationOperation.fromString(op.asText()));
+        } catch (IllegalArgumentException e) {
+            throw new MqttPhysicalAdapterConfigurationException(e.getMessage());
+        }
+        addWindowAggregation(new WindowAggregation(propertyKey, window, slide, ops, capacity));
+    }
+
+    /**
+     * Parses durations such as "250ms", "1s", "5m" or "1h" into milliseconds. A plain number is read as milliseconds.
+     * */
+    private static long parseDuration(String value) throws MqttPhysicalAdapterConfigurationException {
+        String v = value.trim().toLowerCase();
+        try {
+            if(v.endsWith("ms")) return Long.parseLong(v.substring(0, v.length() - 2).trim());
+            if(v.endsWith("s")) return Math.round(Double.parseDouble(v.substring(0, v.length() - 1).trim()) * 1000);
+            if(v.endsWith("m")) return Math.round(Double.parseDouble(v.substring(0, v.length() - 1).trim()) * 60_000);
+            if(v.endsWith("h")) return Math.round(Double.parseDouble(v.substring(0, v.length() - 1).trim()) * 3_600_000);
+            return Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            throw new MqttPhysicalAdapterConfigurationException("Invalid duration: " + value);
         }
     }
 
@@ -255,7 +996,7 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         });
     }
 
-    private void addJsonObjectProperty(String propertyKey, String initialValue, String topic) throws MqttPhysicalAdapterConfigurationException {
+    private void addJsonObjectProperty(String propertyKey, String initialValue, String topic, JsonSchema schema, boolean flatten) throws MqttPhysicalAdapterConfigurationException {
         ObjectMapper objectMapper = new ObjectMapper();
         ObjectNode initialValuesObject = objectMapper.createObjectNode();
         try {
@@ -263,15 +1004,30 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         } catch (Exception e) {
             e.printStackTrace();
         }
-        addPhysicalAssetPropertyAndTopic(propertyKey, initialValuesObject, topic, s -> {
-            ObjectNode parsedValues = objectMapper.createObjectNode();
-            try {
-                parsedValues = objectMapper.readValue(s, ObjectNode.class);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            return parsedValues;
-        });
+        if(flatten) addFlattenedJsonObjectPropertyAndTopic(propertyKey, initialValuesObject, topic, schema);
+        else addJsonObjectPropertyAndTopic(propertyKey, initialValuesObject, topic, schema);
+    }
+
+    private void readSparkplugEdgeNode(JsonNode edgeNode) throws MqttPhysicalAdapterConfigurationException {
+        if(!edgeNode.has("groupId")) throw new MqttPhysicalAdapterConfigurationException("Sparkplug edge nodes need a groupId");
+        addSparkplugEdgeNode(edgeNode.get("groupId").asText(),
+                edgeNode.has("edgeNodeId") ? edgeNode.get("edgeNodeId").asText() : null,
+                edgeNode.has("rebirthInterval") ? parseDuration(edgeNode.get("rebirthInterval").asText()) : SparkplugIncomingTopic.DEFAULT_REBIRTH_INTERVAL_MS);
+    }
+
+    private static int readMaxPayloadSize(JsonNode node) {
+        return node.has("maxSize") ? node.get("maxSize").asInt() : DEFAULT_BINARY_MAX_PAYLOAD_SIZE;
+    }
+
+    /**
+     * The schema can be written as YAML or as a JSON string
+     * */
+    private static JsonSchema readSchema(JsonNode schema) throws MqttPhysicalAdapterConfigurationException {
+        try {
+            return schema.isTextual() ? JsonSchema.compile(schema.asText()) : JsonSchema.compile(schema);
+        } catch (IllegalArgumentException e) {
+            throw new MqttPhysicalAdapterConfigurationException("Invalid schema: " + e.getMessage());
+        }
     }
 
     private void addAction(JsonNode action) throws MqttPhysicalAdapterConfigurationException {
@@ -281,6 +1037,26 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         String topic = action.get("topic").asText();
         String actionWord = action.get("action").asText();
         addPhysicalAssetActionAndTopic(actionKey, type, contentType, topic, actionBody -> actionWord + actionBody);
+        if(action.has("messageExpiry"))
+            setActionMessageExpiry(actionKey, Math.max(1, parseDuration(action.get("messageExpiry").asText()) / 1000));
+        if(action.has("ordered")) setTopicOrderedFlag(topic, action.get("ordered").asBoolean());
+        if(action.has("qos")) readTopicQos(topic, action);
+        if(action.has("response")) setActionResponse(actionKey, readActionResponse(action.get("response")));
+        if(action.has("debounce")){
+            JsonNode debounce = action.get("debounce");
+            if(!debounce.isValueNode() && !debounce.has("quiet"))
+                throw new MqttPhysicalAdapterConfigurationException("Debounce must define a quiet window: " + actionKey);
+            long quietMs = parseDuration(debounce.isValueNode() ? debounce.asText() : debounce.get("quiet").asText());
+            setActionCoalescing(actionKey, ActionCoalescing.debounce(quietMs,
+                    debounce.has("maxDelay") ? parseDuration(debounce.get("maxDelay").asText()) : quietMs * 10));
+        }
+        if(action.has("coalesce")){
+            JsonNode coalesce = action.get("coalesce");
+            if(!coalesce.has("maxDelay"))
+                throw new MqttPhysicalAdapterConfigurationException("Coalesce must define a max delay: " + actionKey);
+            setActionCoalescing(actionKey, ActionCoalescing.coalesce(parseDuration(coalesce.get("maxDelay").asText()),
+                    coalesce.has("maxBatch") ? coalesce.get("maxBatch").asInt() : 100));
+        }
 
     }
 
@@ -289,7 +1065,13 @@ public class MqttPhysicalAdapterConfigurationBuilder {
         String eventKey = e.get("eventKey").asText();
         String type = e.get("type").asText();
         String topic = e.get("topic").asText();
-        addPhysicalAssetEventAndTopic(eventKey, type, topic, Function.identity());
+        if("binary".equals(type)) addBinaryEventAndTopic(eventKey, type, topic, readMaxPayloadSize(e));
+        else addPhysicalAssetEventAndTopic(eventKey, type, topic, Function.identity());
+        if(e.has("overflow")) setTopicOverflowPolicy(topic, readOverflowPolicy(e.get("overflow")));
+        if(e.has("priority")) setTopicPriority(topic, readPriority(e.get("priority")));
+        if(e.has("qos")) readTopicQos(topic, e);
+        if(e.has("schema")) setTopicSchema(topic, readSchema(e.get("schema")));
+        if(e.has("ordered")) setTopicOrderedFlag(topic, e.get("ordered").asBoolean());
     }
         /*if ("int".equals(type)) {
             addPhysicalAssetEventAndTopic(eventKey, type, topic, s -> Integer.valueOf(s));
@@ -0,0 +1,83 @@
+package it.wldt.adapter.mqtt.physical;
+
+import it.wldt.adapter.physical.PhysicalAssetDescription;
+import it.wldt.adapter.physical.PhysicalAssetProperty;
+import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
+import it.wldt.core.event.WldtEvent;
+
+import java.util.*;
+
+/**
+ * Collects the property values received (typically retained messages) between the subscription to the incoming
+ * topics and the binding of the adapter, and folds them into the initial values of the PhysicalAssetDescription.
+ * Offers and close are serialized, so a value is either part of the closed description or refused to the caller.
+ * */
+class PhysicalAssetWarmUp {
+
+    private final PhysicalAssetDescription description;
+    private final Set<String> expectedProperties = new HashSet<>();
+    private final Map<String, Object> warmedValues = new HashMap<>();
+    private final long startNanos = System.nanoTime();
+    private long lastValueNanos = startNanos;
+    private boolean closed = false;
+
+    /**
+     * derivedProperties are computed by the adapter itself (e.g. window aggregates) and never arrive during the warm-up
+     * */
+    PhysicalAssetWarmUp(PhysicalAssetDescription description, Collection<String> derivedProperties) {
+        this.description = description;
+        description.getProperties().forEach(p -> expectedProperties.add(p.getKey()));
+        expectedProperties.removeAll(derivedProperties);
+    }
+
+    /**
+     * Takes the event while the warm-up is open: property values become initial values, other events are discarded.
+     * Returns false once the warm-up is closed, the caller then dispatches the event itself.
+     * */
+    synchronized boolean offer(WldtEvent<?> event) {
+        if(closed) return false;
+        if(!(event instanceof PhysicalAssetPropertyWldtEvent)) return true;
+        PhysicalAssetPropertyWldtEvent<?> propertyEvent = (PhysicalAssetPropertyWldtEvent<?>) event;
+        if(propertyEvent.getBody() == null || !expectedProperties.contains(propertyEvent.getPhysicalPropertyId())) return true;
+        warmedValues.put(propertyEvent.getPhysicalPropertyId(), propertyEvent.getBody());
+        lastValueNanos = System.nanoTime();
+        if(warmedValues.size() == expectedProperties.size()) notifyAll();
+        return true;
+    }
+
+    /**
+     * Waits until every property received a value, the timeout expires or no value arrived for idleTimeoutMs
+     * (retained messages are delivered as a burst right after the SUBACK).
+     * */
+    synchronized void await(long timeoutMs, long idleTimeoutMs) throws InterruptedException {
+        long deadline = startNanos + timeoutMs * 1_000_000L;
+        while (warmedValues.size() < expectedProperties.size()) {
+            long now = System.nanoTime();
+            long idleDeadline = idleTimeoutMs > 0 ? lastValueNanos + idleTimeoutMs * 1_000_000L : deadline;
+            long waitNanos = Math.min(deadline, idleDeadline) - now;
+            if(waitNanos <= 0) return;
+            wait(Math.max(1, waitNanos / 1_000_000L));
+        }
+    }
+
+    /**
+     * Stops taking values and returns the description with the warmed initial values
+     * */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    synchronized PhysicalAssetDescription close() {
+        closed = true;
+        List<PhysicalAssetProperty<?>> properties = new ArrayList<>();
+        for (PhysicalAssetProperty<?> p : description.getProperties()) {
+            Object warmedValue = warmedValues.get(p.getKey());
+            properties.add(warmedValue == null ? p : new PhysicalAssetProperty(p.getKey(), warmedValue));
+        }
+        return new PhysicalAssetDescription(description.getActions(), properties, description.getEvents());
+    }
+
+    synchronized WarmUpReport getReport() {
+        Set<String> warmed = new TreeSet<>(warmedValues.keySet());
+        Set<String> defaulted = new TreeSet<>(expectedProperties);
+        defaulted.removeAll(warmed);
+        return new WarmUpReport(warmed, defaulted, (System.nanoTime() - startNanos) / 1_000_000L);
+    }
+}
@@ -0,0 +1,42 @@
+package it.wldt.adapter.mqtt.physical;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Outcome of the warm-up phase: which properties were initialized from retained messages
+ * and which ones fell back to the initial values of the configuration.
+ * */
+public class WarmUpReport {
+
+    private final Set<String> warmedProperties;
+    private final Set<String> defaultedProperties;
+    private final long durationMs;
+
+    public WarmUpReport(Set<String> warmedProperties, Set<String> defaultedProperties, long durationMs) {
+        this.warmedProperties = Collections.unmodifiableSet(warmedProperties);
+        this.defaultedProperties = Collections.unmodifiableSet(defaultedProperties);
+        this.durationMs = durationMs;
+    }
+
+    public Set<String> getWarmedProperties() {
+        return warmedProperties;
+    }
+
+    public Set<String> getDefaultedProperties() {
+        return defaultedProperties;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpReport{" +
+                "warmedProperties=" + warmedProperties +
+                ", defaultedProperties=" + defaultedProperties +
+                ", durationMs=" + durationMs +
+                '}';
+    }
+}
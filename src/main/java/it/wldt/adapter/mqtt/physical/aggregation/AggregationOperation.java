@@ -0,0 +1,29 @@
+package it.wldt.adapter.mqtt.physical.aggregation;
+
+public enum AggregationOperation {
+
+    MIN("min"),
+    MAX("max"),
+    MEAN("mean"),
+    STDDEV("stddev");
+
+    private final String suffix;
+
+    AggregationOperation(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Returns the key of the derived property, e.g. "intensity.mean"
+     * */
+    public String derivedPropertyKey(String propertyKey) {
+        return propertyKey + "." + suffix;
+    }
+
+    public static AggregationOperation fromString(String value) {
+        for (AggregationOperation op : values()) {
+            if(op.suffix.equalsIgnoreCase(value)) return op;
+        }
+        throw new IllegalArgumentException("Unknown aggregation operation: " + value);
+    }
+}
@@ -0,0 +1,64 @@
+package it.wldt.adapter.mqtt.physical.aggregation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Declaration of a window aggregation on a numeric property. When slideMs equals windowMs the window is tumbling,
+ * otherwise it slides by slideMs and each emission covers the last windowMs milliseconds.
+ * */
+public class WindowAggregation {
+
+    private final String propertyKey;
+    private final long windowMs;
+    private final long slideMs;
+    private final List<AggregationOperation> operations;
+    private final int capacity;
+
+    public WindowAggregation(String propertyKey, long windowMs, long slideMs, List<AggregationOperation> operations, int capacity) {
+        this.propertyKey = propertyKey;
+        this.windowMs = windowMs;
+        this.slideMs = slideMs;
+        this.operations = Collections.unmodifiableList(operations);
+        this.capacity = capacity;
+    }
+
+    public String getPropertyKey() {
+        return propertyKey;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    public long getSlideMs() {
+        return slideMs;
+    }
+
+    public boolean isTumbling() {
+        return slideMs == windowMs;
+    }
+
+    public List<AggregationOperation> getOperations() {
+        return operations;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WindowAggregation that = (WindowAggregation) o;
+        return windowMs == that.windowMs && slideMs == that.slideMs && capacity == that.capacity
+                && propertyKey.equals(that.propertyKey) && operations.equals(that.operations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(propertyKey, windowMs, slideMs, operations, capacity);
+    }
+}
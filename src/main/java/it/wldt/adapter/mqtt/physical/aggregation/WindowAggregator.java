@@ -0,0 +1,97 @@
+package it.wldt.adapter.mqtt.physical.aggregation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Runtime state of a WindowAggregation: samples are kept in a primitive ring buffer (timestamps and values),
+ * when the buffer is full the oldest sample is overwritten and counted as dropped.
+ * */
+public class WindowAggregator {
+
+    private final WindowAggregation aggregation;
+    private final long[] timestamps;
+    private final double[] samples;
+    private final double[] results;
+    private int head = 0;
+    private int size = 0;
+    private long droppedSamples = 0;
+
+    public WindowAggregator(WindowAggregation aggregation) {
+        this.aggregation = aggregation;
+        this.timestamps = new long[aggregation.getCapacity()];
+        this.samples = new double[aggregation.getCapacity()];
+        this.results = new double[aggregation.getOperations().size()];
+    }
+
+    public WindowAggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * Samples overwritten before their window closed, because the window held more samples than the capacity
+     * */
+    public synchronized long getDroppedSampleCount() {
+        return droppedSamples;
+    }
+
+    /**
+     * Adds the numeric content of a property value: numbers and booleans are one sample,
+     * json arrays contribute one sample per numeric element. Other values are ignored.
+     * */
+    public void addValue(Object value, long timestamp) {
+        if(value instanceof Number) add(((Number) value).doubleValue(), timestamp);
+        else if(value instanceof Boolean) add((Boolean) value ? 1.0 : 0.0, timestamp);
+        else if(value instanceof JsonNode && ((JsonNode) value).isArray()) {
+            for (JsonNode element : (JsonNode) value) {
+                if(element.isNumber()) add(element.asDouble(), timestamp);
+            }
+        }
+    }
+
+    public synchronized void add(double value, long timestamp) {
+        int tail = (head + size) % samples.length;
+        samples[tail] = value;
+        timestamps[tail] = timestamp;
+        if(size < samples.length) size++;
+        else {
+            head = (head + 1) % samples.length;
+            droppedSamples++;
+        }
+    }
+
+    /**
+     * Closes the current window and computes the configured operations, in declaration order.
+     * Returns null when the window holds no sample. The returned array is reused by the next call.
+     * */
+    public synchronized double[] closeWindow(long now) {
+        long windowStart = now - aggregation.getWindowMs();
+        while (size > 0 && timestamps[head] <= windowStart) {
+            head = (head + 1) % samples.length;
+            size--;
+        }
+        if(size == 0) return null;
+        // Welford's algorithm: the squared distances from the running mean do not cancel out like sum of squares minus squared mean
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, mean = 0.0, squaredDistances = 0.0;
+        for(int i = 0, idx = head; i < size; i++, idx = (idx + 1) % samples.length){
+            double v = samples[idx];
+            if(v < min) min = v;
+            if(v > max) max = v;
+            double delta = v - mean;
+            mean += delta / (i + 1);
+            squaredDistances += delta * (v - mean);
+        }
+        for(int i = 0; i < results.length; i++){
+            switch (aggregation.getOperations().get(i)) {
+                case MIN: results[i] = min; break;
+                case MAX: results[i] = max; break;
+                case MEAN: results[i] = mean; break;
+                case STDDEV: results[i] = Math.sqrt(squaredDistances / size); break;
+            }
+        }
+        if(aggregation.isTumbling()){
+            head = 0;
+            size = 0;
+        }
+        return results;
+    }
+}
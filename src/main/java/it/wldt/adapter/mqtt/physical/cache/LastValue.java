@@ -0,0 +1,100 @@
+package it.wldt.adapter.mqtt.physical.cache;
+
+/**
+ * Immutable last known value of a physical asset property.
+ * Numeric values are kept as primitives, so reading them never unboxes or allocates.
+ * */
+public final class LastValue {
+
+    public enum Kind { LONG, DOUBLE, BOOLEAN, OBJECT }
+
+    private final String key;
+    private final Kind kind;
+    private final long longValue;
+    private final double doubleValue;
+    private final Object objectValue;
+    private final long timestamp;
+
+    private LastValue(String key, Kind kind, long longValue, double doubleValue, Object objectValue, long timestamp) {
+        this.key = key;
+        this.kind = kind;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+        this.objectValue = objectValue;
+        this.timestamp = timestamp;
+    }
+
+    public static LastValue ofLong(String key, long value, long timestamp){
+        return new LastValue(key, Kind.LONG, value, value, null, timestamp);
+    }
+
+    public static LastValue ofDouble(String key, double value, long timestamp){
+        return new LastValue(key, Kind.DOUBLE, (long) value, value, null, timestamp);
+    }
+
+    public static LastValue ofBoolean(String key, boolean value, long timestamp){
+        return new LastValue(key, Kind.BOOLEAN, value ? 1 : 0, value ? 1.0 : 0.0, null, timestamp);
+    }
+
+    public static LastValue of(String key, Object value, long timestamp){
+        if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return ofLong(key, ((Number) value).longValue(), timestamp);
+        if(value instanceof Number)
+            return ofDouble(key, ((Number) value).doubleValue(), timestamp);
+        if(value instanceof Boolean)
+            return ofBoolean(key, (Boolean) value, timestamp);
+        return new LastValue(key, Kind.OBJECT, 0, Double.NaN, value, timestamp);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isNumeric() {
+        return kind != Kind.OBJECT;
+    }
+
+    public long getLongValue() {
+        return longValue;
+    }
+
+    public double getDoubleValue() {
+        return doubleValue;
+    }
+
+    public boolean getBooleanValue() {
+        return longValue != 0;
+    }
+
+    /**
+     * Returns the value as an object, boxing numeric values on demand.
+     * */
+    public Object getValue() {
+        switch (kind) {
+            case LONG: return longValue;
+            case DOUBLE: return doubleValue;
+            case BOOLEAN: return longValue != 0;
+            default: return objectValue;
+        }
+    }
+
+    /**
+     * Milliseconds since the epoch at which the value was received.
+     * */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "LastValue{" +
+                "key='" + key + '\'' +
+                ", value=" + getValue() +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
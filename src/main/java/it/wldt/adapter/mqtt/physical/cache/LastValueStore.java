@@ -0,0 +1,88 @@
+package it.wldt.adapter.mqtt.physical.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent store of the last value received for each physical asset property.
+ * Entries are immutable and replaced atomically, so readers never take locks and never see a torn value.
+ * */
+public class LastValueStore {
+
+    private final Map<String, LastValue> values = new ConcurrentHashMap<>();
+    //bumped after every change, tells whether the cached snapshot is still current
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyMap());
+
+    public void update(String propertyKey, Object value, long timestamp){
+        if(propertyKey == null || value == null) return;
+        values.put(propertyKey, LastValue.of(propertyKey, value, timestamp));
+        version.incrementAndGet();
+    }
+
+    public void updateDouble(String propertyKey, double value, long timestamp){
+        values.put(propertyKey, LastValue.ofDouble(propertyKey, value, timestamp));
+        version.incrementAndGet();
+    }
+
+    public void updateLong(String propertyKey, long value, long timestamp){
+        values.put(propertyKey, LastValue.ofLong(propertyKey, value, timestamp));
+        version.incrementAndGet();
+    }
+
+    public Optional<LastValue> get(String propertyKey){
+        return Optional.ofNullable(values.get(propertyKey));
+    }
+
+    public OptionalDouble getDouble(String propertyKey){
+        LastValue value = values.get(propertyKey);
+        return value != null && value.isNumeric() ? OptionalDouble.of(value.getDoubleValue()) : OptionalDouble.empty();
+    }
+
+    public void remove(String propertyKey){
+        values.remove(propertyKey);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Removes the entries of the properties not in propertyKeys, e.g. the ones dropped by a configuration reload
+     * */
+    public void retainAll(Set<String> propertyKeys){
+        if(values.keySet().retainAll(propertyKeys)) version.incrementAndGet();
+    }
+
+    /**
+     * Returns a read-only map of all the entries that later updates do not change. The map is copied only when the
+     * store changed since the previous snapshot, so repeated calls between updates are free.
+     * */
+    public Map<String, LastValue> getSnapshot(){
+        Snapshot current = snapshot;
+        //read before copying: an update made during the copy leaves the new snapshot already outdated
+        long currentVersion = version.get();
+        if(current.version == currentVersion) return current.values;
+        Snapshot updated = new Snapshot(currentVersion, Collections.unmodifiableMap(new HashMap<>(values)));
+        snapshot = updated;
+        return updated.values;
+    }
+
+    public int size(){
+        return values.size();
+    }
+
+    private static final class Snapshot {
+
+        private final long version;
+        private final Map<String, LastValue> values;
+
+        private Snapshot(long version, Map<String, LastValue> values) {
+            this.version = version;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package it.wldt.adapter.mqtt.physical.coalescing;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.adapter.mqtt.physical.timing.HashedTimingWheel;
+import it.wldt.adapter.mqtt.physical.timing.Timeout;
+import it.wldt.adapter.physical.event.PhysicalAssetActionWldtEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds the actions of one action key according to its ActionCoalescing policy and hands them to the sink when
+ * they are due. At most one timeout per key is armed at a time: an action arriving during a debounce window only
+ * updates the time of the last action, and the expired timeout re-arms itself for the remainder.
+ * The sink is called under the coalescer lock, so the flushes of a key are published in order.
+ * Metrics: "action.debounced" (actions replaced by a later one) and "action.coalesced" (actions merged into a
+ * previous one) counters.
+ * */
+public class ActionCoalescer {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final ActionCoalescing coalescing;
+    private final HashedTimingWheel timingWheel;
+    private final Consumer<List<PhysicalAssetActionWldtEvent<?>>> sink;
+    private final MqttPhysicalAdapterMetrics metrics;
+    private final long quietNanos;
+    private final long maxDelayNanos;
+    private List<PhysicalAssetActionWldtEvent<?>> pending = new ArrayList<>();
+    private long firstNanos;
+    private long lastNanos;
+    private Timeout timeout;
+    private long generation;
+
+    public ActionCoalescer(ActionCoalescing coalescing, HashedTimingWheel timingWheel,
+                           Consumer<List<PhysicalAssetActionWldtEvent<?>>> sink, MqttPhysicalAdapterMetrics metrics) {
+        this.coalescing = coalescing;
+        this.timingWheel = timingWheel;
+        this.sink = sink;
+        this.metrics = metrics;
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(coalescing.getQuietMs());
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(coalescing.getMaxDelayMs());
+    }
+
+    /**
+     * Serializes the bodies of the actions as a JSON array
+     * */
+    public static byte[] toJsonArray(List<PhysicalAssetActionWldtEvent<?>> actions) throws JsonProcessingException {
+        List<Object> bodies = new ArrayList<>(actions.size());
+        for (PhysicalAssetActionWldtEvent<?> action : actions) bodies.add(action.getBody());
+        return mapper.writeValueAsBytes(bodies);
+    }
+
+    public synchronized void submit(PhysicalAssetActionWldtEvent<?> action) {
+        long now = System.nanoTime();
+        if(coalescing.getMode() == CoalescingMode.DEBOUNCE && !pending.isEmpty()){
+            pending.clear();
+            metrics.counter("action.debounced").increment();
+        }
+        else if(coalescing.getMode() == CoalescingMode.COALESCE && !pending.isEmpty())
+            metrics.counter("action.coalesced").increment();
+        //no armed timeout: this action starts a new burst
+        if(timeout == null) firstNanos = now;
+        pending.add(action);
+        lastNanos = now;
+        if(coalescing.getMode() == CoalescingMode.COALESCE && pending.size() >= coalescing.getMaxBatchSize()) flush();
+        else if(timeout == null) arm(remainingNanos(now));
+    }
+
+    /**
+     * Publishes the pending actions immediately, e.g. before the adapter stops
+     * */
+    public synchronized void flush() {
+        if(timeout != null){
+            timeout.cancel();
+            timeout = null;
+            generation++;
+        }
+        if(pending.isEmpty()) return;
+        List<PhysicalAssetActionWldtEvent<?>> ready = pending;
+        pending = new ArrayList<>();
+        sink.accept(Collections.unmodifiableList(ready));
+    }
+
+    private synchronized void onTimeout(long armedGeneration) {
+        //a flush cancelled this timeout while it was already expiring
+        if(armedGeneration != generation) return;
+        timeout = null;
+        if(pending.isEmpty()) return;
+        long remaining = remainingNanos(System.nanoTime());
+        if(remaining > 0) arm(remaining);
+        else flush();
+    }
+
+    private long remainingNanos(long now) {
+        long deadline = firstNanos + maxDelayNanos;
+        if(coalescing.getMode() == CoalescingMode.DEBOUNCE) deadline = Math.min(deadline, lastNanos + quietNanos);
+        return deadline - now;
+    }
+
+    private void arm(long delayNanos) {
+        long armedGeneration = ++generation;
+        timeout = timingWheel.newTimeout(Math.max(0, delayNanos), TimeUnit.NANOSECONDS, () -> onTimeout(armedGeneration));
+    }
+}
@@ -0,0 +1,60 @@
+package it.wldt.adapter.mqtt.physical.coalescing;
+
+/**
+ * Coalescing policy of an action key. maxDelayMs bounds the latency of the first action of a burst:
+ * a burst that never becomes quiet, or a batch that never fills up, is published anyway after maxDelayMs.
+ * */
+public class ActionCoalescing {
+
+    private final CoalescingMode mode;
+    private final long quietMs;
+    private final long maxDelayMs;
+    private final int maxBatchSize;
+
+    private ActionCoalescing(CoalescingMode mode, long quietMs, long maxDelayMs, int maxBatchSize) {
+        this.mode = mode;
+        this.quietMs = quietMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public static ActionCoalescing debounce(long quietMs, long maxDelayMs) {
+        return new ActionCoalescing(CoalescingMode.DEBOUNCE, quietMs, maxDelayMs, 1);
+    }
+
+    public static ActionCoalescing coalesce(long maxDelayMs, int maxBatchSize) {
+        return new ActionCoalescing(CoalescingMode.COALESCE, 0, maxDelayMs, maxBatchSize);
+    }
+
+    public CoalescingMode getMode() {
+        return mode;
+    }
+
+    /**
+     * DEBOUNCE only: time without actions after which the last one is published
+     * */
+    public long getQuietMs() {
+        return quietMs;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    /**
+     * COALESCE only: a batch reaching this size is published immediately
+     * */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ActionCoalescing{" +
+                "mode=" + mode +
+                ", quietMs=" + quietMs +
+                ", maxDelayMs=" + maxDelayMs +
+                ", maxBatchSize=" + maxBatchSize +
+                '}';
+    }
+}
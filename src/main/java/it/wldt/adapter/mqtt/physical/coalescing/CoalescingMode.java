@@ -0,0 +1,10 @@
+package it.wldt.adapter.mqtt.physical.coalescing;
+
+/**
+ * DEBOUNCE: only the last action of a burst is published, once no action arrived for the quiet window.
+ * COALESCE: the bodies of the actions of a burst are published together as one JSON array.
+ * */
+public enum CoalescingMode {
+    DEBOUNCE,
+    COALESCE
+}
@@ -0,0 +1,58 @@
+package it.wldt.adapter.mqtt.physical.correlation;
+
+/**
+ * Body of the "<actionKey>.completed" and "<actionKey>.timeout" events
+ * */
+public class ActionOutcome {
+
+    private final String actionKey;
+    private final String correlationId;
+    private final boolean completed;
+    private final long latencyMs;
+    private final String response;
+
+    public ActionOutcome(String actionKey, String correlationId, boolean completed, long latencyMs, String response) {
+        this.actionKey = actionKey;
+        this.correlationId = correlationId;
+        this.completed = completed;
+        this.latencyMs = latencyMs;
+        this.response = response;
+    }
+
+    public String getActionKey() {
+        return actionKey;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Round trip time for a completed action, time waited for a timed out one
+     * */
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+
+    /**
+     * Payload of the response, null on timeout
+     * */
+    public String getResponse() {
+        return response;
+    }
+
+    @Override
+    public String toString() {
+        return "ActionOutcome{" +
+                "actionKey='" + actionKey + '\'' +
+                ", correlationId='" + correlationId + '\'' +
+                ", completed=" + completed +
+                ", latencyMs=" + latencyMs +
+                ", response='" + response + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+package it.wldt.adapter.mqtt.physical.correlation;
+
+/**
+ * Response expected by an action: the topic the device answers on, how the correlation id is carried
+ * and how long the adapter waits before reporting a timeout
+ * */
+public class ActionResponseConfiguration {
+
+    public static final String DEFAULT_CORRELATION_FIELD = "correlationId";
+
+    private final String responseTopic;
+    private final CorrelationMode correlationMode;
+    private final String correlationField;
+    private final long timeoutMs;
+
+    public ActionResponseConfiguration(String responseTopic, CorrelationMode correlationMode, String correlationField, long timeoutMs) {
+        this.responseTopic = responseTopic;
+        this.correlationMode = correlationMode;
+        this.correlationField = correlationField;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public ActionResponseConfiguration(String responseTopic, CorrelationMode correlationMode, long timeoutMs) {
+        this(responseTopic, correlationMode, DEFAULT_CORRELATION_FIELD, timeoutMs);
+    }
+
+    public String getResponseTopic() {
+        return responseTopic;
+    }
+
+    public CorrelationMode getCorrelationMode() {
+        return correlationMode;
+    }
+
+    public String getCorrelationField() {
+        return correlationField;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    public String toString() {
+        return "ActionResponseConfiguration{" +
+                "responseTopic='" + responseTopic + '\'' +
+                ", correlationMode=" + correlationMode +
+                ", correlationField='" + correlationField + '\'' +
+                ", timeoutMs=" + timeoutMs +
+                '}';
+    }
+}
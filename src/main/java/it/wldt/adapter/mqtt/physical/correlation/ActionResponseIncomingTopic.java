@@ -0,0 +1,43 @@
+package it.wldt.adapter.mqtt.physical.correlation;
+
+import it.wldt.adapter.mqtt.physical.topic.incoming.DigitalTwinIncomingTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import it.wldt.core.event.WldtEvent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Incoming topic on which devices answer actions. It produces no event by itself: responses are handed to the
+ * ActionResponseTracker of the adapter, which emits the completion events.
+ * */
+public class ActionResponseIncomingTopic extends DigitalTwinIncomingTopic {
+
+    private final Set<String> correlationFields = new CopyOnWriteArraySet<>();
+    private volatile ActionResponseTracker tracker;
+
+    public ActionResponseIncomingTopic(String topic) {
+        super(topic, payload -> Collections.emptyList());
+    }
+
+    public void addCorrelationField(String field) {
+        correlationFields.add(field);
+    }
+
+    public Set<String> getCorrelationFields() {
+        return Collections.unmodifiableSet(correlationFields);
+    }
+
+    public void setTracker(ActionResponseTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(MqttIncomingMessage message) {
+        ActionResponseTracker currentTracker = tracker;
+        if(currentTracker != null) currentTracker.onResponse(message, correlationFields);
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,141 @@
+package it.wldt.adapter.mqtt.physical.correlation;
+
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.adapter.mqtt.physical.timing.HashedTimingWheel;
+import it.wldt.adapter.mqtt.physical.timing.Timeout;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import it.wldt.adapter.physical.event.PhysicalAssetEventWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Table of the actions waiting for a response. Each pending action costs one map entry and one timing wheel slot,
+ * so tens of thousands of outstanding commands need no extra threads.
+ * A response completes its action with a "<actionKey>.completed" event, the expiration of the timeout with a
+ * "<actionKey>.timeout" event; whichever comes first removes the entry, the other one is ignored.
+ * Metrics: "action.latency.<actionKey>" histogram, "action.completed", "action.timeout" and "action.response.unmatched"
+ * counters, "action.pending" gauge.
+ * */
+public class ActionResponseTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActionResponseTracker.class);
+
+    private final HashedTimingWheel timingWheel;
+    private final MqttPhysicalAdapterMetrics metrics;
+    private final Consumer<WldtEvent<?>> eventSink;
+    private final String idPrefix;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, PendingAction> pendingActions = new ConcurrentHashMap<>();
+
+    public ActionResponseTracker(String idPrefix, HashedTimingWheel timingWheel, MqttPhysicalAdapterMetrics metrics, Consumer<WldtEvent<?>> eventSink) {
+        this.idPrefix = idPrefix;
+        this.timingWheel = timingWheel;
+        this.metrics = metrics;
+        this.eventSink = eventSink;
+        this.metrics.registerGauge("action.pending", pendingActions::size);
+    }
+
+    public static String completedEventKey(String actionKey) {
+        return actionKey + ".completed";
+    }
+
+    public static String timeoutEventKey(String actionKey) {
+        return actionKey + ".timeout";
+    }
+
+    /**
+     * Unique within the adapter: the prefix distinguishes adapters sharing a response topic
+     * */
+    public String nextCorrelationId() {
+        return idPrefix + Long.toString(sequence.incrementAndGet(), 36);
+    }
+
+    /**
+     * Registers an action before it is published, so that a fast response cannot arrive before its entry
+     * */
+    public void track(String actionKey, String correlationId, long timeoutMs) {
+        PendingAction pending = new PendingAction(actionKey, correlationId, System.nanoTime());
+        //the entry is visible to responses and cancel only with its timeout set, so the timeout is always cancelled
+        pending.timeout = timingWheel.newTimeout(timeoutMs, TimeUnit.MILLISECONDS, () -> onTimeout(pending));
+        pendingActions.put(correlationId, pending);
+        //a timeout that fired before the put found no entry to remove
+        if(pending.timeout.isExpired()) onTimeout(pending);
+    }
+
+    /**
+     * Forgets an action whose publish failed
+     * */
+    public void cancel(String correlationId) {
+        PendingAction pending = pendingActions.remove(correlationId);
+        if(pending != null && pending.timeout != null) pending.timeout.cancel();
+    }
+
+    /**
+     * Completes the action the response refers to. The correlation id is read from the MQTT 5 correlation data,
+     * or from the first of the given payload fields found in the response.
+     * */
+    public void onResponse(MqttIncomingMessage response, Collection<String> correlationFields) {
+        String correlationId = CorrelationIds.fromCorrelationData(response.getCorrelationData());
+        if(correlationId == null){
+            for (String field : correlationFields) {
+                correlationId = CorrelationIds.extract(response.getPayload(), field);
+                if(correlationId != null) break;
+            }
+        }
+        PendingAction pending = correlationId != null ? pendingActions.remove(correlationId) : null;
+        if(pending == null){
+            //late response of a timed out action, response of another adapter or missing id
+            metrics.counter("action.response.unmatched").increment();
+            return;
+        }
+        if(pending.timeout != null) pending.timeout.cancel();
+        long latencyNanos = System.nanoTime() - pending.sentNanos;
+        metrics.histogram("action.latency." + pending.actionKey).record(latencyNanos);
+        metrics.counter("action.completed").increment();
+        emit(completedEventKey(pending.actionKey), new ActionOutcome(pending.actionKey, correlationId, true,
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos), new String(response.getPayload(), StandardCharsets.UTF_8)));
+    }
+
+    public int getPendingCount() {
+        return pendingActions.size();
+    }
+
+    private void onTimeout(PendingAction pending) {
+        if(!pendingActions.remove(pending.correlationId, pending)) return;
+        metrics.counter("action.timeout").increment();
+        emit(timeoutEventKey(pending.actionKey), new ActionOutcome(pending.actionKey, pending.correlationId, false,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.sentNanos), null));
+    }
+
+    private void emit(String eventKey, ActionOutcome outcome) {
+        try {
+            eventSink.accept(new PhysicalAssetEventWldtEvent<>(eventKey, outcome));
+        } catch (EventBusException e) {
+            logger.error("MQTT Physical Adapter - unable to emit {}: {}", eventKey, e.getMessage());
+        }
+    }
+
+    private static final class PendingAction {
+
+        private final String actionKey;
+        private final String correlationId;
+        private final long sentNanos;
+        private volatile Timeout timeout;
+
+        private PendingAction(String actionKey, String correlationId, long sentNanos) {
+            this.actionKey = actionKey;
+            this.correlationId = correlationId;
+            this.sentNanos = sentNanos;
+        }
+    }
+}
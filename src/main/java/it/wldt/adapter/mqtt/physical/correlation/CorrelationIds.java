@@ -0,0 +1,69 @@
+package it.wldt.adapter.mqtt.physical.correlation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Injection and extraction of correlation ids in JSON object payloads
+ * */
+public final class CorrelationIds {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private CorrelationIds() {
+    }
+
+    /**
+     * Returns the payload with "field":"id" added as first field of the top-level JSON object, without parsing it.
+     * Returns null if the payload is not a JSON object. The id is escaped, the field name must not need JSON escaping.
+     * */
+    public static byte[] inject(byte[] payload, String field, String id) {
+        int open = 0;
+        while(open < payload.length && payload[open] <= ' ') open++;
+        if(open == payload.length || payload[open] != '{') return null;
+        int next = open + 1;
+        while(next < payload.length && payload[next] <= ' ') next++;
+        if(next == payload.length) return null;
+        boolean empty = payload[next] == '}';
+        byte[] member = ("\"" + field + "\":\"" + new String(JsonStringEncoder.getInstance().quoteAsString(id)) + "\""
+                + (empty ? "" : ",")).getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[payload.length + member.length];
+        System.arraycopy(payload, 0, result, 0, open + 1);
+        System.arraycopy(member, 0, result, open + 1, member.length);
+        System.arraycopy(payload, open + 1, result, open + 1 + member.length, payload.length - open - 1);
+        return result;
+    }
+
+    /**
+     * Returns the value of the given top-level field of a JSON object payload, null if missing or not parsable.
+     * Nested objects and arrays are skipped without being materialized.
+     * */
+    public static String extract(byte[] payload, String field) {
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if(parser.nextToken() != JsonToken.START_OBJECT) return null;
+            JsonToken token;
+            while((token = parser.nextToken()) == JsonToken.FIELD_NAME){
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if(field.equals(name)) return value.isScalarValue() ? parser.getValueAsString() : null;
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static String fromCorrelationData(byte[] correlationData) {
+        return correlationData == null ? null : new String(correlationData, StandardCharsets.UTF_8);
+    }
+
+    public static boolean isValidField(String field) {
+        return field != null && !field.isEmpty() && field.chars().allMatch(c -> c >= 0x20 && c != '"' && c != '\\' && c < 0x7F);
+    }
+}
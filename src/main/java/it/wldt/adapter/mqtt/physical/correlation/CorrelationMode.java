@@ -0,0 +1,15 @@
+package it.wldt.adapter.mqtt.physical.correlation;
+
+/**
+ * Where the correlation id of an action travels.
+ * PAYLOAD: injected as a field of the JSON object payload, and expected in the same field of the response.
+ * PROPERTIES: MQTT 5 correlation data and response topic properties, echoed by the device in its response.
+ * */
+public enum CorrelationMode {
+    PAYLOAD,
+    PROPERTIES;
+
+    public static CorrelationMode fromString(String value) {
+        return CorrelationMode.valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,53 @@
+package it.wldt.adapter.mqtt.physical.dispatch;
+
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+
+/**
+ * A message received on a subscribed topic filter, waiting in the inbound queue.
+ * */
+public class InboundMessage {
+
+    private final String topicFilter;
+    private final MqttIncomingMessage message;
+    private final MessagePriority priority;
+    private final long enqueueNanos;
+    private boolean ackPending = false;
+
+    public InboundMessage(String topicFilter, MqttIncomingMessage message) {
+        this(topicFilter, message, MessagePriority.NORMAL);
+    }
+
+    public InboundMessage(String topicFilter, MqttIncomingMessage message, MessagePriority priority) {
+        this.topicFilter = topicFilter;
+        this.message = message;
+        this.priority = priority;
+        this.enqueueNanos = System.nanoTime();
+    }
+
+    public String getTopicFilter() {
+        return topicFilter;
+    }
+
+    public MqttIncomingMessage getMessage() {
+        return message;
+    }
+
+    public MessagePriority getPriority() {
+        return priority;
+    }
+
+    public long getEnqueueNanos() {
+        return enqueueNanos;
+    }
+
+    /**
+     * True when the message must be acknowledged to the broker after being processed
+     * */
+    public boolean isAckPending() {
+        return ackPending;
+    }
+
+    void setAckPending(boolean ackPending) {
+        this.ackPending = ackPending;
+    }
+}
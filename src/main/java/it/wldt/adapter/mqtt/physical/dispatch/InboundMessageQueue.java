@@ -0,0 +1,303 @@
+package it.wldt.adapter.mqtt.physical.dispatch;
+
+import it.wldt.adapter.mqtt.physical.metrics.LatencyHistogram;
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded buffer between the MQTT callback thread and message processing. Messages are processed by a single worker
+ * thread, in arrival order within each MessagePriority lane. Higher lanes are drained first: after starvationLimit
+ * consecutive messages of a lane while a lower lane has work, the lower lane gets one turn.
+ * When the queue is full, a message evicts the oldest message of a lower lane if any, otherwise the OverflowPolicy
+ * of the message topic applies.
+ * Stopping drains the queued messages before the worker exits, so that messages waiting for a manual ack get it.
+ * */
+public class InboundMessageQueue {
+
+    public static final int DEFAULT_STARVATION_LIMIT = 32;
+
+    private final int capacity;
+    private final long blockTimeoutNanos;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final int starvationLimit;
+    private final QueueWatermarkListener watermarkListener;
+    private final Consumer<InboundMessage> processor;
+    private final MqttPhysicalAdapterMetrics metrics;
+    private final LatencyHistogram queueLatency;
+    private final LatencyHistogram[] laneLatencies;
+
+    private final ArrayDeque<InboundMessage>[] lanes;
+    private final int[] consecutive;
+    private int size = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private boolean aboveHighWatermark = false;
+    private volatile boolean running = false;
+    private boolean stopped = false;
+    private Thread worker;
+
+    public InboundMessageQueue(int capacity, long blockTimeoutMs, int highWatermark, int lowWatermark,
+                               QueueWatermarkListener watermarkListener, Consumer<InboundMessage> processor,
+                               MqttPhysicalAdapterMetrics metrics) {
+        this(capacity, blockTimeoutMs, highWatermark, lowWatermark, DEFAULT_STARVATION_LIMIT, watermarkListener, processor, metrics);
+    }
+
+    @SuppressWarnings("unchecked")
+    public InboundMessageQueue(int capacity, long blockTimeoutMs, int highWatermark, int lowWatermark, int starvationLimit,
+                               QueueWatermarkListener watermarkListener, Consumer<InboundMessage> processor,
+                               MqttPhysicalAdapterMetrics metrics) {
+        this.capacity = capacity;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.starvationLimit = starvationLimit;
+        this.watermarkListener = watermarkListener;
+        this.processor = processor;
+        this.metrics = metrics;
+        this.queueLatency = metrics.histogram("inbound.queue.latency");
+        MessagePriority[] priorities = MessagePriority.values();
+        this.lanes = (ArrayDeque<InboundMessage>[]) new ArrayDeque<?>[priorities.length];
+        this.laneLatencies = new LatencyHistogram[priorities.length];
+        this.consecutive = new int[priorities.length];
+        for (MessagePriority priority : priorities) {
+            lanes[priority.ordinal()] = new ArrayDeque<>();
+            laneLatencies[priority.ordinal()] = metrics.histogram("inbound.queue.latency." + priority.getMetricName());
+            metrics.registerGauge("inbound.queue.size." + priority.getMetricName(), () -> size(priority));
+        }
+        metrics.registerGauge("inbound.queue.size", this::size);
+    }
+
+    public synchronized void start() {
+        if(running) return;
+        running = true;
+        worker = new Thread(this::process, "mqtt-pa-inbound");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops accepting messages and lets the worker process the queued ones for up to drainTimeoutMs.
+     * Returns the messages left unprocessed, which the caller must acknowledge if they are ack pending.
+     * */
+    public synchronized List<InboundMessage> stop(long drainTimeoutMs) {
+        if(!running) return new ArrayList<>();
+        lock.lock();
+        try {
+            running = false;
+            stopped = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join(drainTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker.interrupt();
+        List<InboundMessage> unprocessed = new ArrayList<>();
+        lock.lock();
+        try {
+            for (ArrayDeque<InboundMessage> lane : lanes) {
+                unprocessed.addAll(lane);
+                lane.clear();
+            }
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+        metrics.counter("inbound.dropped.stopped").add(unprocessed.size());
+        return unprocessed;
+    }
+
+    /**
+     * Enqueues a message applying the given policy if the queue is full. manualAck tells whether the message can be
+     * acknowledged after processing (QoS 1/2 with Paho manual acks enabled).
+     * Returns false if the message was not accepted (and must be acknowledged by the caller).
+     * */
+    public boolean offer(InboundMessage message, OverflowPolicy policy, boolean manualAck) throws InterruptedException {
+        lock.lock();
+        try {
+            if(stopped){
+                metrics.counter("inbound.dropped.stopped").increment();
+                return false;
+            }
+            if(size >= capacity && evictLowerPriority(message.getPriority())){
+                metrics.counter("inbound.dropped.preempted").increment();
+                if(policy == OverflowPolicy.PAUSE && manualAck) message.setAckPending(true);
+            }
+            else if(size >= capacity){
+                switch (policy) {
+                    case DROP_NEWEST:
+                        metrics.counter("inbound.dropped.newest").increment();
+                        return false;
+                    case DROP_OLDEST:
+                        if(!removeOldest(lanes[message.getPriority().ordinal()], message.getTopicFilter())){
+                            metrics.counter("inbound.dropped.newest").increment();
+                            return false;
+                        }
+                        metrics.counter("inbound.dropped.oldest").increment();
+                        break;
+                    case PAUSE:
+                        if(manualAck){
+                            //bounded by the broker in-flight window, since the ack is sent after processing
+                            message.setAckPending(true);
+                            metrics.counter("inbound.paused").increment();
+                            break;
+                        }
+                        //QoS 0 messages cannot be paused through acks: handled as BLOCK
+                        if(!awaitRoom()) return false;
+                        break;
+                    case BLOCK:
+                        if(!awaitRoom()) return false;
+                        break;
+                }
+            }
+            else if(policy == OverflowPolicy.PAUSE && manualAck)
+                message.setAckPending(true);
+            lanes[message.getPriority().ordinal()].addLast(message);
+            size++;
+            if(!aboveHighWatermark && size >= highWatermark){
+                aboveHighWatermark = true;
+                if(watermarkListener != null) watermarkListener.onHighWatermark(size, capacity);
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for room for up to the block timeout, returning false (dropped message) on timeout or stop.
+     * Called with the lock held.
+     * */
+    private boolean awaitRoom() throws InterruptedException {
+        long remaining = blockTimeoutNanos;
+        while (size >= capacity) {
+            if(stopped){
+                metrics.counter("inbound.dropped.stopped").increment();
+                return false;
+            }
+            if(remaining <= 0){
+                metrics.counter("inbound.dropped.timeout").increment();
+                return false;
+            }
+            remaining = notFull.awaitNanos(remaining);
+        }
+        return true;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(MessagePriority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private boolean removeOldest(ArrayDeque<InboundMessage> lane, String topicFilter) {
+        Iterator<InboundMessage> it = lane.iterator();
+        while (it.hasNext()) {
+            InboundMessage queued = it.next();
+            //messages waiting for a manual ack cannot be dropped, the broker would never get the ack
+            if((topicFilter == null || queued.getTopicFilter().equals(topicFilter)) && !queued.isAckPending()){
+                it.remove();
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the oldest message of the lowest non-empty lane below the given priority
+     * */
+    private boolean evictLowerPriority(MessagePriority priority) {
+        for(int lane = lanes.length - 1; lane > priority.ordinal(); lane--)
+            if(removeOldest(lanes[lane], null)) return true;
+        return false;
+    }
+
+    private InboundMessage poll() {
+        for(int lane = 0; lane < lanes.length; lane++){
+            if(lanes[lane].isEmpty()) continue;
+            if(!hasLowerPriorityWork(lane)){
+                consecutive[lane] = 0;
+                return lanes[lane].pollFirst();
+            }
+            if(consecutive[lane] < starvationLimit){
+                consecutive[lane]++;
+                return lanes[lane].pollFirst();
+            }
+            //gives a turn to the lower lanes
+            consecutive[lane] = 0;
+            metrics.counter("inbound.starvation.turns").increment();
+        }
+        return null;
+    }
+
+    private boolean hasLowerPriorityWork(int lane) {
+        for(int lower = lane + 1; lower < lanes.length; lower++)
+            if(!lanes[lower].isEmpty()) return true;
+        return false;
+    }
+
+    private void process() {
+        while (true) {
+            InboundMessage message;
+            lock.lock();
+            try {
+                while (size == 0) {
+                    if(!running) return;
+                    notEmpty.await();
+                }
+                message = poll();
+                size--;
+                if(aboveHighWatermark && size <= lowWatermark){
+                    aboveHighWatermark = false;
+                    if(watermarkListener != null) watermarkListener.onLowWatermark(size, capacity);
+                }
+                notFull.signal();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            long latency = System.nanoTime() - message.getEnqueueNanos();
+            queueLatency.record(latency);
+            laneLatencies[message.getPriority().ordinal()].record(latency);
+            try {
+                processor.accept(message);
+            } catch (RuntimeException e) {
+                metrics.counter("inbound.processing.failed").increment();
+                e.printStackTrace();
+            }
+        }
+    }
+}
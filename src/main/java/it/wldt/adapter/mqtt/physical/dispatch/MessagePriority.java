@@ -0,0 +1,20 @@
+package it.wldt.adapter.mqtt.physical.dispatch;
+
+/**
+ * Lane of the inbound queue used by the messages of a topic. Higher lanes are always drained first,
+ * lower lanes are still served periodically so that they cannot starve.
+ * */
+public enum MessagePriority {
+
+    HIGH,
+    NORMAL,
+    LOW;
+
+    public static MessagePriority fromString(String value) {
+        return MessagePriority.valueOf(value.trim().toUpperCase());
+    }
+
+    public String getMetricName() {
+        return name().toLowerCase();
+    }
+}
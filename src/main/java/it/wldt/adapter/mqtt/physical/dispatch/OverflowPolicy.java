@@ -0,0 +1,23 @@
+package it.wldt.adapter.mqtt.physical.dispatch;
+
+/**
+ * What the inbound queue does with a message of a topic when the queue is full.
+ * */
+public enum OverflowPolicy {
+
+    /** Discards the oldest queued message of the same topic to make room for the new one */
+    DROP_OLDEST,
+    /** Discards the new message */
+    DROP_NEWEST,
+    /** Blocks the MQTT callback thread until there is room or the block timeout expires (then drops the new message) */
+    BLOCK,
+    /**
+     * Accepts the message but acknowledges it only once processed (Paho manual acks), so the broker stops sending
+     * QoS 1/2 messages when its in-flight window is exhausted. QoS 0 messages are handled as BLOCK, block timeout included.
+     * */
+    PAUSE;
+
+    public static OverflowPolicy fromString(String value) {
+        return OverflowPolicy.valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,12 @@
+package it.wldt.adapter.mqtt.physical.dispatch;
+
+/**
+ * Notified when the inbound queue rises above the high watermark and when it drains back below the low watermark.
+ * Invoked on the thread that crossed the watermark, so implementations must not block.
+ * */
+public interface QueueWatermarkListener {
+
+    void onHighWatermark(int queueSize, int capacity);
+
+    void onLowWatermark(int queueSize, int capacity);
+}
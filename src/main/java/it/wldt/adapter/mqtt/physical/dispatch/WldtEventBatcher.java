@@ -0,0 +1,134 @@
+package it.wldt.adapter.mqtt.physical.dispatch;
+
+import it.wldt.adapter.mqtt.physical.metrics.LatencyHistogram;
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.core.event.WldtEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Collects WldtEvents produced by any topic and hands them to a sink in batches of at most maxBatchSize events,
+ * waiting at most maxDelayMicros after the first event of a batch. A single drain thread consumes the batches in
+ * FIFO order, so the events of the same key keep their order. Producers block while a full batch is pending.
+ * Events submitted while the batcher is not running are rejected, and the caller publishes them itself.
+ * */
+public class WldtEventBatcher {
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Consumer<List<WldtEvent<?>>> batchSink;
+    private final LatencyHistogram batchSizes;
+    private final LatencyHistogram addedLatency;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    //double buffering: producers fill pending while the drain thread publishes draining
+    private List<WldtEvent<?>> pending;
+    private List<WldtEvent<?>> draining;
+    private long[] pendingEnqueueNanos;
+    private long[] drainingEnqueueNanos;
+    private volatile boolean running = false;
+    private Thread drainThread;
+
+    public WldtEventBatcher(int maxBatchSize, long maxDelayMicros, Consumer<List<WldtEvent<?>>> batchSink, MqttPhysicalAdapterMetrics metrics) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.batchSink = batchSink;
+        this.pending = new ArrayList<>(maxBatchSize);
+        this.draining = new ArrayList<>(maxBatchSize);
+        this.pendingEnqueueNanos = new long[maxBatchSize];
+        this.drainingEnqueueNanos = new long[maxBatchSize];
+        this.batchSizes = metrics.histogram("batch.size");
+        this.addedLatency = metrics.histogram("batch.latency");
+    }
+
+    public synchronized void start() {
+        if(running) return;
+        running = true;
+        drainThread = new Thread(this::drain, "mqtt-pa-event-batcher");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * Stops the drain thread after publishing the events still pending.
+     * */
+    public synchronized void stop() {
+        if(!running) return;
+        running = false;
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            drainThread.join(TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns false, without queuing the event, when the batcher is not running or stops while the producer waits
+     * */
+    public boolean submit(WldtEvent<?> event) throws InterruptedException {
+        lock.lock();
+        try {
+            while (running && pending.size() >= maxBatchSize) notFull.await();
+            if(!running) return false;
+            pendingEnqueueNanos[pending.size()] = System.nanoTime();
+            pending.add(event);
+            if(pending.size() == 1 || pending.size() >= maxBatchSize) notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Exits once stopped with nothing pending: both are checked under the lock, so no accepted event is left behind
+     * */
+    private void drain() {
+        while (true) {
+            int size;
+            lock.lock();
+            try {
+                while (running && pending.isEmpty()) notEmpty.await();
+                if(pending.isEmpty()) return;
+                long deadline = pendingEnqueueNanos[0] + maxDelayNanos;
+                long remaining;
+                while (running && pending.size() < maxBatchSize && (remaining = deadline - System.nanoTime()) > 0)
+                    notEmpty.awaitNanos(remaining);
+                List<WldtEvent<?>> swapEvents = draining;
+                draining = pending;
+                pending = swapEvents;
+                long[] swapNanos = drainingEnqueueNanos;
+                drainingEnqueueNanos = pendingEnqueueNanos;
+                pendingEnqueueNanos = swapNanos;
+                size = draining.size();
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            long now = System.nanoTime();
+            for(int i = 0; i < size && i < drainingEnqueueNanos.length; i++) addedLatency.record(now - drainingEnqueueNanos[i]);
+            batchSizes.record(size);
+            try {
+                batchSink.accept(draining);
+            } finally {
+                draining.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package it.wldt.adapter.mqtt.physical.exception;
+
+public class MqttTransportException extends Exception{
+    public MqttTransportException(String message) {
+        super(message);
+    }
+
+    public MqttTransportException(Throwable cause) {
+        super(cause);
+    }
+}
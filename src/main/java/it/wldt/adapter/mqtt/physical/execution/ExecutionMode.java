@@ -0,0 +1,15 @@
+package it.wldt.adapter.mqtt.physical.execution;
+
+/**
+ * Where subscribe and publish functions run.
+ * CALLER: on the thread delivering the message (Paho callback, inbound queue worker or WLDT event thread).
+ * CONCURRENT: one task per message, on a virtual thread on Java 21+ or on a bounded platform pool otherwise.
+ * */
+public enum ExecutionMode {
+    CALLER,
+    CONCURRENT;
+
+    public static ExecutionMode fromString(String value) {
+        return ExecutionMode.valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,77 @@
+package it.wldt.adapter.mqtt.physical.execution;
+
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs message processing tasks concurrently, keeping the order of the tasks sharing an ordered key (i.e. a topic).
+ * At most maxInFlight tasks are queued or running: beyond that execute blocks the caller, so a slow subscribe
+ * function slows down the delivery instead of growing an unbounded backlog.
+ * Metrics: "execution.inflight" gauge and "execution.failed" counter.
+ * */
+public class KeyedMessageExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyedMessageExecutor.class);
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final MqttPhysicalAdapterMetrics metrics;
+    private final Map<String, SerialExecutor> serialExecutors = new ConcurrentHashMap<>();
+
+    public KeyedMessageExecutor(String name, int maxThreads, int maxInFlight, MqttPhysicalAdapterMetrics metrics) {
+        this.executor = MessageExecutors.newPerMessageExecutor(name, maxThreads);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.metrics = metrics;
+        this.metrics.registerGauge("execution.inflight", () -> this.maxInFlight - inFlight.availablePermits());
+        logger.info("MQTT Physical Adapter - message execution on {}", MessageExecutors.isVirtualThreadAvailable()
+                ? "virtual threads" : "a pool of " + maxThreads + " platform threads");
+    }
+
+    public void execute(String key, boolean ordered, Runnable task) throws InterruptedException {
+        inFlight.acquire();
+        Runnable wrapped = () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                metrics.counter("execution.failed").increment();
+                logger.error("MQTT Physical Adapter - message processing failed on {}: {}", key, e.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        };
+        try {
+            if(ordered) serialExecutors.computeIfAbsent(key, k -> new SerialExecutor(executor)).execute(wrapped);
+            else executor.execute(wrapped);
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the ordering state of a key no longer in use
+     * */
+    public void remove(String key) {
+        serialExecutors.remove(key);
+    }
+
+    public void shutdown(long timeoutMs) {
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package it.wldt.adapter.mqtt.physical.execution;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors running one task per message. This is the Java 8 version, using a bounded pool of platform threads:
+ * the Java 21 version in META-INF/versions/21 of the multi-release jar uses virtual threads instead.
+ * */
+public final class MessageExecutors {
+
+    private MessageExecutors() {
+    }
+
+    public static boolean isVirtualThreadAvailable() {
+        return false;
+    }
+
+    /**
+     * Returns an executor with at most maxThreads daemon threads named name-N. maxThreads is ignored with virtual threads.
+     * */
+    public static ExecutorService newPerMessageExecutor(String name, int maxThreads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, name + "-" + counter.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
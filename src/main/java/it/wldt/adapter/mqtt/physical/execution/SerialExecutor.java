@@ -0,0 +1,43 @@
+package it.wldt.adapter.mqtt.physical.execution;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the submitted tasks one at a time and in submission order on a shared executor.
+ * No thread is held while the queue is empty.
+ * */
+class SerialExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor executor;
+    private Runnable active;
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.add(() -> {
+            try {
+                task.run();
+            } finally {
+                scheduleNext();
+            }
+        });
+        if(active == null) scheduleNext();
+    }
+
+    private synchronized void scheduleNext() {
+        if((active = tasks.poll()) == null) return;
+        try {
+            executor.execute(active);
+        } catch (RejectedExecutionException e) {
+            active = null;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package it.wldt.adapter.mqtt.physical.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative long values (usually nanoseconds).
+ * Every power of two is split into 16 sub-buckets, so reported quantiles are within ~6% of the recorded value.
+ * */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value){
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long c = count.sum();
+        return c == 0 ? 0.0 : (double) sum.sum() / c;
+    }
+
+    /**
+     * Returns the highest value of the bucket containing the given quantile (0.0 - 1.0), 0 if nothing was recorded.
+     * */
+    public long getValueAtQuantile(double quantile){
+        long total = count.sum();
+        if(total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total));
+        long cumulative = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            cumulative += counts.get(i);
+            if(cumulative >= target)
+                return Math.min(upperBoundOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    public void reset(){
+        for(int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    private static int indexOf(long v){
+        if(v < SUB_BUCKETS) return (int) v;
+        int magnitude = 63 - Long.numberOfLeadingZeros(v);
+        int subBucket = (int) ((v >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index){
+        if(index < SUB_BUCKETS) return index;
+        int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << (magnitude - SUB_BUCKET_BITS);
+        return lower + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p99=%d p999=%d max=%d",
+                getCount(), getMean(), getValueAtQuantile(0.5), getValueAtQuantile(0.99), getValueAtQuantile(0.999), getMax());
+    }
+}
@@ -0,0 +1,63 @@
+package it.wldt.adapter.mqtt.physical.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and latency histograms exposed by a MqttPhysicalAdapter.
+ * Lookups are lock-free, so the hot path can increment counters on every message.
+ * */
+public class MqttPhysicalAdapterMetrics {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public LongAdder counter(String name){
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name){
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public void registerGauge(String name, LongSupplier gauge){
+        gauges.put(name, gauge);
+    }
+
+    public long getCounterValue(String name){
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public Map<String, Long> getCounters(){
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        return snapshot;
+    }
+
+    public Map<String, Long> getGauges(){
+        Map<String, Long> snapshot = new TreeMap<>();
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        return snapshot;
+    }
+
+    public Map<String, LatencyHistogram> getHistograms(){
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    @Override
+    public String toString() {
+        return "MqttPhysicalAdapterMetrics{" +
+                "counters=" + getCounters() +
+                ", gauges=" + getGauges() +
+                ", histograms=" + new TreeMap<>(histograms) +
+                '}';
+    }
+}
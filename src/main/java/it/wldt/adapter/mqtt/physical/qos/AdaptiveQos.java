@@ -0,0 +1,31 @@
+package it.wldt.adapter.mqtt.physical.qos;
+
+/**
+ * Every checkInterval the load of each direction (publishes: broker acknowledgements pending over the publish window,
+ * subscriptions: inbound queue fill) is compared with the watermarks. At or above highWatermark the adaptive topics
+ * of that direction lose one QoS level, down to their minimum; at or below lowWatermark they get one level back.
+ * */
+public class AdaptiveQos {
+
+    private final double highWatermark;
+    private final double lowWatermark;
+    private final long checkIntervalMs;
+
+    public AdaptiveQos(double highWatermark, double lowWatermark, long checkIntervalMs) {
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.checkIntervalMs = checkIntervalMs;
+    }
+
+    public double getHighWatermark() {
+        return highWatermark;
+    }
+
+    public double getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public long getCheckIntervalMs() {
+        return checkIntervalMs;
+    }
+}
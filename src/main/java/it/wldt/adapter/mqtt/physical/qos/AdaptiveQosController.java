@@ -0,0 +1,80 @@
+package it.wldt.adapter.mqtt.physical.qos;
+
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.adapter.mqtt.physical.topic.MqttTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.DigitalTwinIncomingTopic;
+import it.wldt.adapter.mqtt.physical.topic.outgoing.DigitalTwinOutgoingTopic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Applies AdaptiveQos to the topics of the adapter. Downgraded publish topics use their new QoS from the next
+ * publish, downgraded or restored subscriptions are handed to the resubscribe consumer.
+ * Metrics: "qos.downgraded" and "qos.restored" counters (level changes), "qos.downgraded.topics",
+ * "qos.publish.load" and "qos.subscribe.load" (percent) gauges.
+ * */
+public class AdaptiveQosController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveQosController.class);
+
+    private final AdaptiveQos settings;
+    private final DoubleSupplier publishLoad;
+    private final DoubleSupplier subscribeLoad;
+    private final Supplier<Collection<DigitalTwinOutgoingTopic>> outgoingTopics;
+    private final Supplier<Collection<DigitalTwinIncomingTopic>> incomingTopics;
+    private final Consumer<List<DigitalTwinIncomingTopic>> resubscribe;
+    private final MqttPhysicalAdapterMetrics metrics;
+
+    public AdaptiveQosController(AdaptiveQos settings, DoubleSupplier publishLoad, DoubleSupplier subscribeLoad,
+                                 Supplier<Collection<DigitalTwinOutgoingTopic>> outgoingTopics,
+                                 Supplier<Collection<DigitalTwinIncomingTopic>> incomingTopics,
+                                 Consumer<List<DigitalTwinIncomingTopic>> resubscribe,
+                                 MqttPhysicalAdapterMetrics metrics) {
+        this.settings = settings;
+        this.publishLoad = publishLoad;
+        this.subscribeLoad = subscribeLoad;
+        this.outgoingTopics = outgoingTopics;
+        this.incomingTopics = incomingTopics;
+        this.resubscribe = resubscribe;
+        this.metrics = metrics;
+        metrics.registerGauge("qos.publish.load", () -> Math.round(publishLoad.getAsDouble() * 100));
+        metrics.registerGauge("qos.subscribe.load", () -> Math.round(subscribeLoad.getAsDouble() * 100));
+        metrics.registerGauge("qos.downgraded.topics", () -> countDowngraded(outgoingTopics.get()) + countDowngraded(incomingTopics.get()));
+    }
+
+    public void check() {
+        adapt("publish", publishLoad.getAsDouble(), outgoingTopics.get());
+        List<DigitalTwinIncomingTopic> changed = adapt("subscribe", subscribeLoad.getAsDouble(), incomingTopics.get());
+        if(!changed.isEmpty()) resubscribe.accept(changed);
+    }
+
+    private <T extends MqttTopic> List<T> adapt(String direction, double load, Collection<T> topics) {
+        List<T> changed = new ArrayList<>();
+        if(load >= settings.getHighWatermark()){
+            for (T topic : topics) if(topic.downgradeQos()) changed.add(topic);
+            if(changed.isEmpty()) return changed;
+            metrics.counter("qos.downgraded").add(changed.size());
+            logger.warn("MQTT Physical Adapter - {} load {}%: QoS downgraded on {} topics", direction, Math.round(load * 100), changed.size());
+        }
+        else if(load <= settings.getLowWatermark()){
+            for (T topic : topics) if(topic.restoreQos()) changed.add(topic);
+            if(changed.isEmpty()) return changed;
+            metrics.counter("qos.restored").add(changed.size());
+            logger.info("MQTT Physical Adapter - {} load {}%: QoS restored on {} topics", direction, Math.round(load * 100), changed.size());
+        }
+        if(logger.isDebugEnabled())
+            changed.forEach(t -> logger.debug("MQTT Physical Adapter - topic {} now at QoS {} (configured {})", t.getTopic(), t.getQos(), t.getConfiguredQos()));
+        return changed;
+    }
+
+    private static long countDowngraded(Collection<? extends MqttTopic> topics) {
+        return topics.stream().filter(t -> t.getQos() < t.getConfiguredQos()).count();
+    }
+}
@@ -0,0 +1,47 @@
+package it.wldt.adapter.mqtt.physical.recording;
+
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+
+/**
+ * A message read back from a recording, with its arrival time relative to the start of the recording
+ * */
+public class RecordedMessage {
+
+    private final long offsetNanos;
+    private final String topic;
+    private final int qos;
+    private final boolean retained;
+    private final byte[] payload;
+
+    public RecordedMessage(long offsetNanos, String topic, int qos, boolean retained, byte[] payload) {
+        this.offsetNanos = offsetNanos;
+        this.topic = topic;
+        this.qos = qos;
+        this.retained = retained;
+        this.payload = payload;
+    }
+
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public boolean isRetained() {
+        return retained;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public MqttIncomingMessage toIncomingMessage() {
+        return new MqttIncomingMessage(topic, payload, qos, retained, 0);
+    }
+}
@@ -0,0 +1,136 @@
+package it.wldt.adapter.mqtt.physical.recording;
+
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import it.wldt.adapter.mqtt.physical.topic.outgoing.MqttOutgoingMessage;
+import it.wldt.adapter.mqtt.physical.transport.MqttConnectionListener;
+import it.wldt.adapter.mqtt.physical.transport.MqttIncomingMessageListener;
+import it.wldt.adapter.mqtt.physical.transport.MqttTransport;
+import it.wldt.adapter.mqtt.physical.transport.TopicFilters;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MqttTransport without a broker: the adapter subscribes as usual and replay() delivers a recording to the listeners
+ * of the matching topic filters. Published actions are only counted.
+ * Pass it to the MqttPhysicalAdapter constructor accepting a transport.
+ * */
+public class ReplayTransport implements MqttTransport {
+
+    /**
+     * Replay speed delivering the messages as fast as possible, ignoring the recorded timing
+     * */
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private final Map<String, MqttIncomingMessageListener> subscriptions = new ConcurrentHashMap<>();
+    private final List<MqttOutgoingMessage> publishedSink = new CopyOnWriteArrayList<>();
+    private final AtomicLong published = new AtomicLong();
+    private final boolean keepPublished;
+    private volatile boolean connected = false;
+
+    public ReplayTransport() {
+        this(false);
+    }
+
+    /**
+     * keepPublished retains the published actions, see getPublishedMessages()
+     * */
+    public ReplayTransport(boolean keepPublished) {
+        this.keepPublished = keepPublished;
+    }
+
+    /**
+     * Delivers the recording on the calling thread. speed 1 keeps the original timing, 10 replays ten times faster,
+     * AS_FAST_AS_POSSIBLE ignores the timing. Returns the number of delivered messages; messages matching no
+     * subscription are skipped.
+     * */
+    public long replay(TrafficRecording recording, double speed) {
+        long delivered = 0;
+        long startNanos = System.nanoTime();
+        for (RecordedMessage recorded : recording) {
+            if(speed > 0){
+                long dueNanos = startNanos + (long) (recorded.getOffsetNanos() / speed);
+                long waitNanos;
+                while ((waitNanos = dueNanos - System.nanoTime()) > 0) LockSupport.parkNanos(waitNanos);
+            }
+            MqttIncomingMessage message = recorded.toIncomingMessage();
+            for (Map.Entry<String, MqttIncomingMessageListener> subscription : subscriptions.entrySet()) {
+                if(TopicFilters.matches(subscription.getKey(), recorded.getTopic())){
+                    subscription.getValue().messageArrived(recorded.getTopic(), message);
+                    delivered++;
+                }
+            }
+        }
+        return delivered;
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public List<MqttOutgoingMessage> getPublishedMessages() {
+        return publishedSink;
+    }
+
+    @Override
+    public boolean connect() {
+        connected = true;
+        return false;
+    }
+
+    @Override
+    public void setConnectionListener(MqttConnectionListener listener) {
+    }
+
+    /**
+     * Replayed messages matching no subscription are skipped
+     * */
+    @Override
+    public void setDefaultMessageListener(MqttIncomingMessageListener listener) {
+    }
+
+    @Override
+    public SubscribeToken subscribe(String[] topicFilters, int[] qos, MqttIncomingMessageListener[] listeners, boolean sendRetained) {
+        for(int i = 0; i < topicFilters.length; i++) subscriptions.put(topicFilters[i], listeners[i]);
+        int[] granted = qos.clone();
+        return timeoutMs -> granted;
+    }
+
+    @Override
+    public void unsubscribe(String[] topicFilters, long timeoutMs) {
+        for (String topicFilter : topicFilters) subscriptions.remove(topicFilter);
+    }
+
+    @Override
+    public void publish(MqttOutgoingMessage message) {
+        published.incrementAndGet();
+        if(keepPublished) publishedSink.add(message);
+    }
+
+    @Override
+    public int getInFlightCount() {
+        return 0;
+    }
+
+    @Override
+    public void setManualAcks(boolean manualAcks) {
+    }
+
+    @Override
+    public void acknowledge(MqttIncomingMessage message) {
+    }
+
+    @Override
+    public void disconnect() {
+        connected = false;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+}
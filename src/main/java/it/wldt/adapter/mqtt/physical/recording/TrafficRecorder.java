@@ -0,0 +1,112 @@
+package it.wldt.adapter.mqtt.physical.recording;
+
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+/**
+ * Appends the incoming messages to memory-mapped segment files (segment-00000.mqttlog, segment-00001.mqttlog, ...).
+ * Appending is a copy into the mapped buffer: the operating system writes the pages back, so recording adds no
+ * system call per message. Each segment starts with a header (magic, version, recording start in epoch millis);
+ * each record is [int length][long offset nanos][byte qos][byte flags][short topic length][topic][payload].
+ * The unused tail of a segment is zero-filled, a zero length marks its end.
+ * Only topic, QoS, retained flag and payload are recorded, not the MQTT 5 properties.
+ * A directory already holding segments is continued: numbering starts after the highest existing segment.
+ * */
+public class TrafficRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x4D514C47;
+    static final short VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 4 + 2 + 8;
+    static final int RECORD_HEADER_SIZE = 8 + 1 + 1 + 2;
+    static final byte RETAINED_FLAG = 1;
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".mqttlog";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final MqttPhysicalAdapterMetrics metrics;
+    private final long startNanos = System.nanoTime();
+    private final long startEpochMillis = System.currentTimeMillis();
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+    private boolean closed = false;
+
+    public TrafficRecorder(Path directory, int segmentSize, MqttPhysicalAdapterMetrics metrics) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.metrics = metrics;
+        Files.createDirectories(directory);
+        this.segmentIndex = nextSegmentIndex(directory);
+    }
+
+    public synchronized void append(MqttIncomingMessage message) throws IOException {
+        if(closed) return;
+        long offsetNanos = System.nanoTime() - startNanos;
+        byte[] topic = message.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = message.getPayload();
+        int recordLength = RECORD_HEADER_SIZE + topic.length + payload.length;
+        //4 more bytes keep room for the zero length closing the segment
+        if(segment == null || segment.remaining() < 4 + recordLength + 4) nextSegment(4 + recordLength + 4);
+        segment.putInt(recordLength)
+                .putLong(offsetNanos)
+                .put((byte) message.getQos())
+                .put(message.isRetained() ? RETAINED_FLAG : 0)
+                .putShort((short) topic.length)
+                .put(topic)
+                .put(payload);
+        metrics.counter("recording.messages").increment();
+        metrics.counter("recording.bytes").add(4 + recordLength);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if(segment != null) segment.force();
+        segment = null;
+    }
+
+    private void nextSegment(int minimumSize) throws IOException {
+        if(segment != null) segment.force();
+        Path path = directory.resolve(segmentFileName(segmentIndex++));
+        int size = Math.max(segmentSize, SEGMENT_HEADER_SIZE + minimumSize);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            //the mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.putInt(MAGIC).putShort(VERSION).putLong(startEpochMillis);
+        metrics.counter("recording.segments").increment();
+    }
+
+    static int nextSegmentIndex(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(TrafficRecorder::isSegmentFileName)
+                    .mapToInt(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .max()
+                    .orElse(-1) + 1;
+        }
+    }
+
+    static boolean isSegmentFileName(String name) {
+        if(!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return false;
+        String index = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+        return !index.isEmpty() && index.length() <= 9 && index.chars().allMatch(Character::isDigit);
+    }
+
+    static String segmentFileName(int index) {
+        return String.format("%s%05d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+}
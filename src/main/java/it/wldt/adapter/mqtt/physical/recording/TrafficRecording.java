@@ -0,0 +1,106 @@
+package it.wldt.adapter.mqtt.physical.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads back the segments written by a TrafficRecorder, in recording order. When the directory holds several
+ * recorder runs, the offsets are made relative to the start of the first one using the start time in each segment
+ * header, so the pauses between runs are kept.
+ * */
+public class TrafficRecording implements Iterable<RecordedMessage> {
+
+    private final List<Path> segments;
+
+    public TrafficRecording(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            this.segments = files
+                    .filter(p -> TrafficRecorder.isSegmentFileName(p.getFileName().toString()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if(segments.isEmpty()) throw new IOException("No recording segments in " + directory);
+    }
+
+    public List<Path> getSegments() {
+        return segments;
+    }
+
+    @Override
+    public Iterator<RecordedMessage> iterator() {
+        return new Iterator<RecordedMessage>() {
+
+            private int segmentIndex = 0;
+            private ByteBuffer segment;
+            private long firstStartEpochMillis;
+            private long segmentOffsetNanos;
+            private RecordedMessage next;
+
+            @Override
+            public boolean hasNext() {
+                if(next == null) next = readNext();
+                return next != null;
+            }
+
+            @Override
+            public RecordedMessage next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                RecordedMessage message = next;
+                next = null;
+                return message;
+            }
+
+            private RecordedMessage readNext() {
+                while (true) {
+                    if(segment != null && segment.remaining() >= 4){
+                        int recordLength = segment.getInt();
+                        if(recordLength > 0) return readRecord(segment, recordLength, segmentOffsetNanos);
+                    }
+                    if(segmentIndex >= segments.size()) return null;
+                    segment = open(segments.get(segmentIndex));
+                    long startEpochMillis = segment.getLong();
+                    if(segmentIndex++ == 0) firstStartEpochMillis = startEpochMillis;
+                    segmentOffsetNanos = TimeUnit.MILLISECONDS.toNanos(startEpochMillis - firstStartEpochMillis);
+                }
+            }
+        };
+    }
+
+    private static RecordedMessage readRecord(ByteBuffer segment, int recordLength, long segmentOffsetNanos) {
+        long offsetNanos = segmentOffsetNanos + segment.getLong();
+        int qos = segment.get();
+        boolean retained = (segment.get() & TrafficRecorder.RETAINED_FLAG) != 0;
+        int topicLength = segment.getShort() & 0xFFFF;
+        byte[] topic = new byte[topicLength];
+        segment.get(topic);
+        byte[] payload = new byte[recordLength - TrafficRecorder.RECORD_HEADER_SIZE - topicLength];
+        segment.get(payload);
+        return new RecordedMessage(offsetNanos, new String(topic, StandardCharsets.UTF_8), qos, retained, payload);
+    }
+
+    /**
+     * Returns the segment positioned on the recording start time of its header
+     * */
+    private static ByteBuffer open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(segment.getInt() != TrafficRecorder.MAGIC || segment.getShort() != TrafficRecorder.VERSION)
+                throw new IllegalStateException("Not a recording segment: " + path);
+            return segment;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read recording segment " + path, e);
+        }
+    }
+}
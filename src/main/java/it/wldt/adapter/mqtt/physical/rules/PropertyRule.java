@@ -0,0 +1,99 @@
+package it.wldt.adapter.mqtt.physical.rules;
+
+import it.wldt.adapter.physical.event.PhysicalAssetEventWldtEvent;
+import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Rule on the numeric (or boolean, as 1/0) values of a property, compiled when it is created.
+ * An EMIT rule emits an event whose body is the property value when its condition becomes true, or on every matching
+ * value with repeat. A DERIVE rule updates a derived property with the result of its expression on every value.
+ * */
+public class PropertyRule {
+
+    public enum Kind { EMIT, DERIVE }
+
+    private final String propertyKey;
+    private final Kind kind;
+    private final String expression;
+    private final String targetKey;
+    private final DoublePredicate condition;
+    private final DoubleUnaryOperator derivation;
+    private final boolean repeat;
+    private volatile boolean matched = false;
+
+    private PropertyRule(String propertyKey, Kind kind, String expression, String targetKey,
+                         DoublePredicate condition, DoubleUnaryOperator derivation, boolean repeat) {
+        this.propertyKey = propertyKey;
+        this.kind = kind;
+        this.expression = expression;
+        this.targetKey = targetKey;
+        this.condition = condition;
+        this.derivation = derivation;
+        this.repeat = repeat;
+    }
+
+    /**
+     * Throws IllegalArgumentException if the condition does not compile
+     * */
+    public static PropertyRule emit(String propertyKey, String condition, String eventKey, boolean repeat) {
+        return new PropertyRule(propertyKey, Kind.EMIT, condition, eventKey, RuleExpressions.compileCondition(condition), null, repeat);
+    }
+
+    /**
+     * Throws IllegalArgumentException if the expression does not compile
+     * */
+    public static PropertyRule derive(String propertyKey, String expression, String derivedPropertyKey) {
+        return new PropertyRule(propertyKey, Kind.DERIVE, expression, derivedPropertyKey, null, RuleExpressions.compileValue(expression), false);
+    }
+
+    /**
+     * Returns the event generated by the value, or null
+     * */
+    public WldtEvent<?> apply(double value) throws EventBusException {
+        if(kind == Kind.DERIVE) return new PhysicalAssetPropertyWldtEvent<>(targetKey, derivation.applyAsDouble(value));
+        boolean matches = condition.test(value);
+        boolean wasMatched = matched;
+        if(matches != wasMatched) matched = matches;
+        if(!matches || (wasMatched && !repeat)) return null;
+        return new PhysicalAssetEventWldtEvent<>(targetKey, value);
+    }
+
+    public String getPropertyKey() {
+        return propertyKey;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Emitted event key for EMIT rules, derived property key for DERIVE rules
+     * */
+    public String getTargetKey() {
+        return targetKey;
+    }
+
+    public boolean isRepeat() {
+        return repeat;
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyRule{" +
+                "propertyKey='" + propertyKey + '\'' +
+                ", kind=" + kind +
+                ", expression='" + expression + '\'' +
+                ", targetKey='" + targetKey + '\'' +
+                ", repeat=" + repeat +
+                '}';
+    }
+}
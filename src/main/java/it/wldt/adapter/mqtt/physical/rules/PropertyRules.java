@@ -0,0 +1,65 @@
+package it.wldt.adapter.mqtt.physical.rules;
+
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies the PropertyRules of the adapter to the property events decoded from each message.
+ * Metrics: "rules.events.emitted" and "rules.values.derived" counters.
+ * */
+public class PropertyRules {
+
+    private static final Logger logger = LoggerFactory.getLogger(PropertyRules.class);
+
+    private final Map<String, PropertyRule[]> rulesByProperty = new HashMap<>();
+    private final LongAdder emitted;
+    private final LongAdder derived;
+
+    public PropertyRules(List<PropertyRule> rules, MqttPhysicalAdapterMetrics metrics) {
+        Map<String, List<PropertyRule>> grouped = new HashMap<>();
+        rules.forEach(r -> grouped.computeIfAbsent(r.getPropertyKey(), k -> new ArrayList<>()).add(r));
+        grouped.forEach((key, propertyRules) -> rulesByProperty.put(key, propertyRules.toArray(new PropertyRule[0])));
+        this.emitted = metrics.counter("rules.events.emitted");
+        this.derived = metrics.counter("rules.values.derived");
+    }
+
+    /**
+     * Returns the given events followed by the events generated by the rules, the same list if no rule fired
+     * */
+    public List<? extends WldtEvent<?>> apply(List<? extends WldtEvent<?>> events) {
+        List<WldtEvent<?>> result = null;
+        for (WldtEvent<?> event : events) {
+            if(!(event instanceof PhysicalAssetPropertyWldtEvent)) continue;
+            PhysicalAssetPropertyWldtEvent<?> propertyEvent = (PhysicalAssetPropertyWldtEvent<?>) event;
+            PropertyRule[] rules = rulesByProperty.get(propertyEvent.getPhysicalPropertyId());
+            if(rules == null) continue;
+            Object body = propertyEvent.getBody();
+            double value;
+            if(body instanceof Number) value = ((Number) body).doubleValue();
+            else if(body instanceof Boolean) value = (Boolean) body ? 1.0 : 0.0;
+            else continue;
+            for (PropertyRule rule : rules) {
+                try {
+                    WldtEvent<?> generated = rule.apply(value);
+                    if(generated == null) continue;
+                    if(result == null) result = new ArrayList<>(events);
+                    result.add(generated);
+                    (rule.getKind() == PropertyRule.Kind.EMIT ? emitted : derived).increment();
+                } catch (EventBusException e) {
+                    logger.error("MQTT Physical Adapter - rule {} failed: {}", rule, e.getMessage());
+                }
+            }
+        }
+        return result != null ? result : events;
+    }
+}
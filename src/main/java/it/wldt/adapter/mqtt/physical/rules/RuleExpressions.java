@@ -0,0 +1,317 @@
+package it.wldt.adapter.mqtt.physical.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiles rule expressions on the value of a property into lambdas, once, when the configuration is loaded:
+ * evaluating them neither parses nor allocates. Constant subexpressions are folded at compile time.
+ *
+ * Grammar (booleans in comparisons and operands are 1.0 / 0.0):
+ *   condition  := or
+ *   or         := and ( ("||" | "or") and )*
+ *   and        := not ( ("&&" | "and") not )*
+ *   not        := ("!" | "not") not | comparison
+ *   comparison := sum ( (">" | ">=" | "<" | "<=" | "==" | "!=") sum )?
+ *   sum        := product ( ("+" | "-") product )*
+ *   product    := unary ( ("*" | "/" | "%") unary )*
+ *   unary      := "-" unary | primary
+ *   primary    := number | "value" | "true" | "false" | function "(" sum ("," sum)* ")" | "(" or ")"
+ * Functions: abs, sqrt, exp, log, floor, ceil, round (one argument), min, max, pow (two arguments).
+ * */
+public final class RuleExpressions {
+
+    private RuleExpressions() {
+    }
+
+    /**
+     * Compiles a numeric expression such as "value * 1.8 + 32"
+     * */
+    public static DoubleUnaryOperator compileValue(String expression) {
+        Parser parser = new Parser(expression);
+        Node node = parser.parseOr();
+        parser.expectEnd();
+        if(node.isCondition()) throw parser.error("numeric expression expected");
+        return node.number;
+    }
+
+    /**
+     * Compiles a condition such as "value > 90 && value < 200"
+     * */
+    public static DoublePredicate compileCondition(String expression) {
+        Parser parser = new Parser(expression);
+        Node node = parser.parseOr();
+        parser.expectEnd();
+        if(!node.isCondition()) throw parser.error("condition expected");
+        return node.condition;
+    }
+
+    /**
+     * Either a number or a condition, with its value when it does not depend on the property value
+     * */
+    private static final class Node {
+
+        private final DoubleUnaryOperator number;
+        private final DoublePredicate condition;
+        private final boolean constant;
+
+        private Node(DoubleUnaryOperator number, DoublePredicate condition, boolean constant) {
+            this.number = number;
+            this.condition = condition;
+            this.constant = constant;
+        }
+
+        static Node number(DoubleUnaryOperator number) {
+            return new Node(number, null, false);
+        }
+
+        static Node constant(double constant) {
+            return new Node(v -> constant, null, true);
+        }
+
+        static Node condition(DoublePredicate condition) {
+            return new Node(null, condition, false);
+        }
+
+        static Node constantCondition(boolean constant) {
+            return new Node(null, v -> constant, true);
+        }
+
+        boolean isCondition() {
+            return condition != null;
+        }
+
+        DoubleUnaryOperator asNumber() {
+            if(number != null) return number;
+            DoublePredicate c = condition;
+            return v -> c.test(v) ? 1.0 : 0.0;
+        }
+
+        DoublePredicate asCondition() {
+            if(condition != null) return condition;
+            DoubleUnaryOperator n = number;
+            return v -> n.applyAsDouble(v) != 0.0;
+        }
+
+        Node fold() {
+            if(!constant) return this;
+            return isCondition() ? constantCondition(condition.test(0)) : constant(number.applyAsDouble(0));
+        }
+    }
+
+    private static final class Parser {
+
+        private final String expression;
+        private int pos = 0;
+
+        private Parser(String expression) {
+            if(expression == null || expression.trim().isEmpty()) throw new IllegalArgumentException("Empty rule expression");
+            this.expression = expression;
+        }
+
+        private Node parseOr() {
+            Node left = parseAnd();
+            while (accept("||") || acceptWord("or")) {
+                Node right = parseAnd();
+                DoublePredicate l = left.asCondition(), r = right.asCondition();
+                left = fold(left, right, Node.condition(v -> l.test(v) || r.test(v)));
+            }
+            return left;
+        }
+
+        private Node parseAnd() {
+            Node left = parseNot();
+            while (accept("&&") || acceptWord("and")) {
+                Node right = parseNot();
+                DoublePredicate l = left.asCondition(), r = right.asCondition();
+                left = fold(left, right, Node.condition(v -> l.test(v) && r.test(v)));
+            }
+            return left;
+        }
+
+        private Node parseNot() {
+            if((peek() == '!' && !lookingAt("!=") && accept("!")) || acceptWord("not")){
+                Node operand = parseNot();
+                DoublePredicate c = operand.asCondition();
+                return fold(operand, Node.condition(v -> !c.test(v)));
+            }
+            return parseComparison();
+        }
+
+        private Node parseComparison() {
+            Node left = parseSum();
+            String[] operators = {">=", "<=", "==", "!=", ">", "<"};
+            for (String operator : operators) {
+                if(!accept(operator)) continue;
+                Node right = parseSum();
+                DoubleUnaryOperator l = left.asNumber(), r = right.asNumber();
+                Node comparison;
+                switch (operator) {
+                    case ">=": comparison = Node.condition(v -> l.applyAsDouble(v) >= r.applyAsDouble(v)); break;
+                    case "<=": comparison = Node.condition(v -> l.applyAsDouble(v) <= r.applyAsDouble(v)); break;
+                    case "==": comparison = Node.condition(v -> l.applyAsDouble(v) == r.applyAsDouble(v)); break;
+                    case "!=": comparison = Node.condition(v -> l.applyAsDouble(v) != r.applyAsDouble(v)); break;
+                    case ">": comparison = Node.condition(v -> l.applyAsDouble(v) > r.applyAsDouble(v)); break;
+                    default: comparison = Node.condition(v -> l.applyAsDouble(v) < r.applyAsDouble(v));
+                }
+                return fold(left, right, comparison);
+            }
+            return left;
+        }
+
+        private Node parseSum() {
+            Node left = parseProduct();
+            while (true) {
+                char operator = peek();
+                if(operator != '+' && operator != '-') return left;
+                pos++;
+                Node right = parseProduct();
+                DoubleUnaryOperator l = left.asNumber(), r = right.asNumber();
+                left = fold(left, right, operator == '+'
+                        ? Node.number(v -> l.applyAsDouble(v) + r.applyAsDouble(v))
+                        : Node.number(v -> l.applyAsDouble(v) - r.applyAsDouble(v)));
+            }
+        }
+
+        private Node parseProduct() {
+            Node left = parseUnary();
+            while (true) {
+                char operator = peek();
+                if(operator != '*' && operator != '/' && operator != '%') return left;
+                pos++;
+                Node right = parseUnary();
+                DoubleUnaryOperator l = left.asNumber(), r = right.asNumber();
+                Node product;
+                if(operator == '*') product = Node.number(v -> l.applyAsDouble(v) * r.applyAsDouble(v));
+                else if(operator == '/') product = Node.number(v -> l.applyAsDouble(v) / r.applyAsDouble(v));
+                else product = Node.number(v -> l.applyAsDouble(v) % r.applyAsDouble(v));
+                left = fold(left, right, product);
+            }
+        }
+
+        private Node parseUnary() {
+            if(peek() == '-'){
+                pos++;
+                Node operand = parseUnary();
+                DoubleUnaryOperator n = operand.asNumber();
+                return fold(operand, Node.number(v -> -n.applyAsDouble(v)));
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            char c = peek();
+            if(c == '('){
+                pos++;
+                Node inner = parseOr();
+                expect(")");
+                return inner;
+            }
+            if(Character.isDigit(c) || c == '.') return parseNumber();
+            if(!Character.isLetter(c)) throw error("unexpected " + (c == 0 ? "end of expression" : "'" + c + "'"));
+            int start = pos;
+            while (pos < expression.length() && (Character.isLetterOrDigit(expression.charAt(pos)) || expression.charAt(pos) == '_')) pos++;
+            String word = expression.substring(start, pos);
+            switch (word) {
+                case "value": return Node.number(v -> v);
+                case "true": return Node.constantCondition(true);
+                case "false": return Node.constantCondition(false);
+                default: return parseFunction(word, start);
+            }
+        }
+
+        private Node parseFunction(String name, int start) {
+            expect("(");
+            List<Node> arguments = new ArrayList<>();
+            arguments.add(parseSum());
+            while (accept(",")) arguments.add(parseSum());
+            expect(")");
+            int arity = "min".equals(name) || "max".equals(name) || "pow".equals(name) ? 2 : 1;
+            if(arguments.size() != arity){
+                pos = start;
+                throw error(name + " takes " + arity + " argument" + (arity > 1 ? "s" : ""));
+            }
+            DoubleUnaryOperator a = arguments.get(0).asNumber();
+            DoubleUnaryOperator b = arity == 2 ? arguments.get(1).asNumber() : null;
+            Node function;
+            switch (name) {
+                case "abs": function = Node.number(v -> Math.abs(a.applyAsDouble(v))); break;
+                case "sqrt": function = Node.number(v -> Math.sqrt(a.applyAsDouble(v))); break;
+                case "exp": function = Node.number(v -> Math.exp(a.applyAsDouble(v))); break;
+                case "log": function = Node.number(v -> Math.log(a.applyAsDouble(v))); break;
+                case "floor": function = Node.number(v -> Math.floor(a.applyAsDouble(v))); break;
+                case "ceil": function = Node.number(v -> Math.ceil(a.applyAsDouble(v))); break;
+                case "round": function = Node.number(v -> Math.rint(a.applyAsDouble(v))); break;
+                case "min": function = Node.number(v -> Math.min(a.applyAsDouble(v), b.applyAsDouble(v))); break;
+                case "max": function = Node.number(v -> Math.max(a.applyAsDouble(v), b.applyAsDouble(v))); break;
+                case "pow": function = Node.number(v -> Math.pow(a.applyAsDouble(v), b.applyAsDouble(v))); break;
+                default:
+                    pos = start;
+                    throw error("unknown identifier '" + name + "'");
+            }
+            return arguments.stream().allMatch(n -> n.constant) ? new Node(function.number, null, true).fold() : function;
+        }
+
+        private Node parseNumber() {
+            int start = pos;
+            while (pos < expression.length() && (Character.isDigit(expression.charAt(pos)) || expression.charAt(pos) == '.')) pos++;
+            if(pos < expression.length() && (expression.charAt(pos) == 'e' || expression.charAt(pos) == 'E')){
+                pos++;
+                if(pos < expression.length() && (expression.charAt(pos) == '+' || expression.charAt(pos) == '-')) pos++;
+                while (pos < expression.length() && Character.isDigit(expression.charAt(pos))) pos++;
+            }
+            try {
+                return Node.constant(Double.parseDouble(expression.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("invalid number");
+            }
+        }
+
+        private static Node fold(Node operand, Node result) {
+            return operand.constant ? new Node(result.number, result.condition, true).fold() : result;
+        }
+
+        private static Node fold(Node left, Node right, Node result) {
+            return left.constant && right.constant ? new Node(result.number, result.condition, true).fold() : result;
+        }
+
+        private char peek() {
+            while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) pos++;
+            return pos < expression.length() ? expression.charAt(pos) : 0;
+        }
+
+        private boolean lookingAt(String token) {
+            peek();
+            return expression.startsWith(token, pos);
+        }
+
+        private boolean accept(String token) {
+            if(!lookingAt(token)) return false;
+            pos += token.length();
+            return true;
+        }
+
+        private boolean acceptWord(String word) {
+            if(!lookingAt(word)) return false;
+            int end = pos + word.length();
+            if(end < expression.length() && Character.isLetterOrDigit(expression.charAt(end))) return false;
+            pos = end;
+            return true;
+        }
+
+        private void expect(String token) {
+            if(!accept(token)) throw error("'" + token + "' expected");
+        }
+
+        private void expectEnd() {
+            if(peek() != 0) throw error("unexpected '" + expression.charAt(pos) + "'");
+        }
+
+        private IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException("Invalid rule expression \"" + expression + "\" at " + pos + ": " + reason);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package it.wldt.adapter.mqtt.physical.schema;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A JSON schema compiled once at configuration time and checked while the payload is streamed, so a payload is
+ * rejected at its first violation instead of after a full parse. Supported keywords: type, properties, required,
+ * additionalProperties, items, enum, minimum, maximum, exclusiveMinimum, exclusiveMaximum, minLength, maxLength,
+ * pattern, minItems and maxItems. Other keywords are rejected at compile time rather than silently ignored.
+ * exclusiveMinimum and exclusiveMaximum accept both the numeric bound of draft 6 and later and the draft 4 boolean
+ * flag applied to minimum and maximum. Numeric enum values match any payload number of equal value (1 and 1.0).
+ * */
+public class JsonSchema {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonFactory factory = mapper.getFactory();
+    private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+    private static final int OBJECT = 1;
+    private static final int ARRAY = 1 << 1;
+    private static final int STRING = 1 << 2;
+    private static final int NUMBER = 1 << 3;
+    private static final int INTEGER = 1 << 4;
+    private static final int BOOLEAN = 1 << 5;
+    private static final int NULL = 1 << 6;
+    private static final int ANY = OBJECT | ARRAY | STRING | NUMBER | INTEGER | BOOLEAN | NULL;
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("type", "properties", "required",
+            "additionalProperties", "items", "enum", "minimum", "maximum", "exclusiveMinimum", "exclusiveMaximum",
+            "minLength", "maxLength", "pattern", "minItems", "maxItems", "$schema", "title", "description"));
+
+    private static final JsonSchema UNCONSTRAINED = new JsonSchema(nodes.objectNode(), "$");
+
+    private final int types;
+    private final Map<String, JsonSchema> properties;
+    private final Map<String, Integer> requiredIndexes;
+    private final boolean additionalPropertiesAllowed;
+    private final JsonSchema additionalProperties;
+    private final JsonSchema items;
+    private final Set<JsonNode> enumValues;
+    private final Double minimum;
+    private final Double maximum;
+    private final boolean exclusiveMinimum;
+    private final boolean exclusiveMaximum;
+    private final int minLength;
+    private final int maxLength;
+    private final Pattern pattern;
+    private final int minItems;
+    private final int maxItems;
+
+    private JsonSchema(JsonNode schema, String path) {
+        Iterator<String> names = schema.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if(!KEYWORDS.contains(name)) throw new IllegalArgumentException(path + ": unsupported schema keyword " + name);
+        }
+        this.types = schema.has("type") ? compileTypes(schema.get("type"), path) : ANY;
+        this.properties = new HashMap<>();
+        if(schema.has("properties")){
+            Iterator<Map.Entry<String, JsonNode>> fields = schema.get("properties").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                properties.put(field.getKey(), new JsonSchema(field.getValue(), path + "." + field.getKey()));
+            }
+        }
+        this.requiredIndexes = new HashMap<>();
+        if(schema.has("required")) schema.get("required").forEach(r -> requiredIndexes.putIfAbsent(r.asText(), requiredIndexes.size()));
+        JsonNode additional = schema.get("additionalProperties");
+        this.additionalPropertiesAllowed = additional == null || !additional.isBoolean() || additional.asBoolean();
+        this.additionalProperties = additional != null && additional.isObject() ? new JsonSchema(additional, path + ".*") : null;
+        this.items = schema.has("items") ? new JsonSchema(schema.get("items"), path + "[]") : null;
+        this.enumValues = schema.has("enum") ? new HashSet<>() : null;
+        if(enumValues != null){
+            for (JsonNode value : schema.get("enum")) {
+                if(value.isContainerNode()) throw new IllegalArgumentException(path + ": only scalar enum values are supported");
+                enumValues.add(enumKey(value));
+            }
+        }
+        Double inclusiveMinimum = compileBound(schema, "minimum", path);
+        Double inclusiveMaximum = compileBound(schema, "maximum", path);
+        Double exclusiveMinimumBound = compileExclusiveBound(schema, "exclusiveMinimum", "minimum", path);
+        Double exclusiveMaximumBound = compileExclusiveBound(schema, "exclusiveMaximum", "maximum", path);
+        //with both bounds, the stricter one applies
+        this.exclusiveMinimum = exclusiveMinimumBound != null && (inclusiveMinimum == null || exclusiveMinimumBound >= inclusiveMinimum);
+        this.exclusiveMaximum = exclusiveMaximumBound != null && (inclusiveMaximum == null || exclusiveMaximumBound <= inclusiveMaximum);
+        this.minimum = exclusiveMinimum ? exclusiveMinimumBound : inclusiveMinimum;
+        this.maximum = exclusiveMaximum ? exclusiveMaximumBound : inclusiveMaximum;
+        this.minLength = schema.has("minLength") ? schema.get("minLength").asInt() : 0;
+        this.maxLength = schema.has("maxLength") ? schema.get("maxLength").asInt() : Integer.MAX_VALUE;
+        try {
+            this.pattern = schema.has("pattern") ? Pattern.compile(schema.get("pattern").asText()) : null;
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException(path + ": invalid pattern " + schema.get("pattern").asText());
+        }
+        this.minItems = schema.has("minItems") ? schema.get("minItems").asInt() : 0;
+        this.maxItems = schema.has("maxItems") ? schema.get("maxItems").asInt() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Compiles a schema given as a tree, e.g. the schema block of the YAML configuration.
+     * Throws IllegalArgumentException for unsupported keywords or invalid values.
+     * */
+    public static JsonSchema compile(JsonNode schema) {
+        if(schema == null || !schema.isObject()) throw new IllegalArgumentException("$: a schema must be an object");
+        return new JsonSchema(schema, "$");
+    }
+
+    public static JsonSchema compile(String schema) {
+        try {
+            return compile(mapper.readTree(schema));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("$: schema is not valid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Names of the properties declared by an object schema
+     * */
+    public Set<String> getPropertyNames() {
+        return Collections.unmodifiableSet(properties.keySet());
+    }
+
+    /**
+     * Parses and validates the payload in a single pass, returning its tree only when it is valid
+     * */
+    public JsonNode read(byte[] payload) throws SchemaViolationException {
+        return parse(payload, true);
+    }
+
+    /**
+     * Validates the payload without building any tree
+     * */
+    public void validate(byte[] payload) throws SchemaViolationException {
+        parse(payload, false);
+    }
+
+    private JsonNode parse(byte[] payload, boolean build) throws SchemaViolationException {
+        try (JsonParser parser = factory.createParser(payload)) {
+            JsonToken token = parser.nextToken();
+            if(token == null) throw new SchemaViolationException("$", "empty payload");
+            JsonNode value;
+            try {
+                value = readValue(parser, token, build);
+            } catch (SchemaViolationException e) {
+                throw e.within("$");
+            }
+            if(parser.nextToken() != null) throw new SchemaViolationException("$", "trailing content after the JSON value");
+            return value;
+        } catch (JsonProcessingException e) {
+            throw new SchemaViolationException("$", "malformed JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new SchemaViolationException("$", "unreadable payload: " + e.getMessage());
+        }
+    }
+
+    private JsonNode readValue(JsonParser parser, JsonToken token, boolean build) throws IOException, SchemaViolationException {
+        switch (token) {
+            case START_OBJECT:
+                checkType(OBJECT);
+                return readObject(parser, build);
+            case START_ARRAY:
+                checkType(ARRAY);
+                return readArray(parser, build);
+            case VALUE_STRING: {
+                checkType(STRING);
+                String text = parser.getText();
+                if(minLength > 0 || maxLength < Integer.MAX_VALUE){
+                    int length = text.codePointCount(0, text.length());
+                    if(length < minLength || length > maxLength) throw new SchemaViolationException("", "string length " + length + " out of bounds");
+                }
+                if(pattern != null && !pattern.matcher(text).find()) throw new SchemaViolationException("", "string does not match " + pattern.pattern());
+                return checkEnum(nodes.textNode(text));
+            }
+            case VALUE_NUMBER_INT: {
+                checkType(INTEGER | NUMBER);
+                //read before any conversion to double, which would lose the digits of big integers
+                JsonNode value = integerNode(parser);
+                checkRange(value.doubleValue());
+                return checkEnum(value);
+            }
+            case VALUE_NUMBER_FLOAT: {
+                checkType(NUMBER);
+                double value = parser.getDoubleValue();
+                checkRange(value);
+                return checkEnum(nodes.numberNode(value));
+            }
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                checkType(BOOLEAN);
+                return checkEnum(nodes.booleanNode(token == JsonToken.VALUE_TRUE));
+            case VALUE_NULL:
+                checkType(NULL);
+                return checkEnum(nodes.nullNode());
+            default:
+                throw new SchemaViolationException("", "unexpected token " + token);
+        }
+    }
+
+    private JsonNode readObject(JsonParser parser, boolean build) throws IOException, SchemaViolationException {
+        ObjectNode object = build ? nodes.objectNode() : null;
+        boolean[] found = requiredIndexes.isEmpty() ? null : new boolean[requiredIndexes.size()];
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if(found != null){
+                Integer index = requiredIndexes.get(name);
+                if(index != null) found[index] = true;
+            }
+            JsonSchema propertySchema = properties.get(name);
+            if(propertySchema == null && !additionalPropertiesAllowed)
+                throw new SchemaViolationException("", "unexpected property " + name);
+            if(propertySchema == null) propertySchema = additionalProperties;
+            if(propertySchema == null && build) propertySchema = UNCONSTRAINED;
+            JsonNode value;
+            if(propertySchema != null){
+                try {
+                    value = propertySchema.readValue(parser, valueToken, build);
+                } catch (SchemaViolationException e) {
+                    throw e.within("." + name);
+                }
+            }
+            else {
+                parser.skipChildren();
+                value = null;
+            }
+            if(build) object.set(name, value);
+        }
+        if(token != JsonToken.END_OBJECT) throw new SchemaViolationException("", "unexpected token " + token);
+        if(found != null){
+            for (Map.Entry<String, Integer> required : requiredIndexes.entrySet())
+                if(!found[required.getValue()]) throw new SchemaViolationException("", "missing required property " + required.getKey());
+        }
+        return object;
+    }
+
+    private JsonNode readArray(JsonParser parser, boolean build) throws IOException, SchemaViolationException {
+        ArrayNode array = build ? nodes.arrayNode() : null;
+        int size = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if(token == null) throw new SchemaViolationException("", "unterminated array");
+            if(++size > maxItems) throw new SchemaViolationException("", "more than " + maxItems + " items");
+            JsonSchema itemSchema = items == null && build ? UNCONSTRAINED : items;
+            JsonNode value;
+            if(itemSchema != null){
+                try {
+                    value = itemSchema.readValue(parser, token, build);
+                } catch (SchemaViolationException e) {
+                    throw e.within("[" + (size - 1) + "]");
+                }
+            }
+            else {
+                parser.skipChildren();
+                value = null;
+            }
+            if(build) array.add(value);
+        }
+        if(size < minItems) throw new SchemaViolationException("", "fewer than " + minItems + " items");
+        return array;
+    }
+
+    private void checkType(int type) throws SchemaViolationException {
+        if((types & type) == 0) throw new SchemaViolationException("", "unexpected " + typeName(type));
+    }
+
+    private void checkRange(double value) throws SchemaViolationException {
+        if(minimum != null && (exclusiveMinimum ? value <= minimum : value < minimum))
+            throw new SchemaViolationException("", value + " below minimum " + minimum);
+        if(maximum != null && (exclusiveMaximum ? value >= maximum : value > maximum))
+            throw new SchemaViolationException("", value + " above maximum " + maximum);
+    }
+
+    private JsonNode checkEnum(JsonNode value) throws SchemaViolationException {
+        if(enumValues != null && !enumValues.contains(enumKey(value))) throw new SchemaViolationException("", "value not in enum: " + value);
+        return value;
+    }
+
+    /**
+     * Numbers are compared by value: JsonNode.equals tells IntNode 1 from DoubleNode 1.0
+     * */
+    private static JsonNode enumKey(JsonNode value) {
+        if(!value.isNumber()) return value;
+        BigDecimal decimal = value.decimalValue();
+        return nodes.numberNode(decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros());
+    }
+
+    private static Double compileBound(JsonNode schema, String keyword, String path) {
+        JsonNode bound = schema.get(keyword);
+        if(bound == null) return null;
+        if(!bound.isNumber()) throw new IllegalArgumentException(path + ": " + keyword + " must be a number");
+        return bound.doubleValue();
+    }
+
+    /**
+     * Returns the exclusive bound: the keyword value itself, or the inclusive keyword value when the keyword is the
+     * draft 4 boolean flag
+     * */
+    private static Double compileExclusiveBound(JsonNode schema, String keyword, String inclusiveKeyword, String path) {
+        JsonNode bound = schema.get(keyword);
+        if(bound == null) return null;
+        if(bound.isNumber()) return bound.doubleValue();
+        if(!bound.isBoolean()) throw new IllegalArgumentException(path + ": " + keyword + " must be a number or a boolean");
+        if(!schema.has(inclusiveKeyword)) throw new IllegalArgumentException(path + ": boolean " + keyword + " requires " + inclusiveKeyword);
+        return bound.booleanValue() ? compileBound(schema, inclusiveKeyword, path) : null;
+    }
+
+    private static JsonNode integerNode(JsonParser parser) throws IOException {
+        switch (parser.getNumberType()) {
+            case INT:
+                return nodes.numberNode(parser.getIntValue());
+            case LONG:
+                return nodes.numberNode(parser.getLongValue());
+            default:
+                return nodes.numberNode(parser.getBigIntegerValue());
+        }
+    }
+
+    private static int compileTypes(JsonNode type, String path) {
+        int mask = 0;
+        if(type.isArray()) for (JsonNode t : type) mask |= compileType(t.asText(), path);
+        else mask = compileType(type.asText(), path);
+        return mask;
+    }
+
+    private static int compileType(String type, String path) {
+        switch (type) {
+            case "object": return OBJECT;
+            case "array": return ARRAY;
+            case "string": return STRING;
+            case "number": return NUMBER | INTEGER;
+            case "integer": return INTEGER;
+            case "boolean": return BOOLEAN;
+            case "null": return NULL;
+            default: throw new IllegalArgumentException(path + ": unknown type " + type);
+        }
+    }
+
+    private static String typeName(int type) {
+        switch (type) {
+            case OBJECT: return "object";
+            case ARRAY: return "array";
+            case STRING: return "string";
+            case BOOLEAN: return "boolean";
+            case NULL: return "null";
+            case INTEGER | NUMBER: return "integer";
+            default: return "number";
+        }
+    }
+}
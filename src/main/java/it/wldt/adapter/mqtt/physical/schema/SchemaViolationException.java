@@ -0,0 +1,35 @@
+package it.wldt.adapter.mqtt.physical.schema;
+
+/**
+ * Thrown when a payload is not valid JSON or does not match its schema. It carries no stack trace: rejecting the
+ * messages of a misbehaving device must stay cheap.
+ * */
+public class SchemaViolationException extends Exception {
+
+    private final String path;
+    private final String reason;
+
+    public SchemaViolationException(String path, String reason) {
+        super(path + ": " + reason, null, false, false);
+        this.path = path;
+        this.reason = reason;
+    }
+
+    /**
+     * Location of the violation in the payload, e.g. $.readings[2].value
+     * */
+    public String getPath() {
+        return path;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Paths are built while the exception unwinds, so valid payloads never pay for them
+     * */
+    SchemaViolationException within(String parentSegment) {
+        return new SchemaViolationException(parentSegment + path, reason);
+    }
+}
@@ -0,0 +1,137 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal protobuf wire format reader over a byte array. It is reset for every payload, decodes fields in place and
+ * allocates only for the strings and bytes actually read. Embedded messages are read by narrowing the limit.
+ * Truncated or malformed input throws IllegalArgumentException.
+ * */
+public class ProtobufReader {
+
+    public static final int VARINT = 0;
+    public static final int FIXED64 = 1;
+    public static final int LENGTH_DELIMITED = 2;
+    public static final int FIXED32 = 5;
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    public ProtobufReader reset(byte[] buffer) {
+        this.buffer = buffer;
+        this.position = 0;
+        this.limit = buffer.length;
+        return this;
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Reads a field key: the field number is tag >>> 3, the wire type tag & 7
+     * */
+    public int readTag() {
+        long tag = readVarint();
+        if(tag >>> 3 == 0 || tag > Integer.MAX_VALUE) throw new IllegalArgumentException("invalid field key at " + position);
+        return (int) tag;
+    }
+
+    public long readVarint() {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            if(position >= limit) throw new IllegalArgumentException("truncated varint at " + position);
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0) return value;
+        }
+        throw new IllegalArgumentException("varint longer than 10 bytes at " + position);
+    }
+
+    public int readFixed32() {
+        require(4);
+        int value = (buffer[position] & 0xFF)
+                | (buffer[position + 1] & 0xFF) << 8
+                | (buffer[position + 2] & 0xFF) << 16
+                | (buffer[position + 3] & 0xFF) << 24;
+        position += 4;
+        return value;
+    }
+
+    public long readFixed64() {
+        long low = readFixed32() & 0xFFFFFFFFL;
+        long high = readFixed32() & 0xFFFFFFFFL;
+        return high << 32 | low;
+    }
+
+    /**
+     * Reads the length of a length-delimited field and checks that its content is available
+     * */
+    public int readLength() {
+        long length = readVarint();
+        if(length < 0 || length > limit - position) throw new IllegalArgumentException("truncated field at " + position);
+        return (int) length;
+    }
+
+    public String readString() {
+        int length = readLength();
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public byte[] readBytes() {
+        int length = readLength();
+        byte[] value = Arrays.copyOfRange(buffer, position, position + length);
+        position += length;
+        return value;
+    }
+
+    public void skipBytes(int length) {
+        require(length);
+        position += length;
+    }
+
+    /**
+     * Restricts reading to the next length bytes (an embedded message) and returns the limit to restore with popLimit
+     * */
+    public int pushLimit(int length) {
+        int previous = limit;
+        limit = position + length;
+        return previous;
+    }
+
+    public void popLimit(int previous) {
+        position = limit;
+        limit = previous;
+    }
+
+    public void skip(int wireType) {
+        switch (wireType) {
+            case VARINT:
+                readVarint();
+                break;
+            case FIXED64:
+                skipBytes(8);
+                break;
+            case LENGTH_DELIMITED:
+                skipBytes(readLength());
+                break;
+            case FIXED32:
+                skipBytes(4);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported wire type " + wireType + " at " + position);
+        }
+    }
+
+    private void require(int bytes) {
+        if(limit - position < bytes) throw new IllegalArgumentException("truncated field at " + position);
+    }
+}
@@ -0,0 +1,74 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal protobuf wire format writer, used for the few messages the adapter sends itself (e.g. rebirth requests)
+ * */
+public class ProtobufWriter {
+
+    private byte[] buffer = new byte[64];
+    private int size = 0;
+
+    public ProtobufWriter writeVarintField(int field, long value) {
+        writeVarint((long) field << 3 | ProtobufReader.VARINT);
+        writeVarint(value);
+        return this;
+    }
+
+    public ProtobufWriter writeFixed32Field(int field, int value) {
+        writeVarint((long) field << 3 | ProtobufReader.FIXED32);
+        writeLittleEndian(value & 0xFFFFFFFFL, 4);
+        return this;
+    }
+
+    public ProtobufWriter writeFixed64Field(int field, long value) {
+        writeVarint((long) field << 3 | ProtobufReader.FIXED64);
+        writeLittleEndian(value, 8);
+        return this;
+    }
+
+    public ProtobufWriter writeBooleanField(int field, boolean value) {
+        return writeVarintField(field, value ? 1 : 0);
+    }
+
+    public ProtobufWriter writeStringField(int field, String value) {
+        return writeBytesField(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ProtobufWriter writeBytesField(int field, byte[] value) {
+        writeVarint((long) field << 3 | ProtobufReader.LENGTH_DELIMITED);
+        writeVarint(value.length);
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, size, value.length);
+        size += value.length;
+        return this;
+    }
+
+    public ProtobufWriter writeMessageField(int field, ProtobufWriter message) {
+        return writeBytesField(field, message.toByteArray());
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeLittleEndian(long value, int bytes) {
+        ensureCapacity(bytes);
+        for(int i = 0; i < bytes; i++) buffer[size++] = (byte) (value >>> (8 * i));
+    }
+
+    private void ensureCapacity(int bytes) {
+        if(size + bytes > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+    }
+}
@@ -0,0 +1,274 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import it.wldt.adapter.mqtt.physical.topic.incoming.DigitalTwinIncomingTopic;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import it.wldt.adapter.mqtt.physical.topic.outgoing.MqttOutgoingMessage;
+import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sparkplug B edge node (or every edge node of a group) mapped to physical asset properties.
+ * NBIRTH/DBIRTH certificates fill the alias tables, and their metrics become properties. They are named after the
+ * metric, prefixed by "device/" for device metrics and by "edgeNode/" when all the edge nodes of the group are
+ * followed. NDATA/DDATA metrics, usually carrying only an alias, are resolved through these tables.
+ * Data without a birth, unknown aliases and sequence gaps trigger a rebirth request (NCMD Node Control/Rebirth),
+ * at most once per rebirth interval and edge node.
+ * */
+public class SparkplugIncomingTopic extends DigitalTwinIncomingTopic {
+
+    public static final String NAMESPACE = "spBv1.0";
+    public static final long DEFAULT_REBIRTH_INTERVAL_MS = 5000;
+    public static final String REBIRTH_METRIC = "Node Control/Rebirth";
+
+    private final String groupId;
+    private final String edgeNodeId;
+    private final long rebirthIntervalMs;
+    private final SparkplugPayloadDecoder decoder = new SparkplugPayloadDecoder();
+    private final Consumer<SparkplugMetric> metricConsumer = this::onMetric;
+    private final Map<String, EdgeNode> edgeNodes = new HashMap<>();
+    private final Map<String, Long> lastRebirthRequests = new HashMap<>();
+    private final Set<String> knownPropertyKeys = new HashSet<>();
+    private volatile SparkplugListener listener;
+
+    private final LongAdder births = new LongAdder();
+    private final LongAdder rebirthRequests = new LongAdder();
+    private final LongAdder unknownMetrics = new LongAdder();
+    private final LongAdder sequenceGaps = new LongAdder();
+
+    //state of the payload being decoded
+    private SparkplugMetricTable table;
+    private String keyPrefix;
+    private boolean birth;
+    private boolean unknownMetric;
+    private List<WldtEvent<?>> events;
+    private Map<String, Object> discovered;
+
+    /**
+     * edgeNodeId null or "+" follows every edge node of the group
+     * */
+    public SparkplugIncomingTopic(String groupId, String edgeNodeId, long rebirthIntervalMs) {
+        super(topicFilter(groupId, edgeNodeId), payload -> Collections.emptyList());
+        this.groupId = groupId;
+        this.edgeNodeId = edgeNodeId == null || "+".equals(edgeNodeId) ? null : edgeNodeId;
+        this.rebirthIntervalMs = rebirthIntervalMs;
+    }
+
+    public static String topicFilter(String groupId, String edgeNodeId) {
+        return NAMESPACE + "/" + groupId + "/+/" + (edgeNodeId == null ? "+" : edgeNodeId) + "/#";
+    }
+
+    public void setListener(SparkplugListener listener) {
+        this.listener = listener;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getEdgeNodeId() {
+        return edgeNodeId;
+    }
+
+    public long getBirthCount() {
+        return births.sum();
+    }
+
+    public long getRebirthRequestCount() {
+        return rebirthRequests.sum();
+    }
+
+    public long getUnknownMetricCount() {
+        return unknownMetrics.sum();
+    }
+
+    public long getSequenceGapCount() {
+        return sequenceGaps.sum();
+    }
+
+    @Override
+    public synchronized List<WldtEvent<?>> applySubscribeFunction(MqttIncomingMessage message) {
+        //spBv1.0/group/messageType/edgeNode[/device]
+        String[] levels = message.getTopic().split("/");
+        if(levels.length < 4 || levels.length > 5 || !NAMESPACE.equals(levels[0]) || !groupId.equals(levels[1]))
+            return Collections.emptyList();
+        String messageType = levels[2];
+        String edgeNode = levels[3];
+        String device = levels.length == 5 ? levels[4] : null;
+        EdgeNode node = edgeNodes.get(edgeNode);
+        try {
+            switch (messageType) {
+                case "NBIRTH":
+                    node = new EdgeNode();
+                    edgeNodes.put(edgeNode, node);
+                    node.metrics = new SparkplugMetricTable();
+                    node.seq = decode(message.getPayload(), node.metrics, propertyKeyPrefix(edgeNode, null), true);
+                    births.increment();
+                    return complete(edgeNode);
+                case "DBIRTH":
+                    if(node == null || device == null) return requestRebirth(edgeNode);
+                    SparkplugMetricTable deviceMetrics = new SparkplugMetricTable();
+                    long birthSeq = decode(message.getPayload(), deviceMetrics, propertyKeyPrefix(edgeNode, device), true);
+                    node.devices.put(device, deviceMetrics);
+                    checkSequence(node, birthSeq);
+                    births.increment();
+                    return complete(edgeNode);
+                case "NDATA":
+                    if(node == null) return requestRebirth(edgeNode);
+                    checkSequence(node, decode(message.getPayload(), node.metrics, null, false));
+                    return complete(edgeNode);
+                case "DDATA":
+                    SparkplugMetricTable metrics = node != null && device != null ? node.devices.get(device) : null;
+                    if(metrics == null) return requestRebirth(edgeNode);
+                    checkSequence(node, decode(message.getPayload(), metrics, null, false));
+                    return complete(edgeNode);
+                case "NDEATH":
+                    edgeNodes.remove(edgeNode);
+                    return Collections.emptyList();
+                case "DDEATH":
+                    if(node != null && device != null) node.devices.remove(device);
+                    return Collections.emptyList();
+                default:
+                    //commands, including the rebirth requests sent by the adapter
+                    return Collections.emptyList();
+            }
+        } catch (IllegalArgumentException e) {
+            onRejectedPayload(message.getPayload(), messageType + ": " + e.getMessage());
+            //a partial birth certificate cannot be trusted to resolve the next aliases
+            if("NBIRTH".equals(messageType)) edgeNodes.remove(edgeNode);
+            events = null;
+            discovered = null;
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Builds the payload of a rebirth request for an edge node, published on spBv1.0/group/NCMD/edgeNode
+     * */
+    public static byte[] rebirthRequestPayload(long timestamp) {
+        ProtobufWriter metric = new ProtobufWriter()
+                .writeStringField(1, REBIRTH_METRIC)
+                .writeVarintField(3, timestamp)
+                .writeVarintField(4, SparkplugMetric.BOOLEAN)
+                .writeBooleanField(14, true);
+        return new ProtobufWriter()
+                .writeVarintField(1, timestamp)
+                .writeMessageField(2, metric)
+                .toByteArray();
+    }
+
+    private long decode(byte[] payload, SparkplugMetricTable metrics, String prefix, boolean isBirth) {
+        table = metrics;
+        keyPrefix = prefix;
+        birth = isBirth;
+        unknownMetric = false;
+        events = null;
+        discovered = null;
+        return decoder.decode(payload, metricConsumer);
+    }
+
+    private void onMetric(SparkplugMetric metric) {
+        if(birth){
+            if(metric.name == null){
+                unknownMetrics.increment();
+                return;
+            }
+            if(isControlMetric(metric.name)) return;
+            SparkplugMetricTable.Definition definition = new SparkplugMetricTable.Definition(metric.name, keyPrefix + metric.name, metric.dataType);
+            table.add(definition, metric.hasAlias, metric.alias);
+            Object value = valueOf(metric, definition);
+            if(knownPropertyKeys.add(definition.propertyKey)){
+                if(discovered == null) discovered = new LinkedHashMap<>();
+                discovered.put(definition.propertyKey, value);
+            }
+            if(value != null) addEvent(definition.propertyKey, value);
+            return;
+        }
+        SparkplugMetricTable.Definition definition = table.resolve(metric);
+        if(definition == null){
+            if(metric.name == null || !isControlMetric(metric.name)){
+                unknownMetrics.increment();
+                unknownMetric = true;
+            }
+            return;
+        }
+        Object value = valueOf(metric, definition);
+        if(value != null) addEvent(definition.propertyKey, value);
+    }
+
+    private static Object valueOf(SparkplugMetric metric, SparkplugMetricTable.Definition definition) {
+        //historical values are not the current state of the asset
+        if(metric.historical || metric.isNull || !metric.hasValue) return null;
+        return metric.getValue(metric.dataType != 0 ? metric.dataType : definition.dataType);
+    }
+
+    private void addEvent(String propertyKey, Object value) {
+        try {
+            if(events == null) events = new ArrayList<>();
+            events.add(new PhysicalAssetPropertyWldtEvent<>(propertyKey, value));
+        } catch (EventBusException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Extends the description before handing out the events, so that the new properties are known when they arrive
+     * */
+    private List<WldtEvent<?>> complete(String edgeNode) {
+        List<WldtEvent<?>> result = events != null ? events : Collections.emptyList();
+        Map<String, Object> newProperties = discovered;
+        events = null;
+        discovered = null;
+        SparkplugListener currentListener = listener;
+        if(newProperties != null && currentListener != null) currentListener.onMetricsDiscovered(newProperties);
+        if(unknownMetric) requestRebirth(edgeNode);
+        return result;
+    }
+
+    private void checkSequence(EdgeNode node, long seq) {
+        if(seq < 0) return;
+        if(node.seq >= 0 && seq != ((node.seq + 1) & 0xFF)){
+            sequenceGaps.increment();
+            unknownMetric = true;
+        }
+        node.seq = seq;
+    }
+
+    private List<WldtEvent<?>> requestRebirth(String edgeNode) {
+        long now = System.currentTimeMillis();
+        Long last = lastRebirthRequests.get(edgeNode);
+        SparkplugListener currentListener = listener;
+        if(currentListener == null || (last != null && now - last < rebirthIntervalMs)) return Collections.emptyList();
+        lastRebirthRequests.put(edgeNode, now);
+        rebirthRequests.increment();
+        currentListener.onRebirthRequest(new MqttOutgoingMessage(NAMESPACE + "/" + groupId + "/NCMD/" + edgeNode,
+                rebirthRequestPayload(now), 0, false));
+        return Collections.emptyList();
+    }
+
+    private String propertyKeyPrefix(String edgeNode, String device) {
+        String prefix = edgeNodeId == null ? edgeNode + "/" : "";
+        return device == null ? prefix : prefix + device + "/";
+    }
+
+    private static boolean isControlMetric(String name) {
+        return name.startsWith("Node Control/") || name.startsWith("Device Control/") || "bdSeq".equals(name);
+    }
+
+    private static class EdgeNode {
+        private SparkplugMetricTable metrics;
+        private final Map<String, SparkplugMetricTable> devices = new HashMap<>();
+        private long seq = -1;
+    }
+}
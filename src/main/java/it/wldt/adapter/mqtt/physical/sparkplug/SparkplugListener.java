@@ -0,0 +1,20 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import it.wldt.adapter.mqtt.physical.topic.outgoing.MqttOutgoingMessage;
+
+import java.util.Map;
+
+/**
+ * Implemented by the adapter to extend the PhysicalAssetDescription with the metrics found in birth certificates
+ * and to publish the rebirth requests of SparkplugIncomingTopic.
+ * */
+public interface SparkplugListener {
+
+    /**
+     * Called before the property events of a birth certificate are returned, with the property keys not seen before
+     * and their birth values
+     * */
+    void onMetricsDiscovered(Map<String, Object> properties);
+
+    void onRebirthRequest(MqttOutgoingMessage command);
+}
@@ -0,0 +1,82 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * View of one metric of the payload being decoded, reused for every metric. The value is kept as read from the wire
+ * and converted only when asked, using the data type of the metric or the one declared by its birth certificate.
+ * */
+class SparkplugMetric {
+
+    static final int INT8 = 1;
+    static final int INT16 = 2;
+    static final int INT32 = 3;
+    static final int INT64 = 4;
+    static final int UINT8 = 5;
+    static final int UINT16 = 6;
+    static final int UINT32 = 7;
+    static final int UINT64 = 8;
+    static final int FLOAT = 9;
+    static final int DOUBLE = 10;
+    static final int BOOLEAN = 11;
+    static final int STRING = 12;
+    static final int DATETIME = 13;
+    static final int TEXT = 14;
+    static final int UUID = 15;
+    static final int BYTES = 17;
+    static final int FILE = 18;
+
+    String name;
+    long alias;
+    boolean hasAlias;
+    int dataType;
+    boolean historical;
+    boolean isNull;
+    boolean hasValue;
+    long raw;
+    byte[] payload;
+    int offset;
+    int length;
+
+    void clear(byte[] payload) {
+        this.name = null;
+        this.alias = 0;
+        this.hasAlias = false;
+        this.dataType = 0;
+        this.historical = false;
+        this.isNull = false;
+        this.hasValue = false;
+        this.raw = 0;
+        this.payload = payload;
+        this.offset = 0;
+        this.length = 0;
+    }
+
+    /**
+     * Returns the value as Integer, Long, Float, Double, Boolean, String or byte[], or null if the data type is not
+     * supported (data sets, templates, arrays)
+     * */
+    Object getValue(int type) {
+        switch (type) {
+            case INT8: return (int) (byte) raw;
+            case INT16: return (int) (short) raw;
+            case INT32: return (int) raw;
+            case UINT8:
+            case UINT16: return (int) (raw & 0xFFFFFFFFL);
+            case UINT32: return raw & 0xFFFFFFFFL;
+            case INT64:
+            case UINT64:
+            case DATETIME: return raw;
+            case FLOAT: return Float.intBitsToFloat((int) raw);
+            case DOUBLE: return Double.longBitsToDouble(raw);
+            case BOOLEAN: return raw != 0;
+            case STRING:
+            case TEXT:
+            case UUID: return new String(payload, offset, length, StandardCharsets.UTF_8);
+            case BYTES:
+            case FILE: return Arrays.copyOfRange(payload, offset, offset + length);
+            default: return null;
+        }
+    }
+}
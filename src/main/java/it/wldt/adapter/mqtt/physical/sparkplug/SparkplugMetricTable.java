@@ -0,0 +1,56 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Metrics declared by the birth certificate of an edge node or device. Aliases are usually small consecutive numbers:
+ * they index an array, so resolving an alias-only metric neither hashes nor boxes. Larger aliases fall back to a map.
+ * */
+class SparkplugMetricTable {
+
+    private static final int MAX_DENSE_ALIAS = 1 << 16;
+
+    private Definition[] byAlias = new Definition[16];
+    private final Map<Long, Definition> bySparseAlias = new HashMap<>();
+    private final Map<String, Definition> byName = new HashMap<>();
+
+    void add(Definition definition, boolean hasAlias, long alias) {
+        byName.put(definition.name, definition);
+        if(!hasAlias) return;
+        if(alias >= 0 && alias < MAX_DENSE_ALIAS){
+            if(alias >= byAlias.length) byAlias = Arrays.copyOf(byAlias, Math.max(byAlias.length * 2, (int) alias + 1));
+            byAlias[(int) alias] = definition;
+        }
+        else bySparseAlias.put(alias, definition);
+    }
+
+    /**
+     * Resolves a metric by name when present, otherwise by alias. Returns null for undeclared metrics.
+     * */
+    Definition resolve(SparkplugMetric metric) {
+        if(metric.name != null) return byName.get(metric.name);
+        if(!metric.hasAlias) return null;
+        if(metric.alias >= 0 && metric.alias < MAX_DENSE_ALIAS)
+            return metric.alias < byAlias.length ? byAlias[(int) metric.alias] : null;
+        return bySparseAlias.get(metric.alias);
+    }
+
+    int size() {
+        return byName.size();
+    }
+
+    static class Definition {
+
+        final String name;
+        final String propertyKey;
+        final int dataType;
+
+        Definition(String name, String propertyKey, int dataType) {
+            this.name = name;
+            this.propertyKey = propertyKey;
+            this.dataType = dataType;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import java.util.function.Consumer;
+
+/**
+ * Decodes Sparkplug B payloads (org.eclipse.tahu.protobuf.Payload) with a single reusable ProtobufReader, handing
+ * every metric to the consumer as the same reused SparkplugMetric. Metadata, properties, data sets and templates are
+ * skipped. Not thread safe.
+ * */
+class SparkplugPayloadDecoder {
+
+    private static final int PAYLOAD_METRICS = 2;
+    private static final int PAYLOAD_SEQ = 3;
+
+    private static final int METRIC_NAME = 1;
+    private static final int METRIC_ALIAS = 2;
+    private static final int METRIC_DATATYPE = 4;
+    private static final int METRIC_IS_HISTORICAL = 5;
+    private static final int METRIC_IS_NULL = 7;
+    private static final int METRIC_INT_VALUE = 10;
+    private static final int METRIC_LONG_VALUE = 11;
+    private static final int METRIC_FLOAT_VALUE = 12;
+    private static final int METRIC_DOUBLE_VALUE = 13;
+    private static final int METRIC_BOOLEAN_VALUE = 14;
+    private static final int METRIC_STRING_VALUE = 15;
+    private static final int METRIC_BYTES_VALUE = 16;
+
+    private final ProtobufReader reader = new ProtobufReader();
+    private final SparkplugMetric metric = new SparkplugMetric();
+    private long seq;
+
+    /**
+     * Returns the payload sequence number, or -1 if the payload has none
+     * */
+    long decode(byte[] payload, Consumer<SparkplugMetric> consumer) {
+        reader.reset(payload);
+        seq = -1;
+        while (reader.hasRemaining()) {
+            int tag = reader.readTag();
+            int field = tag >>> 3;
+            int wireType = tag & 7;
+            if(field == PAYLOAD_METRICS && wireType == ProtobufReader.LENGTH_DELIMITED){
+                int previousLimit = reader.pushLimit(reader.readLength());
+                readMetric(payload);
+                reader.popLimit(previousLimit);
+                consumer.accept(metric);
+            }
+            else if(field == PAYLOAD_SEQ && wireType == ProtobufReader.VARINT)
+                seq = reader.readVarint();
+            else
+                reader.skip(wireType);
+        }
+        return seq;
+    }
+
+    private void readMetric(byte[] payload) {
+        metric.clear(payload);
+        while (reader.hasRemaining()) {
+            int tag = reader.readTag();
+            int wireType = tag & 7;
+            switch (tag >>> 3) {
+                case METRIC_NAME:
+                    expect(wireType, ProtobufReader.LENGTH_DELIMITED);
+                    metric.name = reader.readString();
+                    break;
+                case METRIC_ALIAS:
+                    expect(wireType, ProtobufReader.VARINT);
+                    metric.alias = reader.readVarint();
+                    metric.hasAlias = true;
+                    break;
+                case METRIC_DATATYPE:
+                    expect(wireType, ProtobufReader.VARINT);
+                    metric.dataType = (int) reader.readVarint();
+                    break;
+                case METRIC_IS_HISTORICAL:
+                    expect(wireType, ProtobufReader.VARINT);
+                    metric.historical = reader.readVarint() != 0;
+                    break;
+                case METRIC_IS_NULL:
+                    expect(wireType, ProtobufReader.VARINT);
+                    metric.isNull = reader.readVarint() != 0;
+                    break;
+                case METRIC_INT_VALUE:
+                case METRIC_LONG_VALUE:
+                case METRIC_BOOLEAN_VALUE:
+                    expect(wireType, ProtobufReader.VARINT);
+                    metric.raw = reader.readVarint();
+                    metric.hasValue = true;
+                    break;
+                case METRIC_FLOAT_VALUE:
+                    expect(wireType, ProtobufReader.FIXED32);
+                    metric.raw = reader.readFixed32();
+                    metric.hasValue = true;
+                    break;
+                case METRIC_DOUBLE_VALUE:
+                    expect(wireType, ProtobufReader.FIXED64);
+                    metric.raw = reader.readFixed64();
+                    metric.hasValue = true;
+                    break;
+                case METRIC_STRING_VALUE:
+                case METRIC_BYTES_VALUE:
+                    expect(wireType, ProtobufReader.LENGTH_DELIMITED);
+                    metric.length = reader.readLength();
+                    metric.offset = reader.getPosition();
+                    reader.skipBytes(metric.length);
+                    metric.hasValue = true;
+                    break;
+                default:
+                    reader.skip(wireType);
+            }
+        }
+    }
+
+    private void expect(int wireType, int expected) {
+        if(wireType != expected)
+            throw new IllegalArgumentException("unexpected wire type " + wireType + " at " + reader.getPosition());
+    }
+}
@@ -0,0 +1,48 @@
+package it.wldt.adapter.mqtt.physical.staleness;
+
+/**
+ * Body of the "<propertyKey>.stale" and "<propertyKey>.fresh" events
+ * */
+public class PropertyStaleness {
+
+    private final String propertyKey;
+    private final boolean stale;
+    private final long ageMs;
+    private final long maxAgeMs;
+
+    public PropertyStaleness(String propertyKey, boolean stale, long ageMs, long maxAgeMs) {
+        this.propertyKey = propertyKey;
+        this.stale = stale;
+        this.ageMs = ageMs;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public String getPropertyKey() {
+        return propertyKey;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Time since the previous value: when the property became stale, or how long it stayed silent before recovering
+     * */
+    public long getAgeMs() {
+        return ageMs;
+    }
+
+    public long getMaxAgeMs() {
+        return maxAgeMs;
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyStaleness{" +
+                "propertyKey='" + propertyKey + '\'' +
+                ", stale=" + stale +
+                ", ageMs=" + ageMs +
+                ", maxAgeMs=" + maxAgeMs +
+                '}';
+    }
+}
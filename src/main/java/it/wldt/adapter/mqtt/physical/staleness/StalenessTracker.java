@@ -0,0 +1,156 @@
+package it.wldt.adapter.mqtt.physical.staleness;
+
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.adapter.mqtt.physical.timing.HashedTimingWheel;
+import it.wldt.adapter.mqtt.physical.timing.Timeout;
+import it.wldt.adapter.physical.event.PhysicalAssetEventWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Tells the twin when a property receives no value for longer than its maximum age.
+ * Each property has at most one timing wheel timeout, which is not moved by the updates: an update only stores its
+ * time, and the expiring timeout re-arms itself for the remaining age if the property was updated in the meantime.
+ * A property with no value for maxAge becomes stale with a "<propertyKey>.stale" event, its next value makes it fresh
+ * again with a "<propertyKey>.fresh" event.
+ * Metrics: "staleness.stale" and "staleness.fresh" counters, "staleness.properties.stale" gauge.
+ * */
+public class StalenessTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(StalenessTracker.class);
+
+    private final HashedTimingWheel timingWheel;
+    private final MqttPhysicalAdapterMetrics metrics;
+    private final Consumer<WldtEvent<?>> eventSink;
+    private final Map<String, TrackedProperty> properties = new ConcurrentHashMap<>();
+    private final AtomicInteger staleCount = new AtomicInteger();
+
+    public StalenessTracker(HashedTimingWheel timingWheel, MqttPhysicalAdapterMetrics metrics, Consumer<WldtEvent<?>> eventSink) {
+        this.timingWheel = timingWheel;
+        this.metrics = metrics;
+        this.eventSink = eventSink;
+        this.metrics.registerGauge("staleness.properties.stale", staleCount::get);
+    }
+
+    public static String staleEventKey(String propertyKey) {
+        return propertyKey + ".stale";
+    }
+
+    public static String freshEventKey(String propertyKey) {
+        return propertyKey + ".fresh";
+    }
+
+    /**
+     * Tracks the given properties from now on, keeping the state of those whose max age did not change
+     * */
+    public void configure(Map<String, Long> maxAges) {
+        properties.forEach((key, tracked) -> {
+            Long maxAgeMs = maxAges.get(key);
+            if(maxAgeMs == null || maxAgeMs != tracked.maxAgeMs) untrack(key);
+        });
+        maxAges.forEach((key, maxAgeMs) -> properties.computeIfAbsent(key, k -> {
+            TrackedProperty tracked = new TrackedProperty(k, maxAgeMs, System.nanoTime());
+            arm(tracked, maxAgeMs);
+            return tracked;
+        }));
+    }
+
+    /**
+     * Records a new value of the property: O(1), no timing wheel operation unless the property was stale
+     * */
+    public void onUpdate(String propertyKey) {
+        TrackedProperty tracked = properties.get(propertyKey);
+        if(tracked == null) return;
+        long now = System.nanoTime();
+        long previous = tracked.lastUpdateNanos;
+        tracked.lastUpdateNanos = now;
+        if(!tracked.stale) return;
+        synchronized (tracked) {
+            if(!tracked.stale) return;
+            tracked.stale = false;
+            staleCount.decrementAndGet();
+            metrics.counter("staleness.fresh").increment();
+            arm(tracked, tracked.maxAgeMs);
+            emit(freshEventKey(propertyKey), new PropertyStaleness(propertyKey, false,
+                    TimeUnit.NANOSECONDS.toMillis(now - previous), tracked.maxAgeMs));
+        }
+    }
+
+    public boolean isStale(String propertyKey) {
+        TrackedProperty tracked = properties.get(propertyKey);
+        return tracked != null && tracked.stale;
+    }
+
+    public int getTrackedCount() {
+        return properties.size();
+    }
+
+    private void untrack(String propertyKey) {
+        TrackedProperty tracked = properties.remove(propertyKey);
+        if(tracked == null) return;
+        Timeout timeout = tracked.timeout;
+        if(timeout != null) timeout.cancel();
+        synchronized (tracked) {
+            if(tracked.stale) staleCount.decrementAndGet();
+            tracked.stale = false;
+        }
+    }
+
+    private void arm(TrackedProperty tracked, long delayMs) {
+        tracked.timeout = timingWheel.newTimeout(delayMs, TimeUnit.MILLISECONDS, () -> onExpired(tracked));
+    }
+
+    private void onExpired(TrackedProperty tracked) {
+        synchronized (tracked) {
+            if(properties.get(tracked.propertyKey) != tracked || tracked.stale) return;
+            long ageNanos = System.nanoTime() - tracked.lastUpdateNanos;
+            long maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(tracked.maxAgeMs);
+            if(ageNanos < maxAgeNanos){
+                arm(tracked, TimeUnit.NANOSECONDS.toMillis(maxAgeNanos - ageNanos) + 1);
+                return;
+            }
+            tracked.stale = true;
+            //an update that read stale before it was set did not re-arm the property: undo
+            if(System.nanoTime() - tracked.lastUpdateNanos < maxAgeNanos){
+                tracked.stale = false;
+                arm(tracked, tracked.maxAgeMs);
+                return;
+            }
+            staleCount.incrementAndGet();
+            metrics.counter("staleness.stale").increment();
+            emit(staleEventKey(tracked.propertyKey), new PropertyStaleness(tracked.propertyKey, true,
+                    TimeUnit.NANOSECONDS.toMillis(ageNanos), tracked.maxAgeMs));
+        }
+    }
+
+    private void emit(String eventKey, PropertyStaleness staleness) {
+        try {
+            eventSink.accept(new PhysicalAssetEventWldtEvent<>(eventKey, staleness));
+        } catch (EventBusException e) {
+            logger.error("MQTT Physical Adapter - unable to emit {}: {}", eventKey, e.getMessage());
+        }
+    }
+
+    private static final class TrackedProperty {
+
+        private final String propertyKey;
+        private final long maxAgeMs;
+        private volatile boolean stale = false;
+        private volatile long lastUpdateNanos;
+        private volatile Timeout timeout;
+
+        private TrackedProperty(String propertyKey, long maxAgeMs, long lastUpdateNanos) {
+            this.propertyKey = propertyKey;
+            this.maxAgeMs = maxAgeMs;
+            this.lastUpdateNanos = lastUpdateNanos;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package it.wldt.adapter.mqtt.physical.timing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel for large numbers of timeouts that are mostly cancelled before expiring: scheduling and
+ * cancelling are O(1) and need no thread per timeout. Timeouts are rounded up to the tick duration.
+ * Tasks are added and cancelled from any thread through lock-free queues; buckets are only touched by the tick,
+ * which runs on the given scheduler and also executes the expired tasks, so tasks must be short.
+ * */
+public class HashedTimingWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedTimingWheel.class);
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<WheelTimeout> additions = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancellations = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private long tick = 0;
+    private ScheduledFuture<?> tickTask;
+
+    /**
+     * wheelSize is rounded up to a power of two: one round of the wheel covers tickMs * wheelSize milliseconds,
+     * longer timeouts wait for several rounds
+     * */
+    public HashedTimingWheel(long tickMs, int wheelSize) {
+        if(tickMs <= 0 || wheelSize <= 0) throw new IllegalArgumentException("tick and wheel size must be positive");
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for(int i = 0; i < size; i++) wheel[i] = new Bucket();
+        this.mask = size - 1;
+    }
+
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        if(tickTask != null) return;
+        tickTask = scheduler.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized void stop() {
+        if(tickTask != null) tickTask.cancel(false);
+        tickTask = null;
+    }
+
+    public Timeout newTimeout(long delay, TimeUnit unit, Runnable task) {
+        WheelTimeout timeout = new WheelTimeout(task, System.nanoTime() - startNanos + unit.toNanos(delay));
+        pendingTimeouts.incrementAndGet();
+        additions.add(timeout);
+        return timeout;
+    }
+
+    public long getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Processes every tick elapsed since the last call, catching up if the scheduler was late
+     * */
+    private void advance() {
+        long elapsed = System.nanoTime() - startNanos;
+        while((tick + 1) * tickNanos <= elapsed){
+            removeCancelled();
+            transferAdditions();
+            expire(wheel[(int) (tick & mask)], (tick + 1) * tickNanos);
+            tick++;
+        }
+    }
+
+    private void transferAdditions() {
+        WheelTimeout timeout;
+        while((timeout = additions.poll()) != null){
+            if(timeout.state.get() != PENDING) continue;
+            long expirationTick = (timeout.deadline + tickNanos - 1) / tickNanos - 1;
+            //already late timeouts go to the current bucket
+            long targetTick = Math.max(expirationTick, tick);
+            timeout.remainingRounds = (targetTick - tick) / wheel.length;
+            wheel[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        WheelTimeout timeout;
+        while((timeout = cancellations.poll()) != null){
+            //timeouts still in the additions queue are skipped by transferAdditions
+            if(timeout.bucket != null) timeout.bucket.remove(timeout);
+            pendingTimeouts.decrementAndGet();
+        }
+    }
+
+    private void expire(Bucket bucket, long tickDeadline) {
+        WheelTimeout timeout = bucket.head;
+        while(timeout != null){
+            WheelTimeout next = timeout.next;
+            if(timeout.remainingRounds <= 0){
+                bucket.remove(timeout);
+                if(timeout.deadline > tickDeadline){
+                    //not due yet: placed again by the next transfer
+                    additions.add(timeout);
+                } else if(timeout.state.compareAndSet(PENDING, EXPIRED)){
+                    pendingTimeouts.decrementAndGet();
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Timing wheel task failed: {}", e.getMessage());
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private final class WheelTimeout implements Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+        private Bucket bucket;
+
+        private WheelTimeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if(!state.compareAndSet(PENDING, CANCELLED)) return false;
+            cancellations.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    private static final class Bucket {
+
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        private void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if(head == null){
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(WheelTimeout timeout) {
+            if(timeout.bucket != this) return;
+            if(timeout.prev != null) timeout.prev.next = timeout.next;
+            else head = timeout.next;
+            if(timeout.next != null) timeout.next.prev = timeout.prev;
+            else tail = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package it.wldt.adapter.mqtt.physical.timing;
+
+/**
+ * Handle of a task scheduled on a HashedTimingWheel
+ * */
+public interface Timeout {
+
+    /**
+     * Cancels the task if it has not run yet, returning false if it already expired or was cancelled
+     * */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    boolean isExpired();
+}
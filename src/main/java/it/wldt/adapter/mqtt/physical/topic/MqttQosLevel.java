@@ -15,4 +15,10 @@ public enum MqttQosLevel {
     public int getQosValue() {
         return qosValue;
     }
+
+    public static MqttQosLevel fromValue(int qosValue) {
+        for (MqttQosLevel level : values())
+            if(level.qosValue == qosValue) return level;
+        throw new IllegalArgumentException("Invalid QoS: " + qosValue);
+    }
 }
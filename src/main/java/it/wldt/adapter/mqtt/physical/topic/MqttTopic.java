@@ -4,6 +4,9 @@ public class MqttTopic{
 
     private final String topic;
     private MqttQosLevel qosLevel = MqttQosLevel.MQTT_QOS_0;
+    private MqttQosLevel minQosLevel;
+    private volatile MqttQosLevel effectiveQosLevel = MqttQosLevel.MQTT_QOS_0;
+    private boolean orderedFlag = true;
 
     public MqttTopic(String topic) {
         this.topic = topic;
@@ -12,17 +15,70 @@ public class MqttTopic{
     public MqttTopic(String topic, MqttQosLevel qosLevel) {
         this.topic = topic;
         this.qosLevel = qosLevel;
+        this.effectiveQosLevel = qosLevel;
     }
 
     public String getTopic() {
         return topic;
     }
 
+    /**
+     * QoS currently used to publish or subscribe, lower than the configured one while adaptive QoS has downgraded it
+     * */
     public Integer getQos() {
+        return effectiveQosLevel.getQosValue();
+    }
+
+    public Integer getConfiguredQos() {
         return qosLevel.getQosValue();
     }
 
     public void setQosLevel(MqttQosLevel qosLevel) {
         this.qosLevel = qosLevel;
+        this.effectiveQosLevel = qosLevel;
+    }
+
+    /**
+     * Lowest QoS adaptive QoS may downgrade this topic to, null for topics that are never downgraded
+     * */
+    public MqttQosLevel getMinQosLevel() {
+        return minQosLevel;
+    }
+
+    public void setMinQosLevel(MqttQosLevel minQosLevel) {
+        this.minQosLevel = minQosLevel;
+    }
+
+    public boolean isAdaptiveQos() {
+        return minQosLevel != null && minQosLevel.getQosValue() < qosLevel.getQosValue();
+    }
+
+    /**
+     * Lowers the effective QoS by one level, returning false if it is already at the minimum
+     * */
+    public boolean downgradeQos() {
+        if(!isAdaptiveQos() || effectiveQosLevel.getQosValue() <= minQosLevel.getQosValue()) return false;
+        effectiveQosLevel = MqttQosLevel.fromValue(effectiveQosLevel.getQosValue() - 1);
+        return true;
+    }
+
+    /**
+     * Raises the effective QoS by one level, returning false if it is already the configured one
+     * */
+    public boolean restoreQos() {
+        if(effectiveQosLevel.getQosValue() >= qosLevel.getQosValue()) return false;
+        effectiveQosLevel = MqttQosLevel.fromValue(effectiveQosLevel.getQosValue() + 1);
+        return true;
+    }
+
+    /**
+     * With the CONCURRENT execution mode, the messages of an ordered topic are still processed one at a time
+     * */
+    public boolean isOrdered() {
+        return orderedFlag;
+    }
+
+    public void setOrderedFlag(boolean ordered) {
+        this.orderedFlag = ordered;
     }
 }
@@ -0,0 +1,70 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import it.wldt.adapter.physical.event.PhysicalAssetEventWldtEvent;
+import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Property or event carrying an opaque payload, e.g. a camera thumbnail or a waveform capture. The value is a
+ * read-only ByteBuffer wrapping the bytes received from the MQTT client: no copy and no charset decoding.
+ * Payloads larger than maxPayloadSize bytes are rejected.
+ * */
+public class BinaryIncomingTopic extends DigitalTwinIncomingTopic {
+
+    public static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private final String key;
+    private final boolean property;
+    private final int maxPayloadSize;
+
+    private BinaryIncomingTopic(String topic, String key, boolean property, int maxPayloadSize) {
+        super(topic, s -> Collections.emptyList());
+        this.key = key;
+        this.property = property;
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    public static BinaryIncomingTopic property(String topic, String propertyKey, int maxPayloadSize) {
+        return new BinaryIncomingTopic(topic, propertyKey, true, maxPayloadSize);
+    }
+
+    public static BinaryIncomingTopic event(String topic, String eventKey, int maxPayloadSize) {
+        return new BinaryIncomingTopic(topic, eventKey, false, maxPayloadSize);
+    }
+
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(String topicMessagePayload) {
+        return wrap(topicMessagePayload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(MqttIncomingMessage message) {
+        return wrap(message.getPayload());
+    }
+
+    private List<WldtEvent<?>> wrap(byte[] payload) {
+        if(payload.length > maxPayloadSize){
+            onRejectedPayload(payload, "payload of " + payload.length + " bytes exceeds " + maxPayloadSize);
+            return Collections.emptyList();
+        }
+        ByteBuffer value = ByteBuffer.wrap(payload).asReadOnlyBuffer();
+        try {
+            return Collections.singletonList(property
+                    ? new PhysicalAssetPropertyWldtEvent<>(key, value)
+                    : new PhysicalAssetEventWldtEvent<>(key, value));
+        } catch (EventBusException e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package it.wldt.adapter.mqtt.physical.topic.incoming;
 
+import it.wldt.adapter.mqtt.physical.dispatch.MessagePriority;
+import it.wldt.adapter.mqtt.physical.dispatch.OverflowPolicy;
+import it.wldt.adapter.mqtt.physical.schema.JsonSchema;
+import it.wldt.adapter.mqtt.physical.schema.SchemaViolationException;
 import it.wldt.adapter.mqtt.physical.topic.MqttTopic;
 import it.wldt.core.event.WldtEvent;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DigitalTwinIncomingTopic extends MqttTopic {
 
     private final MqttSubscribeFunction mqttSubscribeFunction;
+    private OverflowPolicy overflowPolicy;
+    private MessagePriority priority = MessagePriority.NORMAL;
+    private final LongAdder malformedPayloads = new LongAdder();
+    private final RejectedPayloadSampler rejectedPayloads = new RejectedPayloadSampler();
+    private JsonSchema schema;
 
     public DigitalTwinIncomingTopic(String topic, MqttSubscribeFunction mqttSubscribeFunction) {
         super(topic);
@@ -18,7 +31,82 @@ public class DigitalTwinIncomingTopic extends MqttTopic {
         return mqttSubscribeFunction.apply(topicMessagePayload);
     }
 
+    /**
+     * With a schema, payloads are validated before the subscribe function runs and discarded at their first violation
+     * */
+    public List<WldtEvent<?>> applySubscribeFunction(MqttIncomingMessage message){
+        if(schema != null){
+            try {
+                schema.validate(message.getPayload());
+            } catch (SchemaViolationException e) {
+                onRejectedPayload(message.getPayload(), e.getMessage());
+                return Collections.emptyList();
+            }
+        }
+        return mqttSubscribeFunction.apply(new String(message.getPayload(), StandardCharsets.UTF_8), message);
+    }
+
+    /**
+     * Number of payloads of this topic discarded because they could not be decoded
+     * */
+    public long getMalformedPayloadCount() {
+        return malformedPayloads.sum();
+    }
+
+    protected void onMalformedPayload() {
+        malformedPayloads.increment();
+    }
+
+    /**
+     * Counts the payload as malformed and keeps a sampled copy of it
+     * */
+    protected void onRejectedPayload(byte[] payload, String reason) {
+        malformedPayloads.increment();
+        rejectedPayloads.offer(getTopic(), payload, reason);
+    }
+
+    /**
+     * Number of payloads rejected by the schema or found not to be valid JSON
+     * */
+    public long getRejectedPayloadCount() {
+        return rejectedPayloads.getRejectedCount();
+    }
+
+    public List<RejectedPayload> getRejectedPayloadSamples() {
+        return rejectedPayloads.getSamples();
+    }
+
+    public Optional<JsonSchema> getSchema() {
+        return Optional.ofNullable(schema);
+    }
+
+    public void setSchema(JsonSchema schema) {
+        this.schema = schema;
+    }
+
     public MqttSubscribeFunction getSubscribeFunction() {
         return mqttSubscribeFunction;
     }
+
+    /**
+     * Policy applied to the messages of this topic when the inbound queue is full, empty to use the queue default
+     * */
+    public Optional<OverflowPolicy> getOverflowPolicy() {
+        return Optional.ofNullable(overflowPolicy);
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Lane of the inbound queue used by the messages of this topic
+     * */
+    public MessagePriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(MessagePriority priority) {
+        this.priority = priority;
+    }
 }
@@ -0,0 +1,176 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import it.wldt.adapter.mqtt.physical.schema.JsonSchema;
+import it.wldt.adapter.mqtt.physical.schema.SchemaViolationException;
+import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * json-object property split into one property per known field, named propertyKey.field. The known fields are the
+ * fields of the initial value followed by the properties declared by the schema.
+ * Each payload emits events only for the fields whose value changed: fields missing from the payload keep their
+ * value, unknown fields are ignored. Numbers are published as Long or Double, and nested objects and arrays as JsonNode.
+ * */
+public class FlattenedJsonObjectIncomingTopic extends DigitalTwinIncomingTopic {
+
+    private final FieldValues values;
+
+    public FlattenedJsonObjectIncomingTopic(String topic, String propertyKey, ObjectNode initialValue, JsonSchema schema) {
+        this(topic, new FieldValues(propertyKey, initialValue, schema), schema);
+    }
+
+    private FlattenedJsonObjectIncomingTopic(String topic, FieldValues values, JsonSchema schema) {
+        super(topic, s -> values.read(schema != null ? schema : JsonObjectPropertyIncomingTopic.ANY_OBJECT, s.getBytes(StandardCharsets.UTF_8), null));
+        this.values = values;
+        setSchema(schema != null ? schema : JsonObjectPropertyIncomingTopic.ANY_OBJECT);
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(String topicMessagePayload) {
+        return read(topicMessagePayload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(MqttIncomingMessage message) {
+        return read(message.getPayload());
+    }
+
+    /**
+     * Property key and initial value of every known field, to be declared in the PhysicalAssetDescription
+     * */
+    public Map<String, Object> getInitialValues() {
+        return values.initialValues;
+    }
+
+    private List<WldtEvent<?>> read(byte[] payload) {
+        return values.read(getSchema().orElse(JsonObjectPropertyIncomingTopic.ANY_OBJECT), payload, this);
+    }
+
+    /**
+     * Last value of every known field, indexed by field: numbers and booleans are kept as raw bits, strings and
+     * containers as references, so an unchanged field costs no allocation.
+     * */
+    private static final class FieldValues {
+
+        private static final byte NULL = 0;
+        private static final byte LONG = 1;
+        private static final byte DOUBLE = 2;
+        private static final byte BOOLEAN = 3;
+        private static final byte TEXT = 4;
+        private static final byte NODE = 5;
+
+        private final String[] fields;
+        private final String[] propertyKeys;
+        private final byte[] kinds;
+        private final long[] bits;
+        private final Object[] refs;
+        private final Map<String, Object> initialValues;
+
+        private FieldValues(String propertyKey, ObjectNode initialValue, JsonSchema schema) {
+            Set<String> names = new LinkedHashSet<>();
+            if(initialValue != null) initialValue.fieldNames().forEachRemaining(names::add);
+            if(schema != null) names.addAll(new TreeSet<>(schema.getPropertyNames()));
+            this.fields = names.toArray(new String[0]);
+            this.propertyKeys = new String[fields.length];
+            this.kinds = new byte[fields.length];
+            this.bits = new long[fields.length];
+            this.refs = new Object[fields.length];
+            Map<String, Object> initial = new LinkedHashMap<>();
+            for(int i = 0; i < fields.length; i++){
+                propertyKeys[i] = propertyKey + "." + fields[i];
+                JsonNode node = initialValue != null ? initialValue.get(fields[i]) : null;
+                if(node != null) update(i, node);
+                initial.put(propertyKeys[i], value(i));
+            }
+            this.initialValues = Collections.unmodifiableMap(initial);
+        }
+
+        /**
+         * Rejected payloads are reported to the topic when given
+         * */
+        private synchronized List<WldtEvent<?>> read(JsonSchema schema, byte[] payload, DigitalTwinIncomingTopic topic) {
+            JsonNode object;
+            try {
+                object = schema.read(payload);
+                if(!object.isObject()) throw new SchemaViolationException("$", "not an object");
+            } catch (SchemaViolationException e) {
+                if(topic != null) topic.onRejectedPayload(payload, e.getMessage());
+                return Collections.emptyList();
+            }
+            List<WldtEvent<?>> events = null;
+            for(int i = 0; i < fields.length; i++){
+                JsonNode node = object.get(fields[i]);
+                if(node == null || !update(i, node)) continue;
+                try {
+                    if(events == null) events = new ArrayList<>();
+                    events.add(new PhysicalAssetPropertyWldtEvent<>(propertyKeys[i], value(i)));
+                } catch (EventBusException e) {
+                    e.printStackTrace();
+                }
+            }
+            return events != null ? events : Collections.emptyList();
+        }
+
+        /**
+         * Stores the field value and returns whether it changed
+         * */
+        private boolean update(int i, JsonNode node) {
+            byte kind;
+            long raw = 0;
+            Object ref = null;
+            if(node.isIntegralNumber() && node.canConvertToLong()){
+                kind = LONG;
+                raw = node.longValue();
+            }
+            else if(node.isNumber()){
+                kind = DOUBLE;
+                raw = Double.doubleToLongBits(node.doubleValue());
+            }
+            else if(node.isBoolean()){
+                kind = BOOLEAN;
+                raw = node.booleanValue() ? 1 : 0;
+            }
+            else if(node.isTextual()){
+                kind = TEXT;
+                ref = node.textValue();
+            }
+            else if(node.isNull() || node.isMissingNode()){
+                kind = NULL;
+            }
+            else {
+                kind = NODE;
+                ref = node;
+            }
+            if(kinds[i] == kind && bits[i] == raw && Objects.equals(refs[i], ref)) return false;
+            kinds[i] = kind;
+            bits[i] = raw;
+            refs[i] = ref;
+            return true;
+        }
+
+        private Object value(int i) {
+            switch (kinds[i]) {
+                case LONG: return bits[i];
+                case DOUBLE: return Double.longBitsToDouble(bits[i]);
+                case BOOLEAN: return bits[i] != 0;
+                case TEXT:
+                case NODE: return refs[i];
+                default: return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import it.wldt.adapter.mqtt.physical.schema.JsonSchema;
+import it.wldt.adapter.mqtt.physical.schema.SchemaViolationException;
+import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Property whose JSON payload is parsed and validated against its schema in a single streaming pass.
+ * Invalid payloads produce no event: they are counted and sampled instead of publishing an empty value.
+ * */
+public class JsonObjectPropertyIncomingTopic extends PropertyIncomingTopic<JsonNode> {
+
+    public static final JsonSchema ANY_OBJECT = JsonSchema.compile("{\"type\":\"object\"}");
+
+    private final String propertyKey;
+
+    public JsonObjectPropertyIncomingTopic(String topic, String propertyKey, JsonSchema schema) {
+        super(topic, propertyKey, s -> readOrNull(schema != null ? schema : ANY_OBJECT, s));
+        this.propertyKey = propertyKey;
+        setSchema(schema != null ? schema : ANY_OBJECT);
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(String topicMessagePayload) {
+        return read(topicMessagePayload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(MqttIncomingMessage message) {
+        return read(message.getPayload());
+    }
+
+    private static JsonNode readOrNull(JsonSchema schema, String payload) {
+        try {
+            return schema.read(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (SchemaViolationException e) {
+            return null;
+        }
+    }
+
+    private List<WldtEvent<?>> read(byte[] payload) {
+        JsonNode value;
+        try {
+            value = getSchema().orElse(ANY_OBJECT).read(payload);
+        } catch (SchemaViolationException e) {
+            onRejectedPayload(payload, e.getMessage());
+            return Collections.emptyList();
+        }
+        try {
+            return Collections.singletonList(new PhysicalAssetPropertyWldtEvent<>(propertyKey, value));
+        } catch (EventBusException e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+}
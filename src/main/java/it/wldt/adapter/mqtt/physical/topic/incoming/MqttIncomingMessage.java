@@ -0,0 +1,77 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A message received on an incoming topic, independent of the MQTT protocol version.
+ * User properties, content type, response topic and correlation data are available only with MQTT 5.
+ * */
+public class MqttIncomingMessage {
+
+    private final String topic;
+    private final byte[] payload;
+    private final int qos;
+    private final boolean retained;
+    private final int id;
+    private final String contentType;
+    private final Map<String, String> userProperties;
+    private final String responseTopic;
+    private final byte[] correlationData;
+
+    public MqttIncomingMessage(String topic, byte[] payload, int qos, boolean retained, int id) {
+        this(topic, payload, qos, retained, id, null, Collections.emptyMap(), null, null);
+    }
+
+    public MqttIncomingMessage(String topic, byte[] payload, int qos, boolean retained, int id, String contentType,
+                               Map<String, String> userProperties, String responseTopic, byte[] correlationData) {
+        this.topic = topic;
+        this.payload = payload;
+        this.qos = qos;
+        this.retained = retained;
+        this.id = id;
+        this.contentType = contentType;
+        this.userProperties = userProperties;
+        this.responseTopic = responseTopic;
+        this.correlationData = correlationData;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * The raw payload, not copied: it must not be modified
+     * */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public boolean isRetained() {
+        return retained;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public Map<String, String> getUserProperties() {
+        return userProperties;
+    }
+
+    public String getResponseTopic() {
+        return responseTopic;
+    }
+
+    public byte[] getCorrelationData() {
+        return correlationData;
+    }
+}
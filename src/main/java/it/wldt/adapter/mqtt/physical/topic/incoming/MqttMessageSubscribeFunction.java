@@ -0,0 +1,21 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import it.wldt.core.event.WldtEvent;
+
+import java.util.List;
+
+/**
+ * A MqttSubscribeFunction that also receives the whole incoming message, e.g. to read MQTT 5 user properties
+ * or the content type instead of sniffing the payload.
+ * */
+@FunctionalInterface
+public interface MqttMessageSubscribeFunction extends MqttSubscribeFunction {
+
+    @Override
+    List<WldtEvent<?>> apply(String topicMessagePayload, MqttIncomingMessage message);
+
+    @Override
+    default List<WldtEvent<?>> apply(String topicMessagePayload) {
+        return apply(topicMessagePayload, null);
+    }
+}
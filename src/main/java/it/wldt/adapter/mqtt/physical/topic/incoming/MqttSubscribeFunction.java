@@ -11,4 +11,11 @@ import java.util.function.Function;
  * Represents a function that accepts a message published on topic (of type String) and when applied, produces a WldtEvent.
  * */
 public interface MqttSubscribeFunction extends Function<String, List<WldtEvent<?>>> {
+
+    /**
+     * Invoked by the adapter with the whole incoming message, by default only the payload is used.
+     * */
+    default List<WldtEvent<?>> apply(String topicMessagePayload, MqttIncomingMessage message) {
+        return apply(topicMessagePayload);
+    }
 }
@@ -0,0 +1,10 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+/**
+ * Decodes a value directly from the bytes of a MQTT payload, returning null when the payload is malformed
+ * */
+@FunctionalInterface
+public interface PayloadDecoder<T> {
+
+    T decode(byte[] payload);
+}
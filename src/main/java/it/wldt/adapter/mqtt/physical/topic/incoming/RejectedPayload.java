@@ -0,0 +1,57 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Copy of a discarded payload, truncated to RejectedPayloadSampler.MAX_SAMPLE_BYTES, with the reason it was rejected
+ * */
+public class RejectedPayload {
+
+    private final String topic;
+    private final String reason;
+    private final byte[] payload;
+    private final int payloadLength;
+    private final long timestamp;
+
+    public RejectedPayload(String topic, String reason, byte[] payload, int payloadLength, long timestamp) {
+        this.topic = topic;
+        this.reason = reason;
+        this.payload = payload;
+        this.payloadLength = payloadLength;
+        this.timestamp = timestamp;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public byte[] getPayload() {
+        return payload.clone();
+    }
+
+    /**
+     * Length of the original payload, larger than getPayload().length when the sample was truncated
+     * */
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "RejectedPayload{" +
+                "topic='" + topic + '\'' +
+                ", reason='" + reason + '\'' +
+                ", payload='" + new String(payload, StandardCharsets.UTF_8) + '\'' +
+                ", payloadLength=" + payloadLength +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps a few recent rejected payloads for troubleshooting. The first CAPACITY rejections are always kept, then one
+ * every SAMPLE_RATE, so a device flooding bad messages costs one counter increment per message.
+ * */
+public class RejectedPayloadSampler {
+
+    public static final int CAPACITY = 8;
+    public static final int SAMPLE_RATE = 100;
+    public static final int MAX_SAMPLE_BYTES = 512;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicReferenceArray<RejectedPayload> samples = new AtomicReferenceArray<>(CAPACITY);
+
+    public void offer(String topic, byte[] payload, String reason) {
+        long count = rejected.getAndIncrement();
+        if(count >= CAPACITY && count % SAMPLE_RATE != 0) return;
+        int slot = (int) ((count < CAPACITY ? count : CAPACITY + count / SAMPLE_RATE) % CAPACITY);
+        samples.set(slot, new RejectedPayload(topic, reason,
+                Arrays.copyOf(payload, Math.min(payload.length, MAX_SAMPLE_BYTES)), payload.length, System.currentTimeMillis()));
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public List<RejectedPayload> getSamples() {
+        List<RejectedPayload> result = new ArrayList<>(CAPACITY);
+        for(int i = 0; i < CAPACITY; i++){
+            RejectedPayload sample = samples.get(i);
+            if(sample != null) result.add(sample);
+        }
+        result.sort((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parsers of int, double and boolean payloads working on the ASCII bytes of the payload, without decoding a String
+ * and without throwing on malformed input: they return null instead. Leading and trailing whitespace is ignored.
+ * */
+public final class ScalarDecoders {
+
+    public static final PayloadDecoder<Integer> INT = ScalarDecoders::decodeInt;
+    public static final PayloadDecoder<Double> DOUBLE = ScalarDecoders::decodeDouble;
+    public static final PayloadDecoder<Boolean> BOOLEAN = ScalarDecoders::decodeBoolean;
+
+    //largest mantissa converted exactly to a double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    //powers of ten exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private ScalarDecoders() {
+    }
+
+    public static Integer decodeInt(byte[] payload) {
+        int from = skipWhitespace(payload);
+        int to = trimWhitespace(payload, from);
+        if(from == to) return null;
+        boolean negative = payload[from] == '-';
+        if(negative || payload[from] == '+') from++;
+        //at most 10 digits, accumulated as a long to detect the overflow
+        if(from == to || to - from > 10) return null;
+        long value = 0;
+        for(int i = from; i < to; i++){
+            int digit = payload[i] - '0';
+            if(digit < 0 || digit > 9) return null;
+            value = value * 10 + digit;
+        }
+        if(negative) value = -value;
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) return null;
+        return (int) value;
+    }
+
+    public static Double decodeDouble(byte[] payload) {
+        int from = skipWhitespace(payload);
+        int to = trimWhitespace(payload, from);
+        if(from == to) return null;
+        //Java float suffixes, accepted by Double.valueOf
+        byte last = payload[to - 1];
+        if(last == 'd' || last == 'D' || last == 'f' || last == 'F') to--;
+        int start = from;
+        boolean negative = payload[from] == '-';
+        if(negative || payload[from] == '+') from++;
+        if(from == to) return null;
+        if(matches(payload, from, to, "NaN")) return Double.NaN;
+        if(matches(payload, from, to, "Infinity")) return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        boolean dot = false;
+        int i = from;
+        for(; i < to; i++){
+            byte c = payload[i];
+            if(c == '.'){
+                if(dot) return null;
+                dot = true;
+                continue;
+            }
+            int digit = c - '0';
+            if(digit < 0 || digit > 9) break;
+            digits++;
+            if(mantissa < 100_000_000_000_000_000L){
+                mantissa = mantissa * 10 + digit;
+                if(dot) exponent--;
+            } else {
+                //digits beyond the long precision: only their magnitude is kept
+                if(digit != 0) truncated = true;
+                if(!dot) exponent++;
+            }
+        }
+        if(digits == 0) return null;
+        if(i < to){
+            if(payload[i] != 'e' && payload[i] != 'E') return null;
+            i++;
+            boolean negativeExponent = i < to && payload[i] == '-';
+            if(i < to && (payload[i] == '-' || payload[i] == '+')) i++;
+            if(i == to) return null;
+            int explicitExponent = 0;
+            for(; i < to; i++){
+                int digit = payload[i] - '0';
+                if(digit < 0 || digit > 9) return null;
+                //saturated: beyond this the result is 0 or infinity anyway
+                if(explicitExponent < 100_000) explicitExponent = explicitExponent * 10 + digit;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if(!truncated && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22){
+            //exact operands: a single correctly rounded operation gives the correctly rounded result
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        //well-formed but out of the fast path range, rare for telemetry
+        return Double.parseDouble(new String(payload, start, to - start, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Accepts "true" and "false" in any case, anything else is malformed
+     * */
+    public static Boolean decodeBoolean(byte[] payload) {
+        int from = skipWhitespace(payload);
+        int to = trimWhitespace(payload, from);
+        if(matchesIgnoreCase(payload, from, to, "true")) return Boolean.TRUE;
+        if(matchesIgnoreCase(payload, from, to, "false")) return Boolean.FALSE;
+        return null;
+    }
+
+    private static int skipWhitespace(byte[] payload) {
+        int i = 0;
+        while(i < payload.length && isWhitespace(payload[i])) i++;
+        return i;
+    }
+
+    private static int trimWhitespace(byte[] payload, int from) {
+        int i = payload.length;
+        while(i > from && isWhitespace(payload[i - 1])) i--;
+        return i;
+    }
+
+    /**
+     * Space and ASCII control characters, as String.trim(). Bytes are signed: without the mask every byte of a
+     * non-ASCII UTF-8 character would count as whitespace.
+     * */
+    private static boolean isWhitespace(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+
+    private static boolean matches(byte[] payload, int from, int to, String expected) {
+        if(to - from != expected.length()) return false;
+        for(int i = 0; i < expected.length(); i++){
+            if(payload[from + i] != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean matchesIgnoreCase(byte[] payload, int from, int to, String lowerCaseExpected) {
+        if(to - from != lowerCaseExpected.length()) return false;
+        for(int i = 0; i < lowerCaseExpected.length(); i++){
+            //ASCII lower case
+            if((payload[from + i] | 0x20) != lowerCaseExpected.charAt(i)) return false;
+        }
+        return true;
+    }
+}
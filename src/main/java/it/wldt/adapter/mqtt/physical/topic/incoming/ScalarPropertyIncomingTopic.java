@@ -0,0 +1,61 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import it.wldt.adapter.mqtt.physical.schema.JsonSchema;
+import it.wldt.adapter.mqtt.physical.schema.SchemaViolationException;
+import it.wldt.adapter.physical.event.PhysicalAssetPropertyWldtEvent;
+import it.wldt.core.event.WldtEvent;
+import it.wldt.exception.EventBusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PropertyIncomingTopic whose value is decoded straight from the payload bytes (see ScalarDecoders), without
+ * building a String. Malformed payloads produce no event and are counted. With a schema, the payload is validated
+ * before being decoded.
+ * */
+public class ScalarPropertyIncomingTopic<T> extends PropertyIncomingTopic<T> {
+
+    private final String propertyKey;
+    private final PayloadDecoder<T> decoder;
+
+    public ScalarPropertyIncomingTopic(String topic, String propertyKey, PayloadDecoder<T> decoder) {
+        super(topic, propertyKey, s -> decoder.decode(s.getBytes(StandardCharsets.UTF_8)));
+        this.propertyKey = propertyKey;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(String topicMessagePayload) {
+        return decode(topicMessagePayload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public List<WldtEvent<?>> applySubscribeFunction(MqttIncomingMessage message) {
+        return decode(message.getPayload());
+    }
+
+    private List<WldtEvent<?>> decode(byte[] payload) {
+        JsonSchema schema = getSchema().orElse(null);
+        if(schema != null){
+            try {
+                schema.validate(payload);
+            } catch (SchemaViolationException e) {
+                onRejectedPayload(payload, e.getMessage());
+                return Collections.emptyList();
+            }
+        }
+        T value = decoder.decode(payload);
+        if(value == null){
+            onMalformedPayload();
+            return Collections.emptyList();
+        }
+        try {
+            return Collections.singletonList(new PhysicalAssetPropertyWldtEvent<>(propertyKey, value));
+        } catch (EventBusException e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+}
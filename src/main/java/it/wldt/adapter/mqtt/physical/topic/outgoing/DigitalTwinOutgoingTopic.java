@@ -1,22 +1,91 @@
 package it.wldt.adapter.mqtt.physical.topic.outgoing;
 
 
+import it.wldt.adapter.mqtt.physical.coalescing.ActionCoalescing;
+import it.wldt.adapter.mqtt.physical.correlation.ActionResponseConfiguration;
 import it.wldt.adapter.mqtt.physical.topic.MqttTopic;
 import it.wldt.adapter.physical.event.PhysicalAssetActionWldtEvent;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
 public class DigitalTwinOutgoingTopic extends MqttTopic {
     private final MqttPublishFunction publishFunction;
+    private final MqttBytesPublishFunction bytesPublishFunction;
+    private Long messageExpiryInterval;
+    private ActionResponseConfiguration actionResponse;
+    private ActionCoalescing coalescing;
 
     public DigitalTwinOutgoingTopic(String topic, MqttPublishFunction publishFunction) {
         super(topic);
         this.publishFunction = publishFunction;
+        this.bytesPublishFunction = null;
+    }
+
+    /**
+     * Outgoing topic whose payload is written into a pooled buffer instead of being built as a String
+     * */
+    public DigitalTwinOutgoingTopic(String topic, MqttBytesPublishFunction bytesPublishFunction) {
+        super(topic);
+        this.bytesPublishFunction = bytesPublishFunction;
+        this.publishFunction = actionWldtEvent -> new String(encodePayload(actionWldtEvent), StandardCharsets.UTF_8);
     }
 
     public String applyPublishFunction(PhysicalAssetActionWldtEvent<?> actionWldtEvent){
         return this.publishFunction.apply(actionWldtEvent);
     }
 
+    /**
+     * Returns the UTF-8 payload of the action. With a MqttBytesPublishFunction no intermediate String is created:
+     * the only allocation is the exact-size array handed to the MQTT client.
+     * */
+    public byte[] encodePayload(PhysicalAssetActionWldtEvent<?> actionWldtEvent){
+        if(bytesPublishFunction == null)
+            return this.publishFunction.apply(actionWldtEvent).getBytes(StandardCharsets.UTF_8);
+        PayloadBufferPool pool = PayloadBufferPool.shared();
+        PayloadBuffer buffer = pool.acquire();
+        try {
+            bytesPublishFunction.write(actionWldtEvent, buffer);
+            return buffer.toByteArray();
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
     public MqttPublishFunction getPublishFunction() {
         return publishFunction;
     }
+
+    /**
+     * MQTT 5 only: seconds after which the broker discards an action not yet delivered to the device
+     * */
+    public Long getMessageExpiryInterval() {
+        return messageExpiryInterval;
+    }
+
+    public void setMessageExpiryInterval(Long messageExpiryInterval) {
+        this.messageExpiryInterval = messageExpiryInterval;
+    }
+
+    /**
+     * How the device answers the action, empty for fire-and-forget actions
+     * */
+    public Optional<ActionResponseConfiguration> getActionResponse() {
+        return Optional.ofNullable(actionResponse);
+    }
+
+    public void setActionResponse(ActionResponseConfiguration actionResponse) {
+        this.actionResponse = actionResponse;
+    }
+
+    /**
+     * Debounce or coalesce policy of the action, empty to publish every action as soon as it arrives
+     * */
+    public Optional<ActionCoalescing> getCoalescing() {
+        return Optional.ofNullable(coalescing);
+    }
+
+    public void setCoalescing(ActionCoalescing coalescing) {
+        this.coalescing = coalescing;
+    }
 }
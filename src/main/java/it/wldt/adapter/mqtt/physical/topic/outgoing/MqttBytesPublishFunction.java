@@ -0,0 +1,13 @@
+package it.wldt.adapter.mqtt.physical.topic.outgoing;
+
+import it.wldt.adapter.physical.event.PhysicalAssetActionWldtEvent;
+
+/**
+ * Byte-producing alternative to MqttPublishFunction: writes the payload of an action into a pooled PayloadBuffer
+ * instead of returning a String
+ * */
+@FunctionalInterface
+public interface MqttBytesPublishFunction {
+
+    void write(PhysicalAssetActionWldtEvent<?> actionWldtEvent, PayloadBuffer buffer);
+}
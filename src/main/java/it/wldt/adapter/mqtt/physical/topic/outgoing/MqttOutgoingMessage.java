@@ -0,0 +1,79 @@
+package it.wldt.adapter.mqtt.physical.topic.outgoing;
+
+/**
+ * A message published on an outgoing topic, independent of the MQTT protocol version.
+ * Message expiry, response topic, correlation data and content type are sent only with MQTT 5.
+ * */
+public class MqttOutgoingMessage {
+
+    private final String topic;
+    private final byte[] payload;
+    private final int qos;
+    private final boolean retained;
+    private Long messageExpiryInterval;
+    private String responseTopic;
+    private byte[] correlationData;
+    private String contentType;
+
+    public MqttOutgoingMessage(String topic, byte[] payload, int qos, boolean retained) {
+        this.topic = topic;
+        this.payload = payload;
+        this.qos = qos;
+        this.retained = retained;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public boolean isRetained() {
+        return retained;
+    }
+
+    /**
+     * Seconds after which the broker discards the message if not yet delivered, null for no expiry
+     * */
+    public Long getMessageExpiryInterval() {
+        return messageExpiryInterval;
+    }
+
+    public MqttOutgoingMessage setMessageExpiryInterval(Long messageExpiryInterval) {
+        this.messageExpiryInterval = messageExpiryInterval;
+        return this;
+    }
+
+    public String getResponseTopic() {
+        return responseTopic;
+    }
+
+    public MqttOutgoingMessage setResponseTopic(String responseTopic) {
+        this.responseTopic = responseTopic;
+        return this;
+    }
+
+    public byte[] getCorrelationData() {
+        return correlationData;
+    }
+
+    public MqttOutgoingMessage setCorrelationData(byte[] correlationData) {
+        this.correlationData = correlationData;
+        return this;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public MqttOutgoingMessage setContentType(String contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+}
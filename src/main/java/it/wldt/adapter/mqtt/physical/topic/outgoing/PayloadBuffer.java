@@ -0,0 +1,150 @@
+package it.wldt.adapter.mqtt.physical.topic.outgoing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer a MqttBytesPublishFunction writes the payload into. Buffers are pooled and reused across
+ * messages (see PayloadBufferPool), so they must not be retained after the function returns.
+ * */
+public class PayloadBuffer {
+
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private byte[] bytes;
+    private int size;
+
+    public PayloadBuffer(int initialCapacity) {
+        this.bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public PayloadBuffer write(byte b) {
+        ensureCapacity(1);
+        bytes[size++] = b;
+        return this;
+    }
+
+    public PayloadBuffer write(byte[] src) {
+        return write(src, 0, src.length);
+    }
+
+    public PayloadBuffer write(byte[] src, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(src, offset, bytes, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Writes the UTF-8 encoding of the given characters
+     * */
+    public PayloadBuffer writeUtf8(CharSequence value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for(int i = 0; i < length; i++){
+            char c = value.charAt(i);
+            if(c < 0x80){
+                if(size == bytes.length) ensureCapacity(length - i);
+                bytes[size++] = (byte) c;
+            } else if(c < 0x800){
+                ensureCapacity(2);
+                bytes[size++] = (byte) (0xC0 | (c >> 6));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))){
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensureCapacity(4);
+                bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if(Character.isSurrogate(c)){
+                //unpaired surrogate, replaced as String.getBytes(UTF_8) does
+                write((byte) '?');
+            } else {
+                ensureCapacity(3);
+                bytes[size++] = (byte) (0xE0 | (c >> 12));
+                bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes the decimal representation of value, as Long.toString would, without allocating
+     * */
+    public PayloadBuffer writeLong(long value) {
+        if(value == Long.MIN_VALUE) return writeUtf8("-9223372036854775808");
+        if(value < 0){
+            write((byte) '-');
+            value = -value;
+        }
+        int digits = 1;
+        for(long v = value; v >= 10; v /= 10) digits++;
+        ensureCapacity(digits);
+        for(int i = size + digits - 1; i >= size; i--){
+            bytes[i] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        }
+        size += digits;
+        return this;
+    }
+
+    /**
+     * Writes value rounded half-up to fractionDigits (at most 9) decimal places without allocating.
+     * Beyond 15 significant digits the last digit may differ from an exact decimal rounding.
+     * NaN, infinities and values beyond the long range are written with Double.toString.
+     * */
+    public PayloadBuffer writeDecimal(double value, int fractionDigits) {
+        if(fractionDigits < 0 || fractionDigits >= POWERS_OF_TEN.length)
+            throw new IllegalArgumentException("fractionDigits must be between 0 and 9");
+        long scale = POWERS_OF_TEN[fractionDigits];
+        if(Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) * scale >= Long.MAX_VALUE)
+            return writeUtf8(Double.toString(value));
+        long scaled = Math.round(Math.abs(value) * scale);
+        if(value < 0 && scaled != 0) write((byte) '-');
+        writeLong(scaled / scale);
+        if(fractionDigits == 0) return this;
+        write((byte) '.');
+        long fraction = scaled % scale;
+        ensureCapacity(fractionDigits);
+        for(int i = size + fractionDigits - 1; i >= size; i--){
+            bytes[i] = DIGITS[(int) (fraction % 10)];
+            fraction /= 10;
+        }
+        size += fractionDigits;
+        return this;
+    }
+
+    public PayloadBuffer writeBoolean(boolean value) {
+        return writeUtf8(value ? "true" : "false");
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return bytes.length;
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Copy of the written bytes: the MQTT client keeps the payload until the delivery completes,
+     * so it cannot be given the pooled array
+     * */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void ensureCapacity(int additional) {
+        if(size + additional > bytes.length)
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+    }
+}
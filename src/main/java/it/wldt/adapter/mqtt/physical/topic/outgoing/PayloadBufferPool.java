@@ -0,0 +1,52 @@
+package it.wldt.adapter.mqtt.physical.topic.outgoing;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free pool of PayloadBuffers shared by the publish paths. It works with platform and virtual threads alike,
+ * where a ThreadLocal would allocate a buffer per virtual thread. When the pool is empty a new buffer is created;
+ * buffers grown beyond maxRetainedCapacity are dropped instead of returned, so one large payload does not pin memory.
+ * */
+public class PayloadBufferPool {
+
+    private static final PayloadBufferPool SHARED = new PayloadBufferPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2), 256, 64 * 1024);
+
+    private final AtomicReferenceArray<PayloadBuffer> slots;
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+
+    public PayloadBufferPool(int size, int initialCapacity, int maxRetainedCapacity) {
+        this.slots = new AtomicReferenceArray<>(size);
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    public static PayloadBufferPool shared() {
+        return SHARED;
+    }
+
+    public PayloadBuffer acquire() {
+        //start from a thread dependent slot to limit contention
+        int start = (int) (Thread.currentThread().getId() % slots.length());
+        for(int i = 0; i < slots.length(); i++){
+            int slot = (start + i) % slots.length();
+            if(slots.get(slot) == null) continue;
+            PayloadBuffer buffer = slots.getAndSet(slot, null);
+            if(buffer != null){
+                buffer.reset();
+                return buffer;
+            }
+        }
+        return new PayloadBuffer(initialCapacity);
+    }
+
+    public void release(PayloadBuffer buffer) {
+        if(buffer.capacity() > maxRetainedCapacity) return;
+        int start = (int) (Thread.currentThread().getId() % slots.length());
+        for(int i = 0; i < slots.length(); i++){
+            int slot = (start + i) % slots.length();
+            if(slots.get(slot) == null && slots.compareAndSet(slot, null, buffer)) return;
+        }
+    }
+}
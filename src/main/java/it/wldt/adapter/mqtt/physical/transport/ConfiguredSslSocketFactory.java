@@ -0,0 +1,73 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * SSLSocketFactory applying the configured protocols and cipher suites to every socket it creates.
+ * All sockets come from the same SSLContext, hence share its client session cache.
+ * */
+class ConfiguredSslSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+
+    ConfiguredSslSocketFactory(SSLSocketFactory delegate, String[] protocols, String[] cipherSuites) {
+        this.delegate = delegate;
+        this.protocols = protocols;
+        this.cipherSuites = cipherSuites;
+    }
+
+    private Socket configure(Socket socket) {
+        if(socket instanceof SSLSocket){
+            SSLSocket sslSocket = (SSLSocket) socket;
+            if(protocols != null) sslSocket.setEnabledProtocols(protocols);
+            if(cipherSuites != null) sslSocket.setEnabledCipherSuites(cipherSuites);
+        }
+        return socket;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return cipherSuites != null ? cipherSuites.clone() : delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        return configure(delegate.createSocket(s, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+}
@@ -0,0 +1,8 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+public enum ConnectionState {
+    CONNECTING,
+    CONNECTED,
+    RECONNECTING,
+    DISCONNECTED
+}
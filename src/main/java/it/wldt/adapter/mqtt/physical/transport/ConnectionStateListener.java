@@ -0,0 +1,11 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+/**
+ * Notified on every change of the broker connection state. While the state is not CONNECTED the values
+ * of the physical asset are stale. Invoked on the connection supervisor thread, so implementations must not block.
+ * */
+@FunctionalInterface
+public interface ConnectionStateListener {
+
+    void onConnectionStateChanged(ConnectionState previous, ConnectionState current);
+}
@@ -0,0 +1,144 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+import it.wldt.adapter.mqtt.physical.exception.MqttTransportException;
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the connection to the broker: retries the first connect and reconnects after a connection loss
+ * with a ReconnectBackoff, publishing every state change to a ConnectionStateListener.
+ * Reconnects run on a dedicated thread, so a slow connect does not delay the other adapter tasks.
+ * Metrics: "connection.lost", "connection.attempts" and "connection.failed" counters,
+ * "connection.reconnect.time" histogram (from the loss to the next CONNACK) and "connection.connected" gauge.
+ * */
+public class ConnectionSupervisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionSupervisor.class);
+
+    @FunctionalInterface
+    public interface ConnectedCallback {
+
+        /**
+         * Invoked after every successful connect, before the state becomes CONNECTED.
+         * sessionPresent is the flag returned by the broker in the CONNACK.
+         * */
+        void onConnected(boolean sessionPresent, boolean reconnect);
+    }
+
+    private final MqttTransport transport;
+    private final ReconnectBackoff backoff;
+    private final boolean reconnectFlag;
+    private final MqttPhysicalAdapterMetrics metrics;
+    private final ConnectionStateListener stateListener;
+    private final ConnectedCallback connectedCallback;
+    private final ScheduledExecutorService executor;
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+
+    private volatile boolean running = false;
+    private volatile ConnectionState state = ConnectionState.DISCONNECTED;
+    private volatile long disconnectedAtNanos;
+
+    public ConnectionSupervisor(String id, MqttTransport transport, ReconnectBackoff backoff, boolean reconnectFlag,
+                                MqttPhysicalAdapterMetrics metrics, ConnectionStateListener stateListener,
+                                ConnectedCallback connectedCallback) {
+        this.transport = transport;
+        this.backoff = backoff;
+        this.reconnectFlag = reconnectFlag;
+        this.metrics = metrics;
+        this.stateListener = stateListener;
+        this.connectedCallback = connectedCallback;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mqtt-pa-connection-" + id);
+            t.setDaemon(true);
+            return t;
+        });
+        this.metrics.registerGauge("connection.connected", () -> state == ConnectionState.CONNECTED ? 1 : 0);
+        this.transport.setConnectionListener(this::onConnectionLost);
+    }
+
+    /**
+     * Connects to the broker, retrying with backoff until it succeeds or the supervisor is stopped.
+     * Returns false if no connection could be established (reconnect disabled or stopped).
+     * */
+    public boolean connect() {
+        running = true;
+        setState(ConnectionState.CONNECTING);
+        for(int attempt = 0; running; attempt++){
+            if(tryConnect(false)) return true;
+            if(!reconnectFlag) break;
+            try {
+                if(stopSignal.await(backoff.getDelayMs(attempt), TimeUnit.MILLISECONDS)) break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        setState(ConnectionState.DISCONNECTED);
+        return false;
+    }
+
+    public void stop() {
+        running = false;
+        stopSignal.countDown();
+        executor.shutdownNow();
+        setState(ConnectionState.DISCONNECTED);
+    }
+
+    public ConnectionState getState() {
+        return state;
+    }
+
+    private void onConnectionLost(Throwable cause) {
+        if(!running) return;
+        disconnectedAtNanos = System.nanoTime();
+        metrics.counter("connection.lost").increment();
+        logger.warn("MQTT Physical Adapter - connection to broker lost: {}", cause != null ? cause.getMessage() : null);
+        if(!reconnectFlag){
+            setState(ConnectionState.DISCONNECTED);
+            return;
+        }
+        setState(ConnectionState.RECONNECTING);
+        scheduleReconnect(0);
+    }
+
+    private void scheduleReconnect(int attempt) {
+        if(!running) return;
+        long delay = backoff.getDelayMs(attempt);
+        executor.schedule(() -> {
+            if(!running) return;
+            if(tryConnect(true)){
+                metrics.histogram("connection.reconnect.time").record(System.nanoTime() - disconnectedAtNanos);
+            } else {
+                scheduleReconnect(attempt + 1);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean tryConnect(boolean reconnect) {
+        metrics.counter("connection.attempts").increment();
+        try {
+            boolean sessionPresent = transport.connect();
+            logger.info("MQTT Physical Adapter - connected to broker - session present: {}", sessionPresent);
+            connectedCallback.onConnected(sessionPresent, reconnect);
+            setState(ConnectionState.CONNECTED);
+            return true;
+        } catch (MqttTransportException e) {
+            metrics.counter("connection.failed").increment();
+            logger.warn("MQTT Physical Adapter - connection attempt failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void setState(ConnectionState newState) {
+        ConnectionState previous = state;
+        if(previous == newState) return;
+        state = newState;
+        if(stateListener != null) stateListener.onConnectionStateChanged(previous, newState);
+    }
+}
@@ -0,0 +1,10 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+@FunctionalInterface
+public interface MqttConnectionListener {
+
+    /**
+     * Invoked by the client thread when the connection to the broker is lost unexpectedly
+     * */
+    void connectionLost(Throwable cause);
+}
@@ -0,0 +1,9 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+
+@FunctionalInterface
+public interface MqttIncomingMessageListener {
+
+    void messageArrived(String topic, MqttIncomingMessage message);
+}
@@ -0,0 +1,14 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+public enum MqttProtocolVersion {
+
+    MQTT_3_1_1,
+    MQTT_5;
+
+    public static MqttProtocolVersion fromString(String value) {
+        String v = value.trim();
+        if("5".equals(v) || "5.0".equals(v)) return MQTT_5;
+        if("3".equals(v) || "3.1.1".equals(v)) return MQTT_3_1_1;
+        return MqttProtocolVersion.valueOf(v.toUpperCase().replace('.', '_'));
+    }
+}
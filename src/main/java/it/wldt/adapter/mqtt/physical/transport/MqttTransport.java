@@ -0,0 +1,64 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+import it.wldt.adapter.mqtt.physical.exception.MqttTransportException;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import it.wldt.adapter.mqtt.physical.topic.outgoing.MqttOutgoingMessage;
+
+/**
+ * The MQTT client used by the adapter, hiding the differences between the Paho MQTT 3.1.1 and MQTT 5 clients.
+ * */
+public interface MqttTransport {
+
+    /**
+     * Granted QoS or reason code returned in a SUBACK for a rejected topic filter (every code from 0x80 up is a failure)
+     * */
+    int SUBSCRIBE_FAILURE = 0x80;
+
+    /**
+     * Connects to the broker and waits for the CONNACK, returning its session present flag
+     * */
+    boolean connect() throws MqttTransportException;
+
+    void setConnectionListener(MqttConnectionListener listener);
+
+    /**
+     * Receives the messages that no subscription listener handles, e.g. the QoS 1/2 messages queued in a persistent
+     * session, which the broker sends right after the CONNACK, before the topics are subscribed again
+     * */
+    void setDefaultMessageListener(MqttIncomingMessageListener listener);
+
+    /**
+     * Sends a SUBSCRIBE with all the given topic filters without waiting for the SUBACK. With sendRetained false the
+     * broker is asked not to send the retained messages (MQTT 5 retain handling 2): MQTT 3.1.1 has no such option,
+     * and a 3.1.1 broker sends them on every SUBSCRIBE.
+     * */
+    SubscribeToken subscribe(String[] topicFilters, int[] qos, MqttIncomingMessageListener[] listeners, boolean sendRetained) throws MqttTransportException;
+
+    void unsubscribe(String[] topicFilters, long timeoutMs) throws MqttTransportException;
+
+    /**
+     * Publishes without waiting for the delivery to complete
+     * */
+    void publish(MqttOutgoingMessage message) throws MqttTransportException;
+
+    /**
+     * QoS 1/2 publishes sent and not yet acknowledged by the broker
+     * */
+    int getInFlightCount();
+
+    void setManualAcks(boolean manualAcks);
+
+    void acknowledge(MqttIncomingMessage message) throws MqttTransportException;
+
+    void disconnect() throws MqttTransportException;
+
+    boolean isConnected();
+
+    interface SubscribeToken {
+
+        /**
+         * Waits for the SUBACK and returns one granted QoS (or reason code) per topic filter
+         * */
+        int[] waitForGrantedQos(long timeoutMs) throws MqttTransportException;
+    }
+}
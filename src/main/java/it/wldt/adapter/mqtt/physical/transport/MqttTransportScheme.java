@@ -0,0 +1,40 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+/**
+ * Network transport used to reach the broker, i.e. the scheme of the broker URI
+ * */
+public enum MqttTransportScheme {
+    TCP("tcp", false),
+    SSL("ssl", true),
+    WS("ws", false),
+    WSS("wss", true);
+
+    private final String scheme;
+    private final boolean secure;
+
+    MqttTransportScheme(String scheme, boolean secure) {
+        this.scheme = scheme;
+        this.secure = secure;
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+
+    public boolean isSecure() {
+        return secure;
+    }
+
+    public boolean isWebSocket() {
+        return this == WS || this == WSS;
+    }
+
+    public static MqttTransportScheme fromString(String value) {
+        String v = value.trim().toLowerCase();
+        if("tls".equals(v)) return SSL;
+        for (MqttTransportScheme s : values()) {
+            if(s.scheme.equals(v)) return s;
+        }
+        throw new IllegalArgumentException("Unknown transport scheme: " + value);
+    }
+}
@@ -0,0 +1,189 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+import it.wldt.adapter.mqtt.physical.MqttPhysicalAdapterConfiguration;
+import it.wldt.adapter.mqtt.physical.exception.MqttTransportException;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import it.wldt.adapter.mqtt.physical.topic.outgoing.MqttOutgoingMessage;
+import org.eclipse.paho.client.mqttv3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MqttTransport based on the Paho MQTT 3.1.1 async client
+ * */
+public class MqttV3Transport implements MqttTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttV3Transport.class);
+
+    private final MqttPhysicalAdapterConfiguration configuration;
+    private final IMqttAsyncClient mqttClient;
+    private volatile MqttConnectionListener connectionListener;
+    private volatile MqttIncomingMessageListener defaultMessageListener;
+    private final Set<Object> inFlight = ConcurrentHashMap.newKeySet();
+
+    public MqttV3Transport(MqttPhysicalAdapterConfiguration configuration) throws MqttException {
+        this.configuration = configuration;
+        this.mqttClient = new MqttAsyncClient(configuration.getBrokerConnectionString(),
+                configuration.getClientId(),
+                configuration.getPersistence());
+        this.mqttClient.setCallback(new MqttCallback() {
+            @Override
+            public void connectionLost(Throwable cause) {
+                MqttConnectionListener listener = connectionListener;
+                if(listener != null) listener.connectionLost(cause);
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                MqttIncomingMessageListener listener = defaultMessageListener;
+                if(listener != null) listener.messageArrived(topic, toIncomingMessage(topic, message));
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
+    }
+
+    @Override
+    public boolean connect() throws MqttTransportException {
+        try {
+            IMqttToken token = mqttClient.connect(configuration.getConnectOptions());
+            token.waitForCompletion();
+            //without a session the broker will never acknowledge the previous publishes
+            if(!token.getSessionPresent()) inFlight.clear();
+            return token.getSessionPresent();
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public void setConnectionListener(MqttConnectionListener listener) {
+        this.connectionListener = listener;
+    }
+
+    @Override
+    public void setDefaultMessageListener(MqttIncomingMessageListener listener) {
+        this.defaultMessageListener = listener;
+    }
+
+    @Override
+    public SubscribeToken subscribe(String[] topicFilters, int[] qos, MqttIncomingMessageListener[] listeners, boolean sendRetained) throws MqttTransportException {
+        IMqttMessageListener[] mqttListeners = new IMqttMessageListener[listeners.length];
+        for(int i = 0; i < listeners.length; i++){
+            MqttIncomingMessageListener listener = listeners[i];
+            mqttListeners[i] = (topic, msg) -> listener.messageArrived(topic, toIncomingMessage(topic, msg));
+        }
+        try {
+            IMqttToken token = mqttClient.subscribe(topicFilters, qos, null, null, mqttListeners);
+            return timeoutMs -> {
+                try {
+                    token.waitForCompletion(timeoutMs);
+                    return token.getGrantedQos();
+                } catch (MqttException e) {
+                    throw new MqttTransportException(e);
+                }
+            };
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String[] topicFilters, long timeoutMs) throws MqttTransportException {
+        try {
+            mqttClient.unsubscribe(topicFilters).waitForCompletion(timeoutMs);
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public void publish(MqttOutgoingMessage message) throws MqttTransportException {
+        MqttMessage msg = new MqttMessage(message.getPayload());
+        msg.setQos(message.getQos());
+        msg.setRetained(message.isRetained());
+        try {
+            if(message.getQos() == 0){
+                mqttClient.publish(message.getTopic(), msg, null, new IMqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken asyncActionToken) {
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                        logDeliveryFailure(message.getTopic(), exception);
+                    }
+                });
+                return;
+            }
+            Object delivery = new Object();
+            inFlight.add(delivery);
+            try {
+                mqttClient.publish(message.getTopic(), msg, null, new IMqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken asyncActionToken) {
+                        inFlight.remove(delivery);
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                        inFlight.remove(delivery);
+                        logDeliveryFailure(message.getTopic(), exception);
+                    }
+                });
+            } catch (MqttException e) {
+                inFlight.remove(delivery);
+                throw e;
+            }
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    private void logDeliveryFailure(String topic, Throwable exception) {
+        logger.error("MQTT Physical Adapter - delivery on topic: {} failed: {}", topic,
+                exception != null ? exception.getMessage() : null);
+    }
+
+    @Override
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void setManualAcks(boolean manualAcks) {
+        mqttClient.setManualAcks(manualAcks);
+    }
+
+    @Override
+    public void acknowledge(MqttIncomingMessage message) throws MqttTransportException {
+        try {
+            mqttClient.messageArrivedComplete(message.getId(), message.getQos());
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public void disconnect() throws MqttTransportException {
+        try {
+            mqttClient.disconnect();
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mqttClient.isConnected();
+    }
+
+    private static MqttIncomingMessage toIncomingMessage(String topic, MqttMessage msg) {
+        return new MqttIncomingMessage(topic, msg.getPayload(), msg.getQos(), msg.isRetained(), msg.getId());
+    }
+}
@@ -0,0 +1,253 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+import it.wldt.adapter.mqtt.physical.MqttPhysicalAdapterConfiguration;
+import it.wldt.adapter.mqtt.physical.exception.MqttTransportException;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import it.wldt.adapter.mqtt.physical.topic.outgoing.MqttOutgoingMessage;
+import org.eclipse.paho.mqttv5.client.IMqttMessageListener;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MqttTransport based on the Paho MQTT 5 async client.
+ * Paho assigns topic aliases to outgoing publishes by itself, up to the Topic Alias Maximum announced by the broker
+ * in the CONNACK: the adapter publishes only on action topics, so after the first publish each action topic name
+ * is replaced by a two bytes alias.
+ * */
+public class MqttV5Transport implements MqttTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttV5Transport.class);
+    //MQTT 5 subscription option: do not send the retained messages when subscribing
+    private static final int DO_NOT_SEND_RETAINED = 2;
+
+    private final MqttPhysicalAdapterConfiguration configuration;
+    private final MqttAsyncClient mqttClient;
+    private volatile MqttConnectionListener connectionListener;
+    private volatile MqttIncomingMessageListener defaultMessageListener;
+    private final Set<Object> inFlight = ConcurrentHashMap.newKeySet();
+
+    public MqttV5Transport(MqttPhysicalAdapterConfiguration configuration) throws MqttTransportException {
+        this.configuration = configuration;
+        try {
+            this.mqttClient = new MqttAsyncClient(configuration.getBrokerConnectionString(),
+                    configuration.getClientId(),
+                    configuration.getMqttV5Persistence());
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+        this.mqttClient.setCallback(new MqttCallback() {
+            @Override
+            public void disconnected(MqttDisconnectResponse disconnectResponse) {
+                MqttConnectionListener listener = connectionListener;
+                if(listener != null) listener.connectionLost(disconnectResponse.getException());
+            }
+
+            @Override
+            public void mqttErrorOccurred(MqttException exception) {
+                logger.error("MQTT Physical Adapter - MQTT 5 client error: {}", exception.getMessage());
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                MqttIncomingMessageListener listener = defaultMessageListener;
+                if(listener != null) listener.messageArrived(topic, toIncomingMessage(topic, message));
+            }
+
+            @Override
+            public void deliveryComplete(IMqttToken token) {
+            }
+
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+            }
+
+            @Override
+            public void authPacketArrived(int reasonCode, MqttProperties properties) {
+            }
+        });
+    }
+
+    @Override
+    public boolean connect() throws MqttTransportException {
+        try {
+            IMqttToken token = mqttClient.connect(configuration.getMqtt5ConnectionOptions());
+            token.waitForCompletion();
+            MqttProperties connack = token.getResponseProperties();
+            logger.info("MQTT Physical Adapter - MQTT 5 broker topic alias maximum: {}",
+                    connack != null ? connack.getTopicAliasMaximum() : null);
+            //without a session the broker will never acknowledge the previous publishes
+            if(!token.getSessionPresent()) inFlight.clear();
+            return token.getSessionPresent();
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public void setConnectionListener(MqttConnectionListener listener) {
+        this.connectionListener = listener;
+    }
+
+    @Override
+    public void setDefaultMessageListener(MqttIncomingMessageListener listener) {
+        this.defaultMessageListener = listener;
+    }
+
+    @Override
+    public SubscribeToken subscribe(String[] topicFilters, int[] qos, MqttIncomingMessageListener[] listeners, boolean sendRetained) throws MqttTransportException {
+        MqttSubscription[] subscriptions = new MqttSubscription[topicFilters.length];
+        IMqttMessageListener[] mqttListeners = new IMqttMessageListener[listeners.length];
+        for(int i = 0; i < topicFilters.length; i++){
+            subscriptions[i] = new MqttSubscription(topicFilters[i], qos[i]);
+            if(!sendRetained) subscriptions[i].setRetainHandling(DO_NOT_SEND_RETAINED);
+            MqttIncomingMessageListener listener = listeners[i];
+            mqttListeners[i] = (topic, msg) -> listener.messageArrived(topic, toIncomingMessage(topic, msg));
+        }
+        try {
+            IMqttToken token = mqttClient.subscribe(subscriptions, null, null, mqttListeners, new MqttProperties());
+            return timeoutMs -> {
+                try {
+                    token.waitForCompletion(timeoutMs);
+                    return token.getReasonCodes();
+                } catch (MqttException e) {
+                    throw new MqttTransportException(e);
+                }
+            };
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String[] topicFilters, long timeoutMs) throws MqttTransportException {
+        try {
+            mqttClient.unsubscribe(topicFilters).waitForCompletion(timeoutMs);
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public void publish(MqttOutgoingMessage message) throws MqttTransportException {
+        MqttProperties properties = new MqttProperties();
+        if(message.getMessageExpiryInterval() != null) properties.setMessageExpiryInterval(message.getMessageExpiryInterval());
+        if(message.getResponseTopic() != null) properties.setResponseTopic(message.getResponseTopic());
+        if(message.getCorrelationData() != null) properties.setCorrelationData(message.getCorrelationData());
+        if(message.getContentType() != null) properties.setContentType(message.getContentType());
+        MqttMessage msg = new MqttMessage(message.getPayload(), message.getQos(), message.isRetained(), properties);
+        try {
+            if(message.getQos() == 0){
+                mqttClient.publish(message.getTopic(), msg, null, new MqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken asyncActionToken) {
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                        logDeliveryFailure(message.getTopic(), exception);
+                    }
+                });
+                return;
+            }
+            //Paho MQTT 5 only limits publishes to the broker Receive Maximum: the publish window is enforced here
+            if(inFlight.size() >= configuration.getPublishWindow())
+                throw new MqttTransportException("Too many publishes in progress: publish window of "
+                        + configuration.getPublishWindow() + " reached");
+            Object delivery = new Object();
+            inFlight.add(delivery);
+            try {
+                mqttClient.publish(message.getTopic(), msg, null, new MqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken asyncActionToken) {
+                        inFlight.remove(delivery);
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                        inFlight.remove(delivery);
+                        logDeliveryFailure(message.getTopic(), exception);
+                    }
+                });
+            } catch (MqttException e) {
+                inFlight.remove(delivery);
+                throw e;
+            }
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    private void logDeliveryFailure(String topic, Throwable exception) {
+        logger.error("MQTT Physical Adapter - delivery on topic: {} failed: {}", topic,
+                exception != null ? exception.getMessage() : null);
+    }
+
+    @Override
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void setManualAcks(boolean manualAcks) {
+        mqttClient.setManualAcks(manualAcks);
+    }
+
+    @Override
+    public void acknowledge(MqttIncomingMessage message) throws MqttTransportException {
+        try {
+            mqttClient.messageArrivedComplete(message.getId(), message.getQos());
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public void disconnect() throws MqttTransportException {
+        try {
+            mqttClient.disconnect();
+        } catch (MqttException e) {
+            throw new MqttTransportException(e);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mqttClient.isConnected();
+    }
+
+    private static MqttIncomingMessage toIncomingMessage(String topic, MqttMessage msg) {
+        MqttProperties properties = msg.getProperties();
+        if(properties == null)
+            return new MqttIncomingMessage(topic, msg.getPayload(), msg.getQos(), msg.isRetained(), msg.getId());
+        return new MqttIncomingMessage(topic, msg.getPayload(), msg.getQos(), msg.isRetained(), msg.getId(),
+                properties.getContentType(),
+                toMap(properties.getUserProperties()),
+                properties.getResponseTopic(),
+                properties.getCorrelationData());
+    }
+
+    private static Map<String, String> toMap(List<UserProperty> userProperties) {
+        if(userProperties == null || userProperties.isEmpty()) return Collections.emptyMap();
+        Map<String, String> map = new LinkedHashMap<>();
+        //MQTT 5 allows repeated keys: the last value wins
+        userProperties.forEach(p -> map.put(p.getKey(), p.getValue()));
+        return map;
+    }
+}
@@ -0,0 +1,53 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter: the n-th retry waits min(maxDelay, initialDelay * multiplier^n), reduced by a
+ * random fraction of at most jitter. The jitter spreads the reconnects of a fleet of adapters after a broker failover.
+ * */
+public class ReconnectBackoff {
+
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final double multiplier;
+    private final double jitter;
+
+    public ReconnectBackoff(long initialDelayMs, long maxDelayMs, double multiplier, double jitter) {
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    public long getDelayMs(int attempt) {
+        double delay = Math.min((double) maxDelayMs, initialDelayMs * Math.pow(multiplier, attempt));
+        return (long) (delay - delay * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    public long getInitialDelayMs() {
+        return initialDelayMs;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    @Override
+    public String toString() {
+        return "ReconnectBackoff{" +
+                "initialDelayMs=" + initialDelayMs +
+                ", maxDelayMs=" + maxDelayMs +
+                ", multiplier=" + multiplier +
+                ", jitter=" + jitter +
+                '}';
+    }
+}
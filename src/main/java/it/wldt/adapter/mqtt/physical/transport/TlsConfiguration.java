@@ -0,0 +1,171 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+import javax.net.ssl.*;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Key material and TLS parameters of the ssl:// and wss:// transports.
+ * The SSLSocketFactory is built once per distinct configuration and shared by every connection using it:
+ * reusing the SSLContext keeps its client session cache, so reconnects resume the TLS session
+ * instead of running a full handshake.
+ * */
+public class TlsConfiguration {
+
+    private static final Map<TlsConfiguration, SSLSocketFactory> SOCKET_FACTORIES = new ConcurrentHashMap<>();
+
+    private String keyStorePath;
+    private String keyStorePassword;
+    private String keyStoreType = "PKCS12";
+    private String trustStorePath;
+    private String trustStorePassword;
+    private String trustStoreType = "PKCS12";
+    private List<String> protocols = Collections.emptyList();
+    private List<String> cipherSuites = Collections.emptyList();
+    private boolean hostnameVerificationFlag = true;
+
+    public TlsConfiguration setKeyStore(String path, String password, String type) {
+        this.keyStorePath = path;
+        this.keyStorePassword = password;
+        if(type != null) this.keyStoreType = type;
+        return this;
+    }
+
+    public TlsConfiguration setTrustStore(String path, String password, String type) {
+        this.trustStorePath = path;
+        this.trustStorePassword = password;
+        if(type != null) this.trustStoreType = type;
+        return this;
+    }
+
+    public TlsConfiguration setProtocols(List<String> protocols) {
+        this.protocols = protocols == null ? Collections.<String>emptyList() : new ArrayList<>(protocols);
+        return this;
+    }
+
+    public TlsConfiguration setCipherSuites(List<String> cipherSuites) {
+        this.cipherSuites = cipherSuites == null ? Collections.<String>emptyList() : new ArrayList<>(cipherSuites);
+        return this;
+    }
+
+    public TlsConfiguration setHostnameVerificationFlag(boolean hostnameVerification) {
+        this.hostnameVerificationFlag = hostnameVerification;
+        return this;
+    }
+
+    public String getKeyStorePath() {
+        return keyStorePath;
+    }
+
+    public String getTrustStorePath() {
+        return trustStorePath;
+    }
+
+    public List<String> getProtocols() {
+        return Collections.unmodifiableList(protocols);
+    }
+
+    public List<String> getCipherSuites() {
+        return Collections.unmodifiableList(cipherSuites);
+    }
+
+    public boolean isHostnameVerificationEnabled() {
+        return hostnameVerificationFlag;
+    }
+
+    /**
+     * Returns the shared SSLSocketFactory of this configuration, loading the key and trust stores on first use.
+     * Later changes to the store files are not picked up.
+     * */
+    public SSLSocketFactory getSocketFactory() throws IOException, GeneralSecurityException {
+        SSLSocketFactory factory = SOCKET_FACTORIES.get(this);
+        if(factory != null) return factory;
+        synchronized (SOCKET_FACTORIES) {
+            factory = SOCKET_FACTORIES.get(this);
+            if(factory == null){
+                factory = createSocketFactory();
+                //copy: later changes to this instance must not alter the cache key
+                SOCKET_FACTORIES.put(copy(), factory);
+            }
+            return factory;
+        }
+    }
+
+    private SSLSocketFactory createSocketFactory() throws IOException, GeneralSecurityException {
+        KeyManager[] keyManagers = null;
+        if(keyStorePath != null){
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(loadKeyStore(keyStorePath, keyStorePassword, keyStoreType), toChars(keyStorePassword));
+            keyManagers = kmf.getKeyManagers();
+        }
+        TrustManager[] trustManagers = null;
+        if(trustStorePath != null){
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(loadKeyStore(trustStorePath, trustStorePassword, trustStoreType));
+            trustManagers = tmf.getTrustManagers();
+        }
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers, trustManagers, null);
+        return new ConfiguredSslSocketFactory(context.getSocketFactory(),
+                protocols.isEmpty() ? null : protocols.toArray(new String[0]),
+                cipherSuites.isEmpty() ? null : cipherSuites.toArray(new String[0]));
+    }
+
+    private static KeyStore loadKeyStore(String path, String password, String type) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(type);
+        try (InputStream in = new FileInputStream(path)) {
+            keyStore.load(in, toChars(password));
+        }
+        return keyStore;
+    }
+
+    private static char[] toChars(String password) {
+        return password == null ? null : password.toCharArray();
+    }
+
+    private TlsConfiguration copy() {
+        return new TlsConfiguration()
+                .setKeyStore(keyStorePath, keyStorePassword, keyStoreType)
+                .setTrustStore(trustStorePath, trustStorePassword, trustStoreType)
+                .setProtocols(protocols)
+                .setCipherSuites(cipherSuites)
+                .setHostnameVerificationFlag(hostnameVerificationFlag);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TlsConfiguration that = (TlsConfiguration) o;
+        return hostnameVerificationFlag == that.hostnameVerificationFlag
+                && Objects.equals(keyStorePath, that.keyStorePath)
+                && Objects.equals(keyStorePassword, that.keyStorePassword)
+                && Objects.equals(keyStoreType, that.keyStoreType)
+                && Objects.equals(trustStorePath, that.trustStorePath)
+                && Objects.equals(trustStorePassword, that.trustStorePassword)
+                && Objects.equals(trustStoreType, that.trustStoreType)
+                && protocols.equals(that.protocols)
+                && cipherSuites.equals(that.cipherSuites);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keyStorePath, keyStoreType, trustStorePath, trustStoreType, protocols, cipherSuites, hostnameVerificationFlag);
+    }
+
+    @Override
+    public String toString() {
+        return "TlsConfiguration{" +
+                "keyStorePath='" + keyStorePath + '\'' +
+                ", trustStorePath='" + trustStorePath + '\'' +
+                ", protocols=" + protocols +
+                ", cipherSuites=" + cipherSuites +
+                ", hostnameVerification=" + hostnameVerificationFlag +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package it.wldt.adapter.mqtt.physical.transport;
+
+/**
+ * MQTT topic filter matching, as done by the broker: + matches one level, # the remaining levels (including none),
+ * and wildcards at the first level do not match topics starting with $
+ * */
+public final class TopicFilters {
+
+    private TopicFilters() {
+    }
+
+    public static boolean matches(String topicFilter, String topic) {
+        if(topicFilter.equals(topic)) return true;
+        if(!topicFilter.startsWith("$") && topic.startsWith("$")) return false;
+        int f = 0;
+        int t = 0;
+        int filterLength = topicFilter.length();
+        int topicLength = topic.length();
+        while (f < filterLength) {
+            char c = topicFilter.charAt(f);
+            if(c == '#') return true;
+            if(c == '+'){
+                while (t < topicLength && topic.charAt(t) != '/') t++;
+                f++;
+            }
+            else {
+                if(t >= topicLength || topic.charAt(t) != c) {
+                    //"a/#" also matches "a"
+                    return t == topicLength && topicFilter.startsWith("/#", f);
+                }
+                f++;
+                t++;
+            }
+        }
+        return t == topicLength;
+    }
+}
@@ -0,0 +1,25 @@
+package it.wldt.adapter.mqtt.physical.execution;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors running one task per message. This is the Java 21 version, packaged in META-INF/versions/21:
+ * every task gets its own virtual thread, so blocking subscribe and publish functions do not exhaust platform threads.
+ * */
+public final class MessageExecutors {
+
+    private MessageExecutors() {
+    }
+
+    public static boolean isVirtualThreadAvailable() {
+        return true;
+    }
+
+    /**
+     * Returns an executor with one virtual thread per task named name-N. maxThreads is ignored with virtual threads.
+     * */
+    public static ExecutorService newPerMessageExecutor(String name, int maxThreads) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}
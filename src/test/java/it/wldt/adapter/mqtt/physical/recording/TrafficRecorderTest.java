@@ -0,0 +1,72 @@
+package it.wldt.adapter.mqtt.physical.recording;
+
+import it.wldt.adapter.mqtt.physical.metrics.MqttPhysicalAdapterMetrics;
+import it.wldt.adapter.mqtt.physical.topic.incoming.MqttIncomingMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrafficRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordingIsReadBackInOrder() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, 1024, new MqttPhysicalAdapterMetrics())) {
+            recorder.append(message("sensors/a", "1"));
+            recorder.append(message("sensors/b", "2"));
+        }
+        List<RecordedMessage> messages = readAll(directory);
+        assertEquals(2, messages.size());
+        assertEquals("sensors/a", messages.get(0).getTopic());
+        assertEquals("2", new String(messages.get(1).getPayload(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void restartContinuesAfterTheLastSegment() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, 1024, new MqttPhysicalAdapterMetrics())) {
+            recorder.append(message("sensors/a", "first run"));
+        }
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, 1024, new MqttPhysicalAdapterMetrics())) {
+            recorder.append(message("sensors/a", "second run"));
+        }
+        TrafficRecording recording = new TrafficRecording(directory);
+        assertEquals(2, recording.getSegments().size());
+        assertEquals(TrafficRecorder.segmentFileName(1), recording.getSegments().get(1).getFileName().toString());
+        List<RecordedMessage> messages = readAll(directory);
+        assertEquals("first run", new String(messages.get(0).getPayload(), StandardCharsets.UTF_8));
+        assertEquals("second run", new String(messages.get(1).getPayload(), StandardCharsets.UTF_8));
+        assertTrue(messages.get(1).getOffsetNanos() >= messages.get(0).getOffsetNanos());
+    }
+
+    @Test
+    public void fullSegmentRollsOverToTheNextOne() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, 64, new MqttPhysicalAdapterMetrics())) {
+            for(int i = 0; i < 5; i++) recorder.append(message("t", "payload-" + i));
+        }
+        assertTrue(new TrafficRecording(directory).getSegments().size() > 1);
+        assertEquals(5, readAll(directory).size());
+    }
+
+    private static MqttIncomingMessage message(String topic, String payload) {
+        return new MqttIncomingMessage(topic, payload.getBytes(StandardCharsets.UTF_8), 1, false, 0);
+    }
+
+    private static List<RecordedMessage> readAll(Path directory) throws IOException {
+        List<RecordedMessage> messages = new ArrayList<>();
+        new TrafficRecording(directory).forEach(messages::add);
+        return messages;
+    }
+}
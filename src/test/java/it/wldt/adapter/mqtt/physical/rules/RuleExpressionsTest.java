@@ -0,0 +1,94 @@
+package it.wldt.adapter.mqtt.physical.rules;
+
+import org.junit.Test;
+
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.Assert.*;
+
+public class RuleExpressionsTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void arithmeticFollowsOperatorPrecedence() {
+        DoubleUnaryOperator fahrenheit = RuleExpressions.compileValue("value * 1.8 + 32");
+        assertEquals(212.0, fahrenheit.applyAsDouble(100), DELTA);
+        assertEquals(14.0, RuleExpressions.compileValue("2 + 3 * 4").applyAsDouble(0), DELTA);
+        assertEquals(20.0, RuleExpressions.compileValue("(2 + 3) * 4").applyAsDouble(0), DELTA);
+        assertEquals(1.0, RuleExpressions.compileValue("7 % 3").applyAsDouble(0), DELTA);
+        assertEquals(-5.0, RuleExpressions.compileValue("--value - 10").applyAsDouble(5), DELTA);
+        assertEquals(1500.0, RuleExpressions.compileValue("value * 1.5e3").applyAsDouble(1), DELTA);
+    }
+
+    @Test
+    public void functionsTakeTheirArity() {
+        assertEquals(3.0, RuleExpressions.compileValue("max(value, 3)").applyAsDouble(-1), DELTA);
+        assertEquals(1024.0, RuleExpressions.compileValue("pow(2, value)").applyAsDouble(10), DELTA);
+        assertEquals(2.0, RuleExpressions.compileValue("round(abs(value))").applyAsDouble(-2.4), DELTA);
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue("min(value)"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue("sqrt(value, 2)"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue("cube(value)"));
+    }
+
+    @Test
+    public void constantSubexpressionsAreFolded() {
+        //folded expressions give the same result whatever the property value
+        DoubleUnaryOperator constant = RuleExpressions.compileValue("pow(2, 3) + sqrt(16) * -1");
+        assertEquals(4.0, constant.applyAsDouble(0), DELTA);
+        assertEquals(4.0, constant.applyAsDouble(1000), DELTA);
+        DoubleUnaryOperator mixed = RuleExpressions.compileValue("value + (60 * 60 * 24)");
+        assertEquals(86401.0, mixed.applyAsDouble(1), DELTA);
+        DoublePredicate alwaysTrue = RuleExpressions.compileCondition("1 < 2 || value > 0");
+        assertTrue(alwaysTrue.test(-5));
+        DoublePredicate folded = RuleExpressions.compileCondition("!(2 > 1) or value >= 10");
+        assertFalse(folded.test(9));
+        assertTrue(folded.test(10));
+    }
+
+    @Test
+    public void notIsToldApartFromNotEquals() {
+        DoublePredicate notEquals = RuleExpressions.compileCondition("value != 3");
+        assertTrue(notEquals.test(2));
+        assertFalse(notEquals.test(3));
+        DoublePredicate negated = RuleExpressions.compileCondition("!(value > 3)");
+        assertTrue(negated.test(3));
+        assertFalse(negated.test(4));
+        DoublePredicate both = RuleExpressions.compileCondition("value != 0 && !false && not value == 5");
+        assertTrue(both.test(1));
+        assertFalse(both.test(0));
+        assertFalse(both.test(5));
+        assertTrue(RuleExpressions.compileCondition("!!true").test(0));
+        //a number used as a condition is true when non zero
+        assertTrue(RuleExpressions.compileCondition("!value").test(0));
+    }
+
+    @Test
+    public void wordOperatorsNeedAWordBoundary() {
+        DoublePredicate condition = RuleExpressions.compileCondition("value > 1 and value < 5 or value == 10");
+        assertTrue(condition.test(3));
+        assertTrue(condition.test(10));
+        assertFalse(condition.test(7));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileCondition("value > 1 andvalue < 5"));
+    }
+
+    @Test
+    public void conditionsAndNumbersAreNotInterchangeableAtTopLevel() {
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue("value > 3"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileCondition("value + 3"));
+    }
+
+    @Test
+    public void malformedExpressionsAreRejectedWithThePosition() {
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue(""));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue(null));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileCondition("value >"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue("(value + 1"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue("value 3"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpressions.compileValue("1..2"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> RuleExpressions.compileValue("value * $"));
+        assertTrue(e.getMessage(), e.getMessage().contains("at 8"));
+    }
+}
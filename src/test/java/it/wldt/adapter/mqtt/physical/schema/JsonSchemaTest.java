@@ -0,0 +1,168 @@
+package it.wldt.adapter.mqtt.physical.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class JsonSchemaTest {
+
+    @Test
+    public void acceptsValidPayloadAndBuildsTree() throws SchemaViolationException {
+        JsonSchema schema = JsonSchema.compile("{\"type\":\"object\",\"properties\":{\"t\":{\"type\":\"number\"},"
+                + "\"id\":{\"type\":\"string\"}},\"required\":[\"t\"]}");
+        JsonNode value = schema.read(bytes("{\"t\":21.5,\"id\":\"s1\",\"extra\":[1,2]}"));
+        assertEquals(21.5, value.get("t").doubleValue(), 0.0);
+        assertEquals("s1", value.get("id").textValue());
+        assertEquals(2, value.get("extra").size());
+    }
+
+    @Test
+    public void reportsPathAndReason() {
+        JsonSchema schema = JsonSchema.compile("{\"properties\":{\"readings\":{\"items\":{\"type\":\"integer\"}}}}");
+        SchemaViolationException e = assertThrows(SchemaViolationException.class,
+                () -> schema.validate(bytes("{\"readings\":[1,2,\"x\"]}")));
+        assertEquals("$.readings[2]", e.getPath());
+        assertEquals("unexpected string", e.getReason());
+    }
+
+    @Test
+    public void rejectsMissingRequiredAndAdditionalProperties() {
+        JsonSchema schema = JsonSchema.compile("{\"properties\":{\"a\":{}},\"required\":[\"a\"],\"additionalProperties\":false}");
+        assertRejected(schema, "{}");
+        assertRejected(schema, "{\"a\":1,\"b\":2}");
+        assertAccepted(schema, "{\"a\":1}");
+    }
+
+    @Test
+    public void rejectsMalformedAndTrailingContent() {
+        JsonSchema schema = JsonSchema.compile("{}");
+        assertRejected(schema, "");
+        assertRejected(schema, "{\"a\":");
+        assertRejected(schema, "{} {}");
+    }
+
+    @Test
+    public void inclusiveBounds() {
+        JsonSchema schema = JsonSchema.compile("{\"minimum\":10,\"maximum\":20}");
+        assertAccepted(schema, "10");
+        assertAccepted(schema, "20");
+        assertRejected(schema, "9.99");
+        assertRejected(schema, "20.01");
+    }
+
+    @Test
+    public void numericExclusiveBounds() {
+        JsonSchema schema = JsonSchema.compile("{\"exclusiveMinimum\":10,\"exclusiveMaximum\":20}");
+        assertRejected(schema, "10");
+        assertAccepted(schema, "10.5");
+        assertRejected(schema, "20");
+    }
+
+    @Test
+    public void numericExclusiveBoundCombinedWithInclusiveOne() {
+        JsonSchema schema = JsonSchema.compile("{\"minimum\":10,\"exclusiveMinimum\":5}");
+        assertRejected(schema, "7");
+        assertAccepted(schema, "10");
+        schema = JsonSchema.compile("{\"minimum\":5,\"exclusiveMinimum\":10}");
+        assertRejected(schema, "10");
+        assertAccepted(schema, "11");
+    }
+
+    @Test
+    public void draft4BooleanExclusiveBounds() {
+        JsonSchema schema = JsonSchema.compile("{\"minimum\":10,\"exclusiveMinimum\":true,\"maximum\":20,\"exclusiveMaximum\":true}");
+        assertRejected(schema, "5");
+        assertRejected(schema, "10");
+        assertAccepted(schema, "15");
+        assertRejected(schema, "20");
+        schema = JsonSchema.compile("{\"minimum\":10,\"exclusiveMinimum\":false}");
+        assertAccepted(schema, "10");
+        assertRejected(schema, "1");
+    }
+
+    @Test
+    public void booleanExclusiveBoundWithoutInclusiveOneIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> JsonSchema.compile("{\"exclusiveMinimum\":true}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonSchema.compile("{\"exclusiveMaximum\":\"5\"}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonSchema.compile("{\"minimum\":\"5\"}"));
+    }
+
+    @Test
+    public void numericEnumValuesCompareByValue() {
+        JsonSchema schema = JsonSchema.compile("{\"enum\":[1, 2.50, 0]}");
+        assertAccepted(schema, "1");
+        assertAccepted(schema, "1.0");
+        assertAccepted(schema, "2.5");
+        assertAccepted(schema, "0.0");
+        assertRejected(schema, "3");
+        assertRejected(schema, "\"1\"");
+    }
+
+    @Test
+    public void scalarEnumValues() {
+        JsonSchema schema = JsonSchema.compile("{\"enum\":[\"on\",\"off\",true,null]}");
+        assertAccepted(schema, "\"on\"");
+        assertAccepted(schema, "true");
+        assertAccepted(schema, "null");
+        assertRejected(schema, "false");
+        assertThrows(IllegalArgumentException.class, () -> JsonSchema.compile("{\"enum\":[[1]]}"));
+    }
+
+    @Test
+    public void stringConstraints() {
+        JsonSchema schema = JsonSchema.compile("{\"type\":\"string\",\"minLength\":2,\"maxLength\":3,\"pattern\":\"^[a-z]+$\"}");
+        assertAccepted(schema, "\"ab\"");
+        assertRejected(schema, "\"a\"");
+        assertRejected(schema, "\"abcd\"");
+        assertRejected(schema, "\"AB\"");
+    }
+
+    @Test
+    public void arraySizeConstraints() {
+        JsonSchema schema = JsonSchema.compile("{\"type\":\"array\",\"minItems\":1,\"maxItems\":2}");
+        assertRejected(schema, "[]");
+        assertAccepted(schema, "[1,2]");
+        assertRejected(schema, "[1,2,3]");
+    }
+
+    @Test
+    public void integerTypeRejectsFloats() {
+        JsonSchema schema = JsonSchema.compile("{\"type\":\"integer\"}");
+        assertAccepted(schema, "123456789012345678901234567890");
+        assertRejected(schema, "1.5");
+    }
+
+    @Test
+    public void unsupportedKeywordsAndTypesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> JsonSchema.compile("{\"oneOf\":[]}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonSchema.compile("{\"type\":\"date\"}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonSchema.compile("{\"pattern\":\"[\"}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonSchema.compile("not json"));
+    }
+
+    @Test
+    public void propertyNames() {
+        JsonSchema schema = JsonSchema.compile("{\"properties\":{\"a\":{},\"b\":{}}}");
+        assertEquals(2, schema.getPropertyNames().size());
+        assertTrue(schema.getPropertyNames().contains("b"));
+    }
+
+    private static void assertAccepted(JsonSchema schema, String payload) {
+        try {
+            schema.validate(bytes(payload));
+        } catch (SchemaViolationException e) {
+            fail(payload + " rejected: " + e.getMessage());
+        }
+    }
+
+    private static void assertRejected(JsonSchema schema, String payload) {
+        assertThrows(payload, SchemaViolationException.class, () -> schema.validate(bytes(payload)));
+    }
+
+    private static byte[] bytes(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,159 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ProtobufReaderTest {
+
+    private final ProtobufReader reader = new ProtobufReader();
+
+    @Test
+    public void fieldsWrittenByTheWriterAreReadBack() {
+        byte[] bytes = new ProtobufWriter()
+                .writeVarintField(1, 300)
+                .writeVarintField(2, -1)
+                .writeFixed32Field(3, 0xCAFEBABE)
+                .writeFixed64Field(4, Double.doubleToLongBits(21.5))
+                .writeStringField(5, "temperature")
+                .toByteArray();
+        reader.reset(bytes);
+        assertEquals(1 << 3 | ProtobufReader.VARINT, reader.readTag());
+        assertEquals(300, reader.readVarint());
+        assertEquals(2 << 3 | ProtobufReader.VARINT, reader.readTag());
+        assertEquals(-1, reader.readVarint());
+        assertEquals(3 << 3 | ProtobufReader.FIXED32, reader.readTag());
+        assertEquals(0xCAFEBABE, reader.readFixed32());
+        assertEquals(4 << 3 | ProtobufReader.FIXED64, reader.readTag());
+        assertEquals(21.5, Double.longBitsToDouble(reader.readFixed64()), 0.0);
+        assertEquals(5 << 3 | ProtobufReader.LENGTH_DELIMITED, reader.readTag());
+        assertEquals("temperature", reader.readString());
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    public void truncatedVarintIsRejected() {
+        reader.reset(new byte[]{(byte) 0x80, (byte) 0x80});
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, reader::readVarint);
+        assertTrue(e.getMessage(), e.getMessage().startsWith("truncated varint"));
+    }
+
+    @Test
+    public void varintLongerThanTenBytesIsRejected() {
+        byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0xFF);
+        bytes[10] = 0x01;
+        reader.reset(bytes);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, reader::readVarint);
+        assertTrue(e.getMessage(), e.getMessage().startsWith("varint longer than 10 bytes"));
+    }
+
+    @Test
+    public void tenByteVarintIsTheLargestAccepted() {
+        reader.reset(new ProtobufWriter().writeVarintField(1, Long.MIN_VALUE).toByteArray());
+        reader.readTag();
+        assertEquals(Long.MIN_VALUE, reader.readVarint());
+    }
+
+    @Test
+    public void fieldKeyWithoutFieldNumberIsRejected() {
+        reader.reset(new byte[]{0x02});
+        assertThrows(IllegalArgumentException.class, reader::readTag);
+    }
+
+    @Test
+    public void truncatedFixedFieldsAreRejected() {
+        reader.reset(new byte[]{1, 2, 3});
+        assertThrows(IllegalArgumentException.class, reader::readFixed32);
+        reader.reset(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        assertThrows(IllegalArgumentException.class, reader::readFixed64);
+    }
+
+    @Test
+    public void lengthBeyondTheBufferIsRejected() {
+        byte[] bytes = new ProtobufWriter().writeStringField(1, "abc").toByteArray();
+        reader.reset(Arrays.copyOf(bytes, bytes.length - 1));
+        reader.readTag();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, reader::readString);
+        assertTrue(e.getMessage(), e.getMessage().startsWith("truncated field"));
+    }
+
+    @Test
+    public void limitRestrictsReadingToTheEmbeddedMessage() {
+        ProtobufWriter embedded = new ProtobufWriter().writeVarintField(1, 7).writeStringField(2, "inner");
+        byte[] bytes = new ProtobufWriter()
+                .writeMessageField(1, embedded)
+                .writeVarintField(2, 42)
+                .toByteArray();
+        reader.reset(bytes);
+        reader.readTag();
+        int previous = reader.pushLimit(reader.readLength());
+        reader.readTag();
+        assertEquals(7, reader.readVarint());
+        assertTrue(reader.hasRemaining());
+        reader.readTag();
+        assertEquals("inner", reader.readString());
+        assertFalse(reader.hasRemaining());
+        reader.popLimit(previous);
+        assertEquals(2 << 3 | ProtobufReader.VARINT, reader.readTag());
+        assertEquals(42, reader.readVarint());
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    public void readsPastTheLimitAreRejected() {
+        byte[] bytes = new ProtobufWriter().writeFixed32Field(1, 1).writeFixed32Field(2, 2).toByteArray();
+        reader.reset(bytes);
+        reader.pushLimit(3);
+        assertThrows(IllegalArgumentException.class, reader::readFixed32);
+    }
+
+    @Test
+    public void lengthPastTheLimitIsRejectedEvenIfTheBufferHasTheBytes() {
+        byte[] bytes = new ProtobufWriter().writeStringField(1, "abc").writeVarintField(2, 1).toByteArray();
+        reader.reset(bytes);
+        //the limit ends one byte before the end of the string
+        reader.pushLimit(bytes.length - 3);
+        reader.readTag();
+        assertThrows(IllegalArgumentException.class, reader::readString);
+    }
+
+    @Test
+    public void popLimitSkipsTheUnreadPartOfTheEmbeddedMessage() {
+        ProtobufWriter embedded = new ProtobufWriter().writeVarintField(1, 1).writeVarintField(2, 2);
+        byte[] bytes = new ProtobufWriter().writeMessageField(1, embedded).writeVarintField(3, 3).toByteArray();
+        reader.reset(bytes);
+        reader.readTag();
+        int previous = reader.pushLimit(reader.readLength());
+        reader.readTag();
+        reader.readVarint();
+        reader.popLimit(previous);
+        assertEquals(3 << 3 | ProtobufReader.VARINT, reader.readTag());
+    }
+
+    @Test
+    public void skipMovesOverEveryWireType() {
+        byte[] bytes = new ProtobufWriter()
+                .writeVarintField(1, 123456789L)
+                .writeFixed64Field(2, 1L)
+                .writeBytesField(3, new byte[]{1, 2, 3})
+                .writeFixed32Field(4, 1)
+                .writeVarintField(5, 5)
+                .toByteArray();
+        reader.reset(bytes);
+        for(int i = 0; i < 4; i++) reader.skip(reader.readTag() & 7);
+        assertEquals(5 << 3 | ProtobufReader.VARINT, reader.readTag());
+        assertEquals(5, reader.readVarint());
+    }
+
+    @Test
+    public void unsupportedWireTypeIsRejected() {
+        //wire type 3 (start group) is deprecated and not supported
+        reader.reset(new byte[]{1 << 3 | 3});
+        int tag = reader.readTag();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> reader.skip(tag & 7));
+        assertTrue(e.getMessage(), e.getMessage().startsWith("unsupported wire type 3"));
+    }
+}
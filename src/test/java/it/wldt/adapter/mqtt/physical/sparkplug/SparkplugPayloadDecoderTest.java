@@ -0,0 +1,153 @@
+package it.wldt.adapter.mqtt.physical.sparkplug;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SparkplugPayloadDecoderTest {
+
+    private final SparkplugPayloadDecoder decoder = new SparkplugPayloadDecoder();
+
+    @Test
+    public void metricsAndSequenceNumberAreDecoded() {
+        byte[] payload = new ProtobufWriter()
+                .writeVarintField(1, 1700000000000L)
+                .writeMessageField(2, new ProtobufWriter()
+                        .writeStringField(1, "temperature")
+                        .writeVarintField(4, SparkplugMetric.DOUBLE)
+                        .writeFixed64Field(13, Double.doubleToLongBits(21.5)))
+                .writeMessageField(2, new ProtobufWriter()
+                        .writeVarintField(2, 7)
+                        .writeVarintField(4, SparkplugMetric.FLOAT)
+                        .writeFixed32Field(12, Float.floatToIntBits(1.25f)))
+                .writeMessageField(2, new ProtobufWriter()
+                        .writeStringField(1, "status")
+                        .writeVarintField(4, SparkplugMetric.STRING)
+                        .writeStringField(15, "running"))
+                .writeVarintField(3, 42)
+                .toByteArray();
+        List<String> names = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        List<Long> aliases = new ArrayList<>();
+        long seq = decoder.decode(payload, metric -> {
+            names.add(metric.name);
+            values.add(metric.getValue(metric.dataType));
+            aliases.add(metric.hasAlias ? metric.alias : null);
+        });
+        assertEquals(42, seq);
+        assertEquals(Arrays.asList("temperature", null, "status"), names);
+        assertEquals(Arrays.asList(21.5, 1.25f, "running"), values);
+        assertEquals(Arrays.asList(null, 7L, null), aliases);
+    }
+
+    @Test
+    public void payloadWithoutSequenceNumberReturnsMinusOne() {
+        byte[] payload = new ProtobufWriter()
+                .writeMessageField(2, new ProtobufWriter().writeStringField(1, "a").writeVarintField(10, 1))
+                .toByteArray();
+        assertEquals(-1, decoder.decode(payload, metric -> { }));
+    }
+
+    @Test
+    public void sequenceNumberOfAPreviousPayloadIsNotReturned() {
+        decoder.decode(new ProtobufWriter().writeVarintField(3, 5).toByteArray(), metric -> { });
+        assertEquals(-1, decoder.decode(new byte[0], metric -> { }));
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() {
+        byte[] payload = new ProtobufWriter()
+                .writeStringField(5, "uuid")
+                .writeMessageField(2, new ProtobufWriter()
+                        .writeStringField(1, "pressure")
+                        .writeFixed64Field(3, 1L)
+                        .writeMessageField(8, new ProtobufWriter().writeStringField(1, "metadata"))
+                        .writeVarintField(4, SparkplugMetric.INT32)
+                        .writeVarintField(10, 1013))
+                .writeFixed32Field(9, 0)
+                .toByteArray();
+        List<Object> values = new ArrayList<>();
+        decoder.decode(payload, metric -> values.add(metric.getValue(metric.dataType)));
+        assertEquals(Arrays.asList((Object) 1013), values);
+    }
+
+    @Test
+    public void fieldsDoNotLeakBetweenMetrics() {
+        byte[] payload = new ProtobufWriter()
+                .writeMessageField(2, new ProtobufWriter().writeStringField(1, "a").writeBooleanField(7, true))
+                .writeMessageField(2, new ProtobufWriter().writeStringField(1, "b").writeVarintField(11, 3))
+                .toByteArray();
+        List<Boolean> nulls = new ArrayList<>();
+        List<Boolean> hasValues = new ArrayList<>();
+        decoder.decode(payload, metric -> {
+            nulls.add(metric.isNull);
+            hasValues.add(metric.hasValue);
+        });
+        assertEquals(Arrays.asList(true, false), nulls);
+        assertEquals(Arrays.asList(false, true), hasValues);
+    }
+
+    @Test
+    public void unexpectedWireTypeInAMetricIsRejected() {
+        //double value written as a varint
+        byte[] payload = new ProtobufWriter()
+                .writeMessageField(2, new ProtobufWriter().writeStringField(1, "a").writeVarintField(13, 1))
+                .toByteArray();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> decoder.decode(payload, metric -> { }));
+        assertTrue(e.getMessage(), e.getMessage().startsWith("unexpected wire type"));
+    }
+
+    @Test
+    public void metricValueCannotReadPastTheMetric() {
+        byte[] metric = new ProtobufWriter().writeStringField(1, "a").writeStringField(15, "value").toByteArray();
+        //drop the last byte of the metric: its string value now claims the first byte of the following seq field
+        ProtobufWriter truncated = new ProtobufWriter()
+                .writeBytesField(2, Arrays.copyOf(metric, metric.length - 1))
+                .writeVarintField(3, 1);
+        byte[] payload = truncated.toByteArray();
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(payload, m -> { }));
+    }
+
+    @Test
+    public void truncatedPayloadsAreRejected() {
+        byte[] payload = new ProtobufWriter()
+                .writeMessageField(2, new ProtobufWriter().writeStringField(1, "temperature").writeVarintField(10, 300))
+                .writeVarintField(3, 1)
+                .toByteArray();
+        //every prefix ending inside a field must fail instead of decoding garbage or reading out of bounds
+        for(int length = 1; length < payload.length; length++){
+            byte[] prefix = Arrays.copyOf(payload, length);
+            try {
+                decoder.decode(prefix, metric -> { });
+                //the only valid prefix is the complete metric without the trailing seq field
+                assertEquals(payload.length - 2, length);
+            } catch (IllegalArgumentException expected) {
+                assertNotEquals(payload.length - 2, length);
+            }
+        }
+    }
+
+    @Test
+    public void decoderIsReusedAcrossPayloads() {
+        byte[] first = new ProtobufWriter()
+                .writeMessageField(2, new ProtobufWriter().writeStringField(1, "a").writeVarintField(10, 1))
+                .toByteArray();
+        byte[] second = new ProtobufWriter()
+                .writeMessageField(2, new ProtobufWriter().writeVarintField(2, 9).writeVarintField(14, 1))
+                .toByteArray();
+        decoder.decode(first, metric -> { });
+        List<String> names = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        decoder.decode(second, metric -> {
+            names.add(metric.name);
+            values.add(metric.getValue(SparkplugMetric.BOOLEAN));
+        });
+        assertEquals(Arrays.asList((String) null), names);
+        assertEquals(Arrays.asList((Object) true), values);
+    }
+}
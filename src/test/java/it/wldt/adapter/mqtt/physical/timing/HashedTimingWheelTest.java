@@ -0,0 +1,142 @@
+package it.wldt.adapter.mqtt.physical.timing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HashedTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    private ScheduledExecutorService scheduler;
+    private HashedTimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        if(wheel != null) wheel.stop();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void wheelSizeAndTickMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel(0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel(TICK_MS, 0));
+    }
+
+    @Test
+    public void shortTimeoutIsRoundedUpToTheNextTick() throws InterruptedException {
+        wheel = startedWheel(4);
+        long[] firedAfter = new long[1];
+        CountDownLatch fired = new CountDownLatch(1);
+        long scheduledAt = System.nanoTime();
+        Timeout timeout = wheel.newTimeout(1, TimeUnit.NANOSECONDS, () -> {
+            firedAfter[0] = System.nanoTime() - scheduledAt;
+            fired.countDown();
+        });
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        //runs on a tick, never inline and never more than a couple of ticks late
+        assertTrue(firedAfter[0] > 0);
+        assertTrue(firedAfter[0] < TimeUnit.MILLISECONDS.toNanos(20 * TICK_MS));
+        assertEquals(0, wheel.getPendingTimeouts());
+    }
+
+    @Test
+    public void timeoutsSpanningSeveralRoundsDoNotFireEarly() throws InterruptedException {
+        //4 buckets of 10 ms: a round is 40 ms, so these wait up to 4 rounds
+        wheel = startedWheel(4);
+        long[] delaysMs = {25, 95, 170};
+        List<Long> order = Collections.synchronizedList(new ArrayList<>());
+        long[] firedAfter = new long[delaysMs.length];
+        CountDownLatch fired = new CountDownLatch(delaysMs.length);
+        long scheduledAt = System.nanoTime();
+        for(int i = delaysMs.length - 1; i >= 0; i--){
+            int index = i;
+            wheel.newTimeout(delaysMs[i], TimeUnit.MILLISECONDS, () -> {
+                firedAfter[index] = System.nanoTime() - scheduledAt;
+                order.add(delaysMs[index]);
+                fired.countDown();
+            });
+        }
+        assertEquals(delaysMs.length, wheel.getPendingTimeouts());
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        for(int i = 0; i < delaysMs.length; i++)
+            assertTrue("fired early: " + delaysMs[i] + " ms", firedAfter[i] >= TimeUnit.MILLISECONDS.toNanos(delaysMs[i]));
+        assertEquals(Arrays.asList(25L, 95L, 170L), order);
+        assertEquals(0, wheel.getPendingTimeouts());
+    }
+
+    @Test
+    public void timeoutOneRoundAheadWaitsForItsRound() throws InterruptedException {
+        //a delay of one round maps to the bucket expired by the current tick: it must stay there for another round
+        wheel = startedWheel(4);
+        long[] firedAfter = new long[1];
+        CountDownLatch fired = new CountDownLatch(1);
+        long scheduledAt = System.nanoTime();
+        wheel.newTimeout(4 * TICK_MS + 1, TimeUnit.MILLISECONDS, () -> {
+            firedAfter[0] = System.nanoTime() - scheduledAt;
+            fired.countDown();
+        });
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertTrue(firedAfter[0] >= TimeUnit.MILLISECONDS.toNanos(4 * TICK_MS + 1));
+    }
+
+    @Test
+    public void cancelledTimeoutNeverRuns() throws InterruptedException {
+        wheel = startedWheel(8);
+        CountDownLatch cancelledRan = new CountDownLatch(1);
+        CountDownLatch laterRan = new CountDownLatch(1);
+        Timeout timeout = wheel.newTimeout(30, TimeUnit.MILLISECONDS, cancelledRan::countDown);
+        wheel.newTimeout(60, TimeUnit.MILLISECONDS, laterRan::countDown);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertTrue(laterRan.await(1, TimeUnit.SECONDS));
+        assertEquals(1, cancelledRan.getCount());
+        assertFalse(timeout.isExpired());
+        assertEquals(0, wheel.getPendingTimeouts());
+    }
+
+    @Test
+    public void expiredTimeoutCannotBeCancelled() throws InterruptedException {
+        wheel = startedWheel(8);
+        CountDownLatch fired = new CountDownLatch(1);
+        Timeout timeout = wheel.newTimeout(5, TimeUnit.MILLISECONDS, fired::countDown);
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isCancelled());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+        wheel = startedWheel(8);
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.newTimeout(5, TimeUnit.MILLISECONDS, () -> {
+            throw new IllegalStateException("boom");
+        });
+        wheel.newTimeout(40, TimeUnit.MILLISECONDS, fired::countDown);
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+
+    private HashedTimingWheel startedWheel(int wheelSize) {
+        HashedTimingWheel timingWheel = new HashedTimingWheel(TICK_MS, wheelSize);
+        timingWheel.start(scheduler);
+        return timingWheel;
+    }
+}
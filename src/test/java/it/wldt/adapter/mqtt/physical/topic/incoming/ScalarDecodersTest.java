@@ -0,0 +1,85 @@
+package it.wldt.adapter.mqtt.physical.topic.incoming;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ScalarDecodersTest {
+
+    @Test
+    public void decodesInts() {
+        assertEquals(Integer.valueOf(42), ScalarDecoders.decodeInt(bytes("42")));
+        assertEquals(Integer.valueOf(-7), ScalarDecoders.decodeInt(bytes("-7")));
+        assertEquals(Integer.valueOf(7), ScalarDecoders.decodeInt(bytes("+7")));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), ScalarDecoders.decodeInt(bytes("2147483647")));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), ScalarDecoders.decodeInt(bytes("-2147483648")));
+    }
+
+    @Test
+    public void rejectsMalformedInts() {
+        assertNull(ScalarDecoders.decodeInt(bytes("")));
+        assertNull(ScalarDecoders.decodeInt(bytes("-")));
+        assertNull(ScalarDecoders.decodeInt(bytes("1.5")));
+        assertNull(ScalarDecoders.decodeInt(bytes("12a")));
+        assertNull(ScalarDecoders.decodeInt(bytes("+-1")));
+        assertNull(ScalarDecoders.decodeInt(bytes("2147483648")));
+        assertNull(ScalarDecoders.decodeInt(bytes("99999999999")));
+    }
+
+    @Test
+    public void decodesDoubles() {
+        assertEquals(1.5, ScalarDecoders.decodeDouble(bytes("1.5")), 0.0);
+        assertEquals(-0.001, ScalarDecoders.decodeDouble(bytes("-0.001")), 0.0);
+        assertEquals(2.5e10, ScalarDecoders.decodeDouble(bytes("2.5E10")), 0.0);
+        assertEquals(3.0, ScalarDecoders.decodeDouble(bytes("3d")), 0.0);
+        assertEquals(0.5, ScalarDecoders.decodeDouble(bytes(".5")), 0.0);
+        assertTrue(ScalarDecoders.decodeDouble(bytes("NaN")).isNaN());
+        assertEquals(Double.NEGATIVE_INFINITY, ScalarDecoders.decodeDouble(bytes("-Infinity")), 0.0);
+    }
+
+    @Test
+    public void doublesOutsideTheFastPathMatchParseDouble() {
+        for (String value : new String[]{"1e-300", "123456789012345678901234567890", "9007199254740993", "0.1e23", "4.9e-324"})
+            assertEquals(value, Double.parseDouble(value), ScalarDecoders.decodeDouble(bytes(value)), 0.0);
+    }
+
+    @Test
+    public void rejectsMalformedDoubles() {
+        assertNull(ScalarDecoders.decodeDouble(bytes("")));
+        assertNull(ScalarDecoders.decodeDouble(bytes(".")));
+        assertNull(ScalarDecoders.decodeDouble(bytes("1..5")));
+        assertNull(ScalarDecoders.decodeDouble(bytes("1e")));
+        assertNull(ScalarDecoders.decodeDouble(bytes("1e+")));
+        assertNull(ScalarDecoders.decodeDouble(bytes("0x10")));
+    }
+
+    @Test
+    public void decodesBooleansInAnyCase() {
+        assertEquals(Boolean.TRUE, ScalarDecoders.decodeBoolean(bytes("TRUE")));
+        assertEquals(Boolean.FALSE, ScalarDecoders.decodeBoolean(bytes("False")));
+        assertNull(ScalarDecoders.decodeBoolean(bytes("1")));
+        assertNull(ScalarDecoders.decodeBoolean(bytes("truex")));
+    }
+
+    @Test
+    public void ignoresSurroundingAsciiWhitespace() {
+        assertEquals(Integer.valueOf(12), ScalarDecoders.decodeInt(bytes(" \t12\r\n")));
+        assertEquals(1.5, ScalarDecoders.decodeDouble(bytes("\n1.5 ")), 0.0);
+        assertEquals(Boolean.TRUE, ScalarDecoders.decodeBoolean(bytes(" true\n")));
+        assertNull(ScalarDecoders.decodeInt(bytes("   ")));
+    }
+
+    @Test
+    public void nonAsciiBytesAreNotWhitespace() {
+        assertNull(ScalarDecoders.decodeInt(bytes("12\u00e9")));
+        assertNull(ScalarDecoders.decodeDouble(bytes("\u00e91.5")));
+        assertNull(ScalarDecoders.decodeBoolean(bytes("true\u00a0")));
+        assertNull(ScalarDecoders.decodeInt(new byte[]{'1', (byte) 0xFF}));
+    }
+
+    private static byte[] bytes(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,232 @@
+package it.wldt.adapter.mqtt.physical.utils;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.google.gson.Gson;
+import it.wldt.adapter.mqtt.physical.MqttPhysicalAdapter;
+import it.wldt.adapter.mqtt.physical.MqttPhysicalAdapterConfiguration;
+import it.wldt.adapter.mqtt.physical.MqttPhysicalAdapterConfigurationBuilder;
+import it.wldt.adapter.mqtt.physical.metrics.LatencyHistogram;
+import it.wldt.adapter.mqtt.physical.topic.incoming.ScalarDecoders;
+import it.wldt.adapter.mqtt.physical.transport.ConnectionState;
+import it.wldt.core.engine.WldtEngine;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulates a fleet of devices publishing to a broker and measures the end-to-end latency, from the device publish
+ * to the update of the twin property seen by a digital adapter, through a MqttPhysicalAdapter running in the same JVM.
+ * Each device publishes on fleet/<device>/value at the given rate, with the payload of one of the YAML property types;
+ * optional bursts make every device send burstSize messages at once every burstEvery seconds.
+ *
+ * Usage: FleetLoadGenerator [--broker=localhost:1883] [--devices=100] [--connections=10] [--rate=1.0]
+ *        [--duration=60] [--type=double|int|boolean|string|json-object|json-array] [--qos=0]
+ *        [--burstSize=0] [--burstEvery=10]
+ * boolean payloads carry no sequence number: only their throughput is reported.
+ */
+public class FleetLoadGenerator {
+
+    private final static Logger logger = LoggerFactory.getLogger(FleetLoadGenerator.class);
+
+    private static final long DRAIN_MS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String[] broker = options.getOrDefault("broker", "localhost:1883").split(":");
+        int devices = Integer.parseInt(options.getOrDefault("devices", "100"));
+        int connections = Math.min(devices, Integer.parseInt(options.getOrDefault("connections", "10")));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "1.0"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+        String type = options.getOrDefault("type", "double");
+        int qos = Integer.parseInt(options.getOrDefault("qos", "0"));
+        int burstSize = Integer.parseInt(options.getOrDefault("burstSize", "0"));
+        int burstEvery = Integer.parseInt(options.getOrDefault("burstEvery", "10"));
+
+        Map<String, Long> sendLog = new ConcurrentHashMap<>();
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyDigitalAdapter digitalAdapter = new LatencyDigitalAdapter(sendLog, latency);
+        MqttPhysicalAdapter physicalAdapter = new MqttPhysicalAdapter("fleet-mqtt-pa",
+                buildConfiguration(broker[0], Integer.parseInt(broker[1]), devices, type));
+        WldtEngine dt = new WldtEngine(new DefaultShadowingFunction(), "fleet-digital-twin");
+        dt.addDigitalAdapter(digitalAdapter);
+        dt.addPhysicalAdapter(physicalAdapter);
+        dt.startLifeCycle();
+        while (physicalAdapter.getConnectionState() != ConnectionState.CONNECTED) Thread.sleep(10);
+        //lets the twin bind and the shadowing function observe the properties
+        Thread.sleep(2000);
+
+        List<MqttAsyncClient> clients = new ArrayList<>();
+        for(int i = 0; i < connections; i++) clients.add(connect(broker[0] + ":" + broker[1], qos));
+        List<SimulatedDevice> fleet = new ArrayList<>();
+        for(int i = 0; i < devices; i++) fleet.add(new SimulatedDevice(i, type, qos, clients.get(i % connections), sendLog));
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Math.max(1, Math.min(connections, Runtime.getRuntime().availableProcessors())));
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        for (SimulatedDevice device : fleet)
+            scheduler.scheduleAtFixedRate(device::publish, ThreadLocalRandom.current().nextLong(periodNanos), periodNanos, TimeUnit.NANOSECONDS);
+        if(burstSize > 0)
+            scheduler.scheduleAtFixedRate(() -> fleet.forEach(d -> { for(int i = 0; i < burstSize; i++) d.publish(); }),
+                    burstEvery, burstEvery, TimeUnit.SECONDS);
+
+        logger.info("{} devices on {} connections, {} msg/s each, {} payloads, QoS {}, bursts of {} every {} s, for {} s",
+                devices, connections, rate, type, qos, burstSize, burstEvery, duration);
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+        scheduler.shutdownNow();
+        long sent = SimulatedDevice.SENT.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Thread.sleep(DRAIN_MS);
+
+        System.out.printf("sent %d (%.0f msg/s), publish failures %d, received %d (%.0f msg/s)%n",
+                sent, sent / seconds, SimulatedDevice.FAILED.sum(), digitalAdapter.getReceivedCount(), digitalAdapter.getReceivedCount() / seconds);
+        System.out.printf("latency ms: p50 %.3f, p99 %.3f, p999 %.3f, max %.3f (%d samples)%n",
+                latency.getValueAtQuantile(0.5) / 1e6, latency.getValueAtQuantile(0.99) / 1e6,
+                latency.getValueAtQuantile(0.999) / 1e6, latency.getMax() / 1e6, latency.getCount());
+        System.out.println(physicalAdapter.getMetrics());
+        for (MqttAsyncClient client : clients) client.disconnect().waitForCompletion();
+        System.exit(0);
+    }
+
+    private static MqttPhysicalAdapterConfiguration buildConfiguration(String host, int port, int devices, String type) throws Exception {
+        MqttPhysicalAdapterConfigurationBuilder builder = MqttPhysicalAdapterConfiguration.builder(host, port, "fleet-mqtt-pa");
+        for(int i = 0; i < devices; i++){
+            String propertyKey = SimulatedDevice.propertyKey(i);
+            String topic = SimulatedDevice.topic(i);
+            switch (type) {
+                case "int":
+                    builder.addScalarPropertyAndTopic(propertyKey, 0, topic, ScalarDecoders.INT);
+                    break;
+                case "boolean":
+                    builder.addScalarPropertyAndTopic(propertyKey, false, topic, ScalarDecoders.BOOLEAN);
+                    break;
+                case "string":
+                    builder.addPhysicalAssetPropertyAndTopic(propertyKey, "", topic, s -> s);
+                    break;
+                case "json-object":
+                    builder.addJsonObjectPropertyAndTopic(propertyKey, JsonNodeFactory.instance.objectNode(), topic, null);
+                    break;
+                case "json-array":
+                    builder.addPhysicalAssetPropertyAndTopic(propertyKey, JsonNodeFactory.instance.arrayNode(), topic, s -> {
+                        String[] values = s.substring(1, s.length() - 1).split(",");
+                        return JsonNodeFactory.instance.arrayNode().add(Long.parseLong(values[0].trim())).add(Double.parseDouble(values[1].trim()));
+                    });
+                    break;
+                default:
+                    builder.addScalarPropertyAndTopic(propertyKey, 0.0, topic, ScalarDecoders.DOUBLE);
+            }
+        }
+        return builder.build();
+    }
+
+    private static MqttAsyncClient connect(String broker, int qos) throws MqttException {
+        MqttAsyncClient client = new MqttAsyncClient("tcp://" + broker, "fleet-" + java.util.UUID.randomUUID(), new MemoryPersistence());
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setMaxInflight(qos > 0 ? 65535 : 1000);
+        client.connect(options).waitForCompletion();
+        return client;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if(!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Invalid option: " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    /**
+     * A device of the fleet: every payload carries a sequence number (or its send time for json-object payloads),
+     * registered in the send log with the publish time
+     */
+    private static class SimulatedDevice {
+
+        private static final AtomicLong SENT = new AtomicLong();
+        private static final LongAdder FAILED = new LongAdder();
+        private static final Gson gson = new Gson();
+
+        private final String topic;
+        private final String propertyKey;
+        private final String type;
+        private final int qos;
+        private final MqttAsyncClient client;
+        private final Map<String, Long> sendLog;
+        private final EngineSensor sensor = new EngineSensor();
+        private long sequence = 0;
+
+        private SimulatedDevice(int index, String type, int qos, MqttAsyncClient client, Map<String, Long> sendLog) {
+            this.topic = topic(index);
+            this.propertyKey = propertyKey(index);
+            this.type = type;
+            this.qos = qos;
+            this.client = client;
+            this.sendLog = sendLog;
+        }
+
+        private static String topic(int index) {
+            return "fleet/" + index + "/value";
+        }
+
+        private static String propertyKey(int index) {
+            return "device-" + index;
+        }
+
+        //bursts and periodic publishes of a device can run on different scheduler threads
+        private synchronized void publish() {
+            long seq = ++sequence;
+            long now = System.nanoTime();
+            String token = String.valueOf(seq);
+            String payload;
+            switch (type) {
+                case "int":
+                    payload = token;
+                    break;
+                case "boolean":
+                    payload = String.valueOf(seq % 2 == 0);
+                    token = null;
+                    break;
+                case "string":
+                    payload = token;
+                    break;
+                case "json-object":
+                    token = String.valueOf(now);
+                    payload = gson.toJson(new MessageDescriptor(now, "ENGINE_SENSOR", sensor.getTemperatureValue(), sensor.getHumidityValue()));
+                    break;
+                case "json-array":
+                    payload = "[" + seq + ", " + sensor.getTemperatureValue() + "]";
+                    break;
+                default:
+                    //the fraction stays below 1, so the integer part is the sequence number
+                    payload = String.valueOf(seq + sensor.getTemperatureValue() / 1000);
+            }
+            if(token != null) sendLog.put(propertyKey + ":" + token, now);
+            try {
+                MqttMessage message = new MqttMessage(payload.getBytes(StandardCharsets.UTF_8));
+                message.setQos(qos);
+                client.publish(topic, message);
+                SENT.incrementAndGet();
+            } catch (MqttException e) {
+                FAILED.increment();
+                if(token != null) sendLog.remove(propertyKey + ":" + token);
+            }
+        }
+    }
+}
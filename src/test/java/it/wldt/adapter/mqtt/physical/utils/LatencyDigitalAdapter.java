@@ -0,0 +1,64 @@
+package it.wldt.adapter.mqtt.physical.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import it.wldt.adapter.mqtt.physical.metrics.LatencyHistogram;
+import it.wldt.core.state.DigitalTwinStateProperty;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConsoleDigitalAdapter that, instead of logging, measures the time from the publish of a device message to the
+ * update of the twin property. The send times are looked up in the log filled by FleetLoadGenerator, keyed by
+ * property key and by the sequence number (or send timestamp) carried in the payload.
+ */
+public class LatencyDigitalAdapter extends ConsoleDigitalAdapter {
+
+    private final Map<String, Long> sendLog;
+    private final LatencyHistogram latency;
+    private final LongAdder received = new LongAdder();
+
+    public LatencyDigitalAdapter(Map<String, Long> sendLog, LatencyHistogram latency) {
+        this.sendLog = sendLog;
+        this.latency = latency;
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    @Override
+    protected void onStateChangePropertyUpdated(DigitalTwinStateProperty<?> digitalTwinStateProperty) {
+        record(digitalTwinStateProperty);
+    }
+
+    @Override
+    protected void onStatePropertyUpdated(DigitalTwinStateProperty<?> digitalTwinStateProperty) {
+        record(digitalTwinStateProperty);
+    }
+
+    private void record(DigitalTwinStateProperty<?> property) {
+        long now = System.nanoTime();
+        String token = tokenOf(property.getValue());
+        if(token == null){
+            received.increment();
+            return;
+        }
+        //removing the entry also ignores the second notification of the same update
+        Long sentNanos = sendLog.remove(property.getKey() + ":" + token);
+        if(sentNanos == null) return;
+        received.increment();
+        latency.record(now - sentNanos);
+    }
+
+    private static String tokenOf(Object value) {
+        if(value instanceof Number) return String.valueOf(((Number) value).longValue());
+        if(value instanceof String) return (String) value;
+        if(value instanceof JsonNode){
+            JsonNode node = (JsonNode) value;
+            if(node.isObject() && node.has("timestamp")) return node.get("timestamp").asText();
+            if(node.isArray() && node.size() > 0) return node.get(0).asText();
+        }
+        return null;
+    }
+}
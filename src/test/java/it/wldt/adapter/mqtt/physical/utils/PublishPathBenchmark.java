@@ -0,0 +1,64 @@
+package it.wldt.adapter.mqtt.physical.utils;
+
+import it.wldt.adapter.mqtt.physical.topic.outgoing.ActionOutgoingTopic;
+import it.wldt.adapter.mqtt.physical.topic.outgoing.DigitalTwinOutgoingTopic;
+import it.wldt.adapter.physical.event.PhysicalAssetActionWldtEvent;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the String publish path (publish function returning a String, getBytes, INFO log formatting)
+ * with the byte path (MqttBytesPublishFunction writing into a pooled PayloadBuffer) for a setpoint action.
+ * Reports the time and the bytes allocated per publish, up to the MqttMessage handed to the client.
+ */
+public class PublishPathBenchmark {
+
+    private final static Logger logger = LoggerFactory.getLogger(PublishPathBenchmark.class);
+
+    private static final int WARM_UP = 200_000;
+    private static final int ITERATIONS = 2_000_000;
+    private static final String TOPIC = "actuator/valve/setpoint";
+
+    //keeps the JIT from removing the benchmarked work
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        DigitalTwinOutgoingTopic stringTopic = new ActionOutgoingTopic<Double>(TOPIC,
+                setpoint -> "{\"setpoint\":" + String.format("%.2f", setpoint) + "}");
+        DigitalTwinOutgoingTopic bytesTopic = new DigitalTwinOutgoingTopic(TOPIC,
+                (event, buffer) -> buffer.writeUtf8("{\"setpoint\":")
+                        .writeDecimal((Double) event.getBody(), 2)
+                        .write((byte) '}'));
+        PhysicalAssetActionWldtEvent<Double> event = new PhysicalAssetActionWldtEvent<>("setpoint", 21.5);
+
+        run("string", () -> {
+            String payload = stringTopic.applyPublishFunction(event);
+            MqttMessage message = new MqttMessage(payload.getBytes());
+            //what the previous INFO log line formatted on every publish
+            sink += MessageFormatter.format("published message: {} on topic: {}", payload, TOPIC).getMessage().length();
+            sink += message.getPayload().length;
+        });
+        run("bytes", () -> {
+            MqttMessage message = new MqttMessage(bytesTopic.encodePayload(event));
+            sink += message.getPayload().length;
+        });
+        logger.info("sink: {}", sink);
+    }
+
+    private static void run(String name, Runnable publish) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for(int i = 0; i < WARM_UP; i++) publish.run();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++) publish.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        logger.info("{} path - {} ns/publish - {} bytes allocated/publish", name,
+                elapsed / ITERATIONS, allocated / ITERATIONS);
+    }
+}
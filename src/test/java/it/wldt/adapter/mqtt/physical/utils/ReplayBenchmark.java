@@ -0,0 +1,44 @@
+package it.wldt.adapter.mqtt.physical.utils;
+
+import it.wldt.adapter.mqtt.physical.MqttPhysicalAdapter;
+import it.wldt.adapter.mqtt.physical.MqttPhysicalAdapterConfiguration;
+import it.wldt.adapter.mqtt.physical.recording.ReplayTransport;
+import it.wldt.adapter.mqtt.physical.recording.TrafficRecording;
+import it.wldt.adapter.mqtt.physical.transport.ConnectionState;
+import it.wldt.core.engine.WldtEngine;
+
+import java.nio.file.Paths;
+
+/**
+ * Feeds a recording made with the "recording" option into a MqttPhysicalAdapter, without a broker.
+ * Arguments: the YAML configuration of the adapter, the recording directory and the replay speed
+ * (1 = original timing, 60 = one hour per minute, 0 = as fast as possible).
+ */
+public class ReplayBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2){
+            System.out.println("usage: ReplayBenchmark <config.yml> <recording directory> [speed]");
+            return;
+        }
+        double speed = args.length > 2 ? Double.parseDouble(args[2]) : ReplayTransport.AS_FAST_AS_POSSIBLE;
+        MqttPhysicalAdapterConfiguration config = MqttPhysicalAdapterConfiguration.builder(args[0])
+                .readFromConfig()
+                .build();
+        ReplayTransport transport = new ReplayTransport();
+        MqttPhysicalAdapter adapter = new MqttPhysicalAdapter("replay-mqtt-pa", config, transport);
+        WldtEngine dt = new WldtEngine(new DefaultShadowingFunction(), "replay-digital-twin");
+        dt.addPhysicalAdapter(adapter);
+        dt.startLifeCycle();
+        while (adapter.getConnectionState() != ConnectionState.CONNECTED) Thread.sleep(10);
+
+        TrafficRecording recording = new TrafficRecording(Paths.get(args[1]));
+        long start = System.nanoTime();
+        long delivered = transport.replay(recording, speed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("delivered %d messages in %.2f s (%.0f msg/s), %d actions published%n",
+                delivered, seconds, delivered / seconds, transport.getPublishedCount());
+        System.out.println(adapter.getMetrics());
+        System.exit(0);
+    }
+}
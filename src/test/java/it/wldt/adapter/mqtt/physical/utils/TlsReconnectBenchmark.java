@@ -0,0 +1,150 @@
+package it.wldt.adapter.mqtt.physical.utils;
+
+import it.wldt.adapter.mqtt.physical.metrics.LatencyHistogram;
+import it.wldt.adapter.mqtt.physical.transport.TlsConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.*;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the cost of TLS reconnects against a local broker stand-in, which completes the handshake and
+ * answers CONNECT with a CONNACK. Reconnects through the shared SSLSocketFactory of a TlsConfiguration
+ * (session resumption) are compared with reconnects through a fresh SSLContext (full handshake).
+ *
+ * Usage: TlsReconnectBenchmark <keystore.p12> <password> [reconnects]
+ * A test keystore can be created with:
+ * keytool -genkeypair -alias broker -keyalg EC -dname CN=localhost -storetype PKCS12 -keystore broker.p12 -storepass changeit
+ */
+public class TlsReconnectBenchmark {
+
+    private final static Logger logger = LoggerFactory.getLogger(TlsReconnectBenchmark.class);
+
+    //MQTT 3.1.1 CONNECT packet with client id "bench"
+    private static final byte[] CONNECT = new byte[]{0x10, 0x11, 0x00, 0x04, 'M', 'Q', 'T', 'T', 0x04, 0x02, 0x00, 0x3C, 0x00, 0x05, 'b', 'e', 'n', 'c', 'h'};
+
+    private static final byte[] CONNACK = new byte[]{0x20, 0x02, 0x00, 0x00};
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2){
+            logger.error("Usage: TlsReconnectBenchmark <keystore.p12> <password> [reconnects]");
+            return;
+        }
+        String keyStore = args[0];
+        String password = args[1];
+        int reconnects = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        SSLServerSocket serverSocket = (SSLServerSocket) serverContext(keyStore, password).getServerSocketFactory().createServerSocket(0);
+        ExecutorService broker = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "tls-broker-stand-in");
+            t.setDaemon(true);
+            return t;
+        });
+        broker.submit(() -> {
+            while(!serverSocket.isClosed()){
+                try {
+                    Socket socket = serverSocket.accept();
+                    broker.submit(() -> handle(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+
+        TlsConfiguration tls = new TlsConfiguration().setTrustStore(keyStore, password, "PKCS12");
+        int port = serverSocket.getLocalPort();
+
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(load(keyStore, password));
+
+        //warm-up of both paths before measuring
+        run(tls.getSocketFactory(), port, reconnects / 10, new LatencyHistogram());
+        for(int i = 0; i < reconnects / 10; i++)
+            run(freshSocketFactory(tmf), port, 1, new LatencyHistogram());
+
+        LatencyHistogram shared = new LatencyHistogram();
+        int resumed = run(tls.getSocketFactory(), port, reconnects, shared);
+        logger.info("Shared SSLSocketFactory - reconnects: {} resumed: {} - {}", reconnects, resumed, shared);
+
+        LatencyHistogram fresh = new LatencyHistogram();
+        int freshResumed = 0;
+        for(int i = 0; i < reconnects; i++)
+            freshResumed += run(freshSocketFactory(tmf), port, 1, fresh);
+        logger.info("Fresh SSLContext - reconnects: {} resumed: {} - {}", reconnects, freshResumed, fresh);
+
+        serverSocket.close();
+        broker.shutdownNow();
+    }
+
+    /**
+     * Connects count times and returns how many connections resumed a previous TLS session
+     * */
+    private static int run(SSLSocketFactory factory, int port, int count, LatencyHistogram histogram) throws Exception {
+        int resumed = 0;
+        for(int i = 0; i < count; i++){
+            long startMillis = System.currentTimeMillis();
+            long start = System.nanoTime();
+            try (SSLSocket socket = (SSLSocket) factory.createSocket("localhost", port)) {
+                socket.setTcpNoDelay(true);
+                socket.startHandshake();
+                OutputStream out = socket.getOutputStream();
+                out.write(CONNECT);
+                out.flush();
+                byte[] ack = new byte[CONNACK.length];
+                new DataInputStream(socket.getInputStream()).readFully(ack);
+                histogram.record(System.nanoTime() - start);
+                //a resumed session was created by an earlier connection
+                if(socket.getSession().getCreationTime() < startMillis) resumed++;
+            }
+        }
+        return resumed;
+    }
+
+    private static void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            InputStream in = s.getInputStream();
+            //fixed header and remaining length (single byte for the CONNECT sent by the benchmark)
+            if(in.read() < 0) return;
+            int remaining = in.read();
+            if(remaining < 0) return;
+            new DataInputStream(in).readFully(new byte[remaining]);
+            s.getOutputStream().write(CONNACK);
+            s.getOutputStream().flush();
+            //wait for the client to close the connection
+            while(in.read() >= 0);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static SSLSocketFactory freshSocketFactory(TrustManagerFactory tmf) throws Exception {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, tmf.getTrustManagers(), null);
+        return context.getSocketFactory();
+    }
+
+    private static SSLContext serverContext(String keyStore, String password) throws Exception {
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(load(keyStore, password), password.toCharArray());
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private static KeyStore load(String path, String password) throws Exception {
+        KeyStore ks = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(path)) {
+            ks.load(in, password.toCharArray());
+        }
+        return ks;
+    }
+}